@@ -0,0 +1,74 @@
+package ru.practicum.ewmservice;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор постраничного вывода: порядок, для которого он выдан, значение ключа сортировки и id
+ * последнего элемента страницы. Клиенту передаётся в закодированном виде и возвращается без изменений.
+ */
+@Value
+public class ContinuationToken {
+    public static final String BY_ID = "ID";
+
+    public static final String BY_EVENT_DATE = "EVENT_DATE";
+
+    public static final String BY_VIEWS = "VIEWS";
+
+    private static final String SEPARATOR = "\n";
+
+    String order;
+
+    // null, если элементы упорядочены только по id
+    String key;
+
+    long id;
+
+    public static ContinuationToken of(String order, Object key, long id) {
+        return new ContinuationToken(order, key == null ? null : key.toString(), id);
+    }
+
+    /**
+     * Разбирает курсор. Пустой курсор означает первую страницу и разбирается в null.
+     */
+    public static ContinuationToken decode(String cursor, String order) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR, -1);
+            if (parts.length != 3 || !parts[0].equals(order)) {
+                throw new IllegalStateException("Курсор " + cursor + " выдан для другого порядка сортировки");
+            }
+            ContinuationToken token = new ContinuationToken(parts[0], parts[1].isEmpty() ? null : parts[1],
+                    Long.parseLong(parts[2]));
+            // Ключ проверяется при разборе, чтобы ошибка в курсоре не дошла до запроса к базе данных
+            if (BY_EVENT_DATE.equals(order)) {
+                token.getDateKey();
+            } else if (BY_VIEWS.equals(order)) {
+                token.getLongKey();
+            }
+            return token;
+        } catch (IllegalArgumentException | DateTimeParseException | NullPointerException e) {
+            throw new IllegalStateException("Некорректный курсор " + cursor);
+        }
+    }
+
+    public String encode() {
+        String value = order + SEPARATOR + (key == null ? "" : key) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getDateKey() {
+        return LocalDateTime.parse(key);
+    }
+
+    public long getLongKey() {
+        return Long.parseLong(key);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.ewmservice;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewmservice.models.category.Category;
+import ru.practicum.ewmservice.models.location.Location;
+import ru.practicum.ewmservice.models.user.User;
+import ru.practicum.ewmservice.repositories.CategoryRepository;
+import ru.practicum.ewmservice.repositories.LocationRepository;
+import ru.practicum.ewmservice.repositories.UserRepository;
+
+import java.util.Optional;
+
+/**
+ * Чтение категорий, пользователей и локаций по id через кэши {@link EntityCacheConfig}.
+ * В кэше хранятся неизменяемые снимки, а не сущности JPA: вызывающий код получает из снимка
+ * собственный экземпляр сущности, и его изменения не попадают в кэш и в другие потоки.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityCache {
+    private final CategoryRepository categoryRepository;
+
+    private final UserRepository userRepository;
+
+    private final LocationRepository locationRepository;
+
+    @Cacheable(cacheNames = EntityCacheConfig.CATEGORIES, unless = "#result == null")
+    public Optional<CategorySnapshot> findCategory(Long id) {
+        return categoryRepository.findById(id).map(CategorySnapshot::of);
+    }
+
+    @Cacheable(cacheNames = EntityCacheConfig.USERS, unless = "#result == null")
+    public Optional<UserSnapshot> findUser(Long id) {
+        return userRepository.findById(id).map(UserSnapshot::of);
+    }
+
+    @Cacheable(cacheNames = EntityCacheConfig.LOCATIONS, unless = "#result == null")
+    public Optional<LocationSnapshot> findLocation(Long id) {
+        return locationRepository.findById(id).map(LocationSnapshot::of);
+    }
+
+    @Value
+    public static class CategorySnapshot {
+        Long id;
+        String name;
+
+        static CategorySnapshot of(Category category) {
+            return new CategorySnapshot(category.getId(), category.getName());
+        }
+
+        public Category toCategory() {
+            return new Category(id, name);
+        }
+    }
+
+    @Value
+    public static class UserSnapshot {
+        Long id;
+        String name;
+        String email;
+
+        static UserSnapshot of(User user) {
+            return new UserSnapshot(user.getId(), user.getName(), user.getEmail());
+        }
+
+        public User toUser() {
+            return new User(id, name, email);
+        }
+    }
+
+    @Value
+    public static class LocationSnapshot {
+        Long id;
+        String name;
+        Double radius;
+        Double lat;
+        Double lon;
+
+        static LocationSnapshot of(Location location) {
+            return new LocationSnapshot(location.getId(), location.getName(), location.getRadius(),
+                    location.getLat(), location.getLon());
+        }
+
+        public Location toLocation() {
+            return new Location(id, name, radius, lat, lon);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.ewmservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Локальные кэши категорий, пользователей и локаций по id. У каждого кэша своё время жизни записей:
+ * категории и локации меняются редко, пользователи чаще. Записи удаляются из кэша при изменении
+ * и удалении сущностей, а время жизни ограничивает расхождение с базой данных при изменениях в обход сервисов.
+ * Внутри транзакции запись в кэш и удаление из него выполняются после фиксации, чтобы другие потоки
+ * не загрузили в кэш ещё не изменённую строку и чтобы откаченные изменения не попадали в кэш.
+ * Сами значения - неизменяемые снимки, см. {@link EntityCache}.
+ */
+@Configuration
+@EnableCaching
+public class EntityCacheConfig {
+    public static final String CATEGORIES = "categories";
+
+    public static final String USERS = "users";
+
+    public static final String LOCATIONS = "locations";
+
+    @Bean
+    public CacheManager entityCacheManager(
+            MeterRegistry meterRegistry,
+            @Value("${entity-cache.categories.ttl-ms}") long categoriesTtlMs,
+            @Value("${entity-cache.categories.max-size}") long categoriesMaxSize,
+            @Value("${entity-cache.users.ttl-ms}") long usersTtlMs,
+            @Value("${entity-cache.users.max-size}") long usersMaxSize,
+            @Value("${entity-cache.locations.ttl-ms}") long locationsTtlMs,
+            @Value("${entity-cache.locations.max-size}") long locationsMaxSize) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Отсутствующие сущности не кэшируются, чтобы созданная позже запись сразу находилась
+        cacheManager.setAllowNullValues(false);
+        registerCache(cacheManager, meterRegistry, CATEGORIES, categoriesTtlMs, categoriesMaxSize);
+        registerCache(cacheManager, meterRegistry, USERS, usersTtlMs, usersMaxSize);
+        registerCache(cacheManager, meterRegistry, LOCATIONS, locationsTtlMs, locationsMaxSize);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private static void registerCache(CaffeineCacheManager cacheManager, MeterRegistry meterRegistry, String name,
+                                      long ttlMs, long maxSize) {
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        cacheManager.registerCustomCache(name, cache);
+        // Счётчики попаданий и промахов cache.gets регистрирует Spring Boot для всех кэшей менеджера
+        Gauge.builder("entity.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+}
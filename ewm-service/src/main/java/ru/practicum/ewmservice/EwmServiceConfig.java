@@ -1,13 +1,41 @@
 package ru.practicum.ewmservice;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import ru.practicum.ewmservice.models.location.LocationFilter;
+import ru.practicum.ewmservice.repositories.BoundingBoxEventGeoSearch;
+import ru.practicum.ewmservice.repositories.EventGeoSearch;
+import ru.practicum.ewmservice.repositories.EventTextSearch;
+import ru.practicum.ewmservice.repositories.FullTextEventTextSearch;
+import ru.practicum.ewmservice.repositories.GeoSearchMode;
+import ru.practicum.ewmservice.repositories.LikeEventTextSearch;
+import ru.practicum.ewmservice.repositories.LocationRepository;
+import ru.practicum.ewmservice.repositories.PostGisEventGeoSearch;
+import ru.practicum.ewmservice.repositories.TextSearchMode;
+import ru.practicum.ewmservice.services.IndexEventGeoSearch;
+import ru.practicum.ewmservice.services.LocationIndex;
 
 @Configuration
 public class EwmServiceConfig {
     @Bean
-    public LocationFilter getLocationFilter() {
-        return new LocationFilter();
+    public EventTextSearch eventTextSearch(@Value("${events.search.text-mode}") TextSearchMode mode) {
+        if (mode == TextSearchMode.LIKE) {
+            return new LikeEventTextSearch();
+        }
+        return new FullTextEventTextSearch();
+    }
+
+    @Bean
+    public EventGeoSearch eventGeoSearch(@Value("${events.search.geo-mode}") GeoSearchMode mode,
+                                         LocationIndex locationIndex,
+                                         LocationRepository locationRepository) {
+        switch (mode) {
+            case BOUNDING_BOX:
+                return new BoundingBoxEventGeoSearch(locationRepository);
+            case POSTGIS:
+                return new PostGisEventGeoSearch();
+            default:
+                return new IndexEventGeoSearch(locationIndex);
+        }
     }
 }
@@ -11,6 +11,10 @@ public class FromSizeRequest extends PageRequest {
         this.offset = offset;
     }
 
+    public static FromSizeRequest of(int offset, int size) {
+        return of(offset, size, null);
+    }
+
     public static FromSizeRequest of(int offset, int size, Sort sort) {
         if (sort == null) {
             return new FromSizeRequest(offset, size, Sort.unsorted());
@@ -0,0 +1,30 @@
+package ru.practicum.ewmservice;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Страница, полученная по курсору, и закодированный курсор следующей страницы.
+ * Курсора нет, если страница последняя.
+ */
+@Value
+public class KeysetPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    List<T> content;
+
+    String nextCursor;
+
+    /**
+     * Страница из найденных элементов. Если найдено ровно size элементов, курсор следующей страницы
+     * строится по последнему из них.
+     */
+    public static <E, T> KeysetPage<T> of(List<E> found, int size, Function<E, ContinuationToken> token,
+                                         Function<E, T> mapper) {
+        String nextCursor = found.size() == size ? token.apply(found.get(found.size() - 1)).encode() : null;
+        return new KeysetPage<>(found.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.category.dto.NewCategoryDto;
 import ru.practicum.ewmservice.models.compilation.dto.CompilationDto;
@@ -17,6 +18,7 @@ import ru.practicum.ewmservice.models.user.dto.NewUserRequest;
 import ru.practicum.ewmservice.models.user.dto.UserDto;
 import ru.practicum.ewmservice.services.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
@@ -50,8 +52,14 @@ public class AdminController {
     @GetMapping("/users")
     public List<UserDto> getUsers(@PositiveOrZero @RequestParam(name = "from", defaultValue = "0") Integer from,
                                   @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
-                                  @RequestParam(name = "ids") Long[] ids) {
-        log.info("Получен запрос на получение пользователей с параметрами: from {}, size{}, ids {}", from, size, ids);
+                                  @RequestParam(name = "ids") Long[] ids,
+                                  @RequestParam(name = "cursor", required = false) String cursor,
+                                  HttpServletResponse response) {
+        log.info("Получен запрос на получение пользователей с параметрами: from {}, size{}, ids {}, cursor {}", from,
+                size, ids, cursor);
+        if (cursor != null) {
+            return withNextCursor(userService.getUsers(cursor, size, ids), response);
+        }
         return userService.getUsers(from, size, ids);
     }
 
@@ -92,11 +100,17 @@ public class AdminController {
                                            int from,
                                            @Positive @RequestParam(name = "size", defaultValue = "10") int size,
                                            @PositiveOrZero @RequestParam (name = "lat", required = false) Double lat,
-                                           @PositiveOrZero @RequestParam(name = "lon", required = false) Double lon
+                                           @PositiveOrZero @RequestParam(name = "lon", required = false) Double lon,
+                                           @RequestParam(name = "cursor", required = false) String cursor,
+                                           HttpServletResponse response
     ) {
         log.info("Получен запрос на поиск события с параметрами: users: {}, states: {}, categories: {}, " +
-                        "rangeStart: {}, rangeEnd: {}, from: {}, size: {}", users, states, categories, rangeStart,
-                rangeEnd, from, size);
+                        "rangeStart: {}, rangeEnd: {}, from: {}, size: {}, cursor: {}", users, states, categories,
+                rangeStart, rangeEnd, from, size, cursor);
+        if (cursor != null) {
+            return withNextCursor(eventService.searchEventByAdmin(users, states, categories, rangeStart, rangeEnd,
+                    cursor, size, lat, lon), response);
+        }
         return eventService.searchEventByAdmin(users, states, categories, rangeStart, rangeEnd, from, size, lat, lon);
     }
 
@@ -169,4 +183,10 @@ public class AdminController {
         locationService.deleteLocationById(locationId);
     }
 
+    private static <T> List<T> withNextCursor(KeysetPage<T> page, HttpServletResponse response) {
+        if (page.getNextCursor() != null) {
+            response.setHeader(KeysetPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getContent();
+    }
 }
@@ -4,17 +4,23 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.event.dto.EventFullDto;
 import ru.practicum.ewmservice.models.event.dto.EventShortDto;
 import ru.practicum.ewmservice.models.event.dto.NewEventDto;
 import ru.practicum.ewmservice.models.event.dto.UpdateEventRequest;
+import ru.practicum.ewmservice.models.participation_request.Status;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusResultDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusUpdateDto;
 import ru.practicum.ewmservice.services.EventService;
 import ru.practicum.ewmservice.services.ParticipationRequestService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 import java.util.List;
 
 @RestController
@@ -36,10 +42,14 @@ public class PrivateController {
 
     @PostMapping("/users/{userId}/requests")
     public ParticipationRequestDto addNewParticipationRequest(@PathVariable(name = "userId") Long userId,
-                                                              @RequestParam(name = "eventId") Long eventId) {
-        log.info("Получен запрос на добавление заявки на участие от пользователя с id {} на событие с id {}",
-                userId, eventId);
-        return requestService.addNewParticipationRequest(userId, eventId);
+                                                              @RequestParam(name = "eventId") Long eventId,
+                                                              @Size(max = 64, message = "Ключ идемпотентности "
+                                                                      + "должен быть не длиннее 64 символов")
+                                                              @RequestHeader(name = "Idempotency-Key",
+                                                                      required = false) String idempotencyKey) {
+        log.info("Получен запрос на добавление заявки на участие от пользователя с id {} на событие с id {}, "
+                + "ключ идемпотентности {}", userId, eventId, idempotencyKey);
+        return requestService.addNewParticipationRequest(userId, eventId, idempotencyKey);
     }
 
     @PatchMapping("/users/{userId}/events")
@@ -81,6 +91,16 @@ public class PrivateController {
         return requestService.rejectParticipationRequest(userId, eventId, requestId);
     }
 
+    @PatchMapping("/users/{userId}/events/{eventId}/requests")
+    public List<ParticipationRequestStatusResultDto> updateParticipationRequestsStatus(
+            @PathVariable(name = "userId") Long userId,
+            @PathVariable(name = "eventId") Long eventId,
+            @RequestBody @Valid ParticipationRequestStatusUpdateDto statusUpdate) {
+        log.info("Получен запрос на изменение статуса {} заявок пользователем с id {} к событию с id {}",
+                statusUpdate.getRequestIds().size(), userId, eventId);
+        return requestService.updateParticipationRequestsStatus(userId, eventId, statusUpdate);
+    }
+
     @GetMapping("/users/{userId}/events")
     public List<EventShortDto> getUserEvents(@PositiveOrZero
                                              @RequestParam(name = "from", defaultValue = "0") Integer from,
@@ -100,17 +120,51 @@ public class PrivateController {
         return eventService.getUserEventFullInfo(userId, eventId);
     }
 
+    /**
+     * Без курсора и статуса возвращаются все заявки. С курсором или статусом заявки возвращаются постранично,
+     * пустой курсор означает первую страницу.
+     */
     @GetMapping("/users/{userId}/requests")
-    public List<ParticipationRequestDto> getParticipationRequestsByUser(@PathVariable(name = "userId") Long userId) {
-        log.info("Получен запрос на вывод запросов на участия в событиях пользователя с id {}", userId);
+    public List<ParticipationRequestDto> getParticipationRequestsByUser(
+            @PathVariable(name = "userId") Long userId,
+            @RequestParam(name = "status", required = false) Status status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
+            HttpServletResponse response) {
+        log.info("Получен запрос на вывод запросов на участия в событиях пользователя с id {}, status: {}, " +
+                "cursor: {}, size: {}", userId, status, cursor, size);
+        if (cursor != null || status != null) {
+            return withNextCursor(requestService.getUserParticipationRequests(userId, status, cursor, size),
+                    response);
+        }
         return requestService.getUserParticipationRequests(userId);
     }
 
+    /**
+     * Без курсора и статуса возвращаются все заявки. С курсором или статусом заявки возвращаются постранично,
+     * пустой курсор означает первую страницу.
+     */
     @GetMapping("/users/{userId}/events/{eventId}/requests")
-    public List<ParticipationRequestDto> getRequestsByUserEvent(@PathVariable(name = "userId") Long userId,
-                                                                @PathVariable(name = "eventId") Long eventId) {
-        log.info("Получен запрос на получение заявок на участие в событии с id: {} пользователя с id: {}",
-                eventId, userId);
+    public List<ParticipationRequestDto> getRequestsByUserEvent(
+            @PathVariable(name = "userId") Long userId,
+            @PathVariable(name = "eventId") Long eventId,
+            @RequestParam(name = "status", required = false) Status status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
+            HttpServletResponse response) {
+        log.info("Получен запрос на получение заявок на участие в событии с id: {} пользователя с id: {}, " +
+                "status: {}, cursor: {}, size: {}", eventId, userId, status, cursor, size);
+        if (cursor != null || status != null) {
+            return withNextCursor(requestService.getUserEventParticipationRequests(userId, eventId, status, cursor,
+                    size), response);
+        }
         return requestService.getUserEventParticipationRequests(userId, eventId);
     }
+
+    private static <T> List<T> withNextCursor(KeysetPage<T> page, HttpServletResponse response) {
+        if (page.getNextCursor() != null) {
+            response.setHeader(KeysetPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getContent();
+    }
 }
@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.compilation.dto.CompilationDto;
 import ru.practicum.ewmservice.models.event.dto.EventFullDto;
@@ -19,6 +20,7 @@ import ru.practicum.ewmservice.services.EventService;
 import ru.practicum.ewmservice.services.LocationService;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
 import java.time.LocalDateTime;
@@ -64,14 +66,20 @@ public class PublicController {
                                             @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
                                             HttpServletRequest request,
                                             @PositiveOrZero @RequestParam(name = "lat", required = false) Double lat,
-                                            @PositiveOrZero @RequestParam(name = "lon", required = false) Double lon) {
+                                            @PositiveOrZero @RequestParam(name = "lon", required = false) Double lon,
+                                            @RequestParam(name = "cursor", required = false) String cursor,
+                                            HttpServletResponse response) {
         String ip = request.getRemoteAddr();
         String uri = request.getRequestURI();
         log.info("client ip: {}", ip);
         log.info("endpoint path: {}", uri);
         log.info("Получен запрос на поиск событий с параметрами: text: {}, categoties: {}, paid: {}, rangeStart: {}," +
-                        " rangerEnd: {}, onlyAvailable: {}, sort: {}, from: {}, size: {}", text, categories, paid,
-                rangeStart, rangeEnd, isAvailable, sort, from, size);
+                        " rangerEnd: {}, onlyAvailable: {}, sort: {}, from: {}, size: {}, cursor: {}", text, categories,
+                paid, rangeStart, rangeEnd, isAvailable, sort, from, size, cursor);
+        if (cursor != null) {
+            return withNextCursor(eventService.searchEvents(text, categories, paid, rangeStart, rangeEnd, isAvailable,
+                    sort, cursor, size, ip, uri, lat, lon), response);
+        }
         return eventService.searchEvents(text, categories, paid, rangeStart, rangeEnd, isAvailable,
                 sort, from, size, ip, uri, lat, lon);
     }
@@ -95,8 +103,14 @@ public class PublicController {
     @GetMapping("/categories")
     public List<CategoryDto> getCategories(@PositiveOrZero @RequestParam(name = "from", defaultValue = "0")
                                            Integer from,
-                                           @Positive @RequestParam(name = "size", defaultValue = "10") Integer size) {
-        log.info("Получен запрос на получение категорий с параметрами: from: {}, size: {}", from, size);
+                                           @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                           @RequestParam(name = "cursor", required = false) String cursor,
+                                           HttpServletResponse response) {
+        log.info("Получен запрос на получение категорий с параметрами: from: {}, size: {}, cursor: {}", from, size,
+                cursor);
+        if (cursor != null) {
+            return withNextCursor(categoryService.getCategories(cursor, size), response);
+        }
         return categoryService.getCategories(from, size);
     }
 
@@ -109,8 +123,14 @@ public class PublicController {
     @GetMapping("/locations")
     public List<LocationDto> getAllLocations(@PositiveOrZero @RequestParam(name = "from", defaultValue = "0")
                                              Integer from,
-                                             @Positive @RequestParam(name = "size", defaultValue = "10") Integer size) {
-        log.info("Получен запрос на получение списка локаций с параметрами: from: {}, size: {}", from, size);
+                                             @Positive @RequestParam(name = "size", defaultValue = "10") Integer size,
+                                             @RequestParam(name = "cursor", required = false) String cursor,
+                                             HttpServletResponse response) {
+        log.info("Получен запрос на получение списка локаций с параметрами: from: {}, size: {}, cursor: {}", from,
+                size, cursor);
+        if (cursor != null) {
+            return withNextCursor(locationService.getAllLocations(cursor, size), response);
+        }
         return locationService.getAllLocations(from, size);
     }
 
@@ -120,4 +140,11 @@ public class PublicController {
         log.info("Получен запрос на поиск события по координатам локации: lat: {}, lon: {}", lat, lon);
         return eventService.searchEventInLocation(lat, lon);
     }
+
+    private static <T> List<T> withNextCursor(KeysetPage<T> page, HttpServletResponse response) {
+        if (page.getNextCursor() != null) {
+            response.setHeader(KeysetPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return page.getContent();
+    }
 }
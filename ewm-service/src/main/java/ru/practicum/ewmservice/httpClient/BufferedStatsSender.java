@@ -0,0 +1,242 @@
+package ru.practicum.ewmservice.httpClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import ru.practicum.ewmservice.models.httpClientRequestEntity.EndpointHit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка хитов в сервис статистики без блокировки потока запроса. Хиты складываются в кольцевой буфер,
+ * фоновый поток периодически отправляет их пачками на /hits. Если сервис статистики недоступен,
+ * пачка отправляется повторно с экспоненциальной задержкой, а после исчерпания попыток
+ * сохраняется в файл (если он задан) и досылается после восстановления связи.
+ * Ответ 4xx, кроме 429, означает, что сервис отклонил данные, поэтому повторять отправку бессмысленно:
+ * такая пачка отбрасывается, а отклонённый файл переименовывается в *.rejected и больше не досылается.
+ */
+@Component
+@Slf4j
+public class BufferedStatsSender {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final RestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final String hitsUrl;
+
+    private final BlockingQueue<EndpointHit> buffer;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMs;
+
+    private final Path spillFile;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Counter queuedCounter;
+
+    private final Counter sentCounter;
+
+    private final Counter droppedCounter;
+
+    private final Counter spilledCounter;
+
+    private final Counter rejectedCounter;
+
+    private final Counter rejectedFilesCounter;
+
+    BufferedStatsSender(RestTemplate restTemplate,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${stat-server.url}") String statServiceUrl,
+                        @Value("${stat-server.buffer.capacity}") int capacity,
+                        @Value("${stat-server.buffer.batch-size}") int batchSize,
+                        @Value("${stat-server.buffer.flush-interval-ms}") long flushIntervalMs,
+                        @Value("${stat-server.buffer.max-attempts}") int maxAttempts,
+                        @Value("${stat-server.buffer.initial-backoff-ms}") long initialBackoffMs,
+                        @Value("${stat-server.buffer.spill-file:}") String spillFile) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.hitsUrl = statServiceUrl + "/hits";
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.spillFile = spillFile.isBlank() ? null : Paths.get(spillFile);
+
+        Gauge.builder("stats.client.hits.buffered", buffer, BlockingQueue::size).register(meterRegistry);
+        this.queuedCounter = meterRegistry.counter("stats.client.hits.queued");
+        this.sentCounter = meterRegistry.counter("stats.client.hits.sent");
+        this.droppedCounter = meterRegistry.counter("stats.client.hits.dropped");
+        this.spilledCounter = meterRegistry.counter("stats.client.hits.spilled");
+        this.rejectedCounter = meterRegistry.counter("stats.client.hits.rejected");
+        this.rejectedFilesCounter = meterRegistry.counter("stats.client.spill.rejected");
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stats-hit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void send(EndpointHit endpointHit) {
+        // Буфер кольцевой: при переполнении вытесняется самый старый хит
+        while (!buffer.offer(endpointHit)) {
+            if (buffer.poll() != null) {
+                droppedCounter.increment();
+            }
+        }
+        queuedCounter.increment();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Не дождались завершения отправки статистики");
+        }
+        flush();
+    }
+
+    synchronized void flush() {
+        try {
+            List<EndpointHit> batch = new ArrayList<>(batchSize);
+            boolean available = true;
+            while (available && buffer.drainTo(batch, batchSize) > 0) {
+                available = sendWithRetry(batch);
+                if (!available) {
+                    spill(batch);
+                }
+                batch.clear();
+            }
+            if (available) {
+                replaySpilled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Ошибка при отправке статистики", e);
+        }
+    }
+
+    private boolean sendWithRetry(List<EndpointHit> batch) throws InterruptedException {
+        long backoffMs = initialBackoffMs;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                restTemplate.exchange(hitsUrl, HttpMethod.POST, new HttpEntity<>(batch), Object.class);
+                sentCounter.increment(batch.size());
+                log.debug("Отправлена пачка статистики, хитов: {}", batch.size());
+                return true;
+            } catch (Exception e) {
+                if (isRejected(e)) {
+                    rejectedCounter.increment(batch.size());
+                    log.error("Сервис статистики отклонил пачку хитов, пачка отброшена, хитов: {}, ответ: {}",
+                            batch.size(), e.getMessage());
+                    // Сервис доступен, поэтому остальные хиты отправляются как обычно
+                    return true;
+                }
+                log.info("Попытка {} отправки статистики не удалась: {}", attempt, e.getMessage());
+                if (attempt < maxAttempts) {
+                    TimeUnit.MILLISECONDS.sleep(backoffMs);
+                    backoffMs *= 2;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void spill(List<EndpointHit> batch) throws IOException {
+        if (spillFile == null) {
+            droppedCounter.increment(batch.size());
+            log.warn("Сервис статистики недоступен, отброшено хитов: {}", batch.size());
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (EndpointHit endpointHit : batch) {
+                writer.write(objectMapper.writeValueAsString(endpointHit));
+                writer.newLine();
+            }
+        }
+        spilledCounter.increment(batch.size());
+        log.warn("Сервис статистики недоступен, хиты сохранены в файл {}: {}", spillFile, batch.size());
+    }
+
+    private void replaySpilled() throws IOException {
+        if (spillFile == null) {
+            return;
+        }
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        if (!Files.exists(replayFile)) {
+            if (!Files.exists(spillFile)) {
+                return;
+            }
+            Files.move(spillFile, replayFile);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(NDJSON);
+        try {
+            restTemplate.exchange(hitsUrl, HttpMethod.POST,
+                    new HttpEntity<>(new FileSystemResource(replayFile), headers), Object.class);
+            Files.delete(replayFile);
+            log.info("Досланы сохранённые в файл хиты статистики");
+        } catch (Exception e) {
+            if (isRejected(e)) {
+                Path rejectedFile = spillFile.resolveSibling(spillFile.getFileName() + "."
+                        + System.currentTimeMillis() + ".rejected");
+                Files.move(replayFile, rejectedFile);
+                rejectedFilesCounter.increment();
+                log.error("Сервис статистики отклонил сохранённые хиты, файл перемещён в {}: {}",
+                        rejectedFile, e.getMessage());
+                return;
+            }
+            // Файл остаётся на месте и будет дослан при следующей отправке
+            log.info("Не удалось дослать сохранённые хиты статистики: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isRejected(Exception e) {
+        return e instanceof HttpClientErrorException
+                && ((HttpClientErrorException) e).getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+    }
+}
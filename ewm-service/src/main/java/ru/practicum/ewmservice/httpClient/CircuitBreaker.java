@@ -0,0 +1,141 @@
+package ru.practicum.ewmservice.httpClient;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Автоматический выключатель для вызовов внешнего сервиса. Доля ошибок считается по скользящему окну
+ * из последних windowSize вызовов. При превышении порога выключатель размыкается на openDurationMs,
+ * затем пропускает halfOpenProbes пробных вызовов: если все они успешны, выключатель замыкается,
+ * при первой же ошибке снова размыкается.
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    private final boolean[] window;
+
+    private final int failureRateThreshold;
+
+    private final long openDurationMs;
+
+    private final int halfOpenProbes;
+
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+
+    private int windowPosition;
+
+    private int windowCalls;
+
+    private int windowFailures;
+
+    private long openedAt;
+
+    private int probesStarted;
+
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, int windowSize, int failureRateThreshold, long openDurationMs,
+                          int halfOpenProbes) {
+        this(name, windowSize, failureRateThreshold, openDurationMs, halfOpenProbes, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, int windowSize, int failureRateThreshold, long openDurationMs,
+                   int halfOpenProbes, LongSupplier clock) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.clock = clock;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Возвращает true, если вызов разрешён. После разрешённого вызова нужно сообщить
+     * его результат через onSuccess или onFailure.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openDurationMs) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                probesStarted = 1;
+                return true;
+            case HALF_OPEN:
+                if (probesStarted < halfOpenProbes) {
+                    probesStarted++;
+                    return true;
+                }
+                return false;
+            default:
+                throw new IllegalStateException("Неизвестное состояние выключателя: " + state);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probesSucceeded++;
+            if (probesSucceeded >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+        if (windowCalls == window.length && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        log.info("Выключатель {}: {} -> {}", name, state, newState);
+        state = newState;
+        windowPosition = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (newState == State.OPEN) {
+            openedAt = clock.getAsLong();
+        }
+    }
+}
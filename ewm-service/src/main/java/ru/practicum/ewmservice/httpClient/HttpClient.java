@@ -1,12 +1,14 @@
 package ru.practicum.ewmservice.httpClient;
 
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.practicum.ewmservice.models.httpClientRequestEntity.EndpointHit;
@@ -16,44 +18,98 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
-@RestController
+@Component
 @Slf4j
-
 public class HttpClient {
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
     private final String statServiceUrl;
 
+    private final BufferedStatsSender statsSender;
+
+    private final CircuitBreaker circuitBreaker;
+
+    // Последние полученные значения просмотров, используются пока сервис статистики недоступен
+    private final Map<String, ViewStats> lastKnownStats;
+
+    private final Counter fallbackCounter;
+
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    HttpClient(@Value("${stat-server.url}") String statServiceUrl) {
+    HttpClient(@Value("${stat-server.url}") String statServiceUrl, BufferedStatsSender statsSender,
+               RestTemplate restTemplate, CircuitBreaker circuitBreaker, MeterRegistry meterRegistry,
+               @Value("${stat-server.fallback.max-size}") int fallbackMaxSize) {
         this.statServiceUrl = statServiceUrl;
+        this.restTemplate = restTemplate;
+        this.statsSender = statsSender;
+        this.circuitBreaker = circuitBreaker;
+        this.lastKnownStats = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ViewStats> eldest) {
+                return size() > fallbackMaxSize;
+            }
+        });
+        this.fallbackCounter = meterRegistry.counter("stats.client.views.fallback");
     }
 
     public void postStat(Long id, String uri, String ip) {
-
-        String timestamp = LocalDateTime.now().format(FORMATTER);
+        // Хит не отправляется сразу, а ставится в буфер: поток запроса не ждёт ответа сервиса статистики
         EndpointHit endpointHit = new EndpointHit();
-        HttpEntity<EndpointHit> request = new HttpEntity<>(endpointHit);
         endpointHit.setIp(ip);
         endpointHit.setUri(uri);
         endpointHit.setApp("java-explore-with-me");
         endpointHit.setId(id);
-        endpointHit.setTimesTamp(timestamp);
+        endpointHit.setTimesTamp(LocalDateTime.now().format(FORMATTER));
+        statsSender.send(endpointHit);
+        log.debug("Хит поставлен в очередь на отправку в сервис статистики: {}", endpointHit);
+    }
+
+    public Map<String, ViewStats> getStat(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
         try {
-            ResponseEntity<EndpointHit> response = restTemplate.exchange(statServiceUrl + "/hit",
-                    HttpMethod.POST, request, EndpointHit.class);
-            String status = response.getStatusCode().toString();
-            log.info("Отправлен HTTP-запрос с параметрами: url: {}, Method: {}, request: {}",
-                    statServiceUrl + "/hit", HttpMethod.POST, request);
-            log.info("Получен ответ: status: {}", status);
+            return fetchStatByUri(start, end, uris, unique);
         } catch (Exception e) {
             log.info("{}", e.getMessage());
+            return getLastKnownStats(uris, unique);
         }
+    }
 
+    /**
+     * Запрос статистики по uri без подстановки последних известных значений: при недоступности
+     * сервиса статистики выбрасывается исключение. Полученные значения запоминаются как последние известные.
+     */
+    public Map<String, ViewStats> fetchStatByUri(LocalDateTime start, LocalDateTime end, String[] uris,
+                                                 boolean unique) {
+        Map<String, ViewStats> result = new HashMap<>();
+        for (ViewStats viewStats : fetchStat(start, end, uris, unique)) {
+            result.put(viewStats.getUri(), viewStats);
+            lastKnownStats.put(unique + viewStats.getUri(), viewStats);
+        }
+        return result;
     }
 
-    @RequestMapping(method = RequestMethod.GET)
-    public Map<String, ViewStats> getStat(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+    /**
+     * Запрос статистики без подстановки последних известных значений: при недоступности
+     * сервиса статистики выбрасывается исключение.
+     */
+    public List<ViewStats> fetchStat(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new ResourceAccessException("Сервис статистики недоступен: выключатель разомкнут");
+        }
+        try {
+            List<ViewStats> result = requestStat(start, end, uris, unique);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            // Недоступность или ошибка сервиса статистики учитывается выключателем
+            circuitBreaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            // Сервис статистики ответил, поэтому ошибка запроса не размыкает выключатель
+            circuitBreaker.onSuccess();
+            throw e;
+        }
+    }
+
+    private List<ViewStats> requestStat(LocalDateTime start, LocalDateTime end, String[] uris, boolean unique) {
         String url = statServiceUrl + "/stats";
         String startString = start.format(FORMATTER);
         String endString = end.format(FORMATTER);
@@ -84,21 +140,28 @@ public class HttpClient {
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
         HttpEntity<ViewStats> viewStatsHttpEntity = new HttpEntity<>(headers);
-        try {
-            ResponseEntity<ViewStats[]> response = restTemplate.exchange(
-                    urlTemplate, HttpMethod.GET, viewStatsHttpEntity, ViewStats[].class, parameters);
-            log.info("Отправлен http-запрос с параметрами: url: {}, method: {}", urlTemplate, HttpMethod.GET);
-            log.info("Получен ответ: status: {}, body: {}", response.getStatusCode(), response.getBody());
-
-            Map<String, ViewStats> result = new HashMap<>();
-            List<ViewStats> viewStatsList = List.of(Objects.requireNonNull(response.getBody()));
-            for (ViewStats viewStats : viewStatsList) {
-                result.put(viewStats.getUri(), viewStats);
+        ResponseEntity<ViewStats[]> response = restTemplate.exchange(
+                urlTemplate, HttpMethod.GET, viewStatsHttpEntity, ViewStats[].class, parameters);
+        log.info("Отправлен http-запрос с параметрами: url: {}, method: {}", urlTemplate, HttpMethod.GET);
+        log.info("Получен ответ: status: {}, body: {}", response.getStatusCode(), response.getBody());
+        return List.of(Objects.requireNonNull(response.getBody()));
+    }
+
+    /**
+     * Последние полученные значения просмотров по uri. Для uri, по которым значений нет, ничего не возвращается.
+     */
+    public Map<String, ViewStats> getLastKnownStats(String[] uris, boolean unique) {
+        fallbackCounter.increment();
+        Map<String, ViewStats> result = new HashMap<>();
+        if (uris != null) {
+            for (String uri : uris) {
+                ViewStats viewStats = lastKnownStats.get(unique + uri);
+                if (viewStats != null) {
+                    result.put(uri, viewStats);
+                }
             }
-            return result;
-        } catch (Exception e) {
-            log.info("{}", e.getMessage());
-            return null;
         }
+        log.debug("Просмотры получены из последних известных значений: {}", result);
+        return result;
     }
 }
@@ -0,0 +1,84 @@
+package ru.practicum.ewmservice.httpClient;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Транспорт клиента сервиса статистики. Один RestTemplate используется и для чтения статистики,
+ * и для отправки хитов. Тело запроса не буферизуется в памяти, поэтому файл с сохранёнными хитами
+ * при досылке читается с диска по частям.
+ */
+@Configuration
+public class StatsClientConfig {
+    @Bean
+    public ClientHttpRequestFactory statsRequestFactory(
+            MeterRegistry meterRegistry,
+            @Value("${stat-server.http.transport}") StatsTransport transport,
+            @Value("${stat-server.http.max-connections}") int maxConnections,
+            @Value("${stat-server.http.max-connections-per-route}") int maxConnectionsPerRoute,
+            @Value("${stat-server.http.connect-timeout-ms}") int connectTimeoutMs,
+            @Value("${stat-server.http.read-timeout-ms}") int readTimeoutMs,
+            @Value("${stat-server.http.connection-request-timeout-ms}") int connectionRequestTimeoutMs) {
+        if (transport == StatsTransport.SIMPLE) {
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(connectTimeoutMs);
+            requestFactory.setReadTimeout(readTimeoutMs);
+            requestFactory.setBufferRequestBody(false);
+            return requestFactory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "stats-server").bindTo(meterRegistry);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // Соединения, простаивающие дольше минуты, закрываются, чтобы не упереться в таймаут сервера
+                .evictIdleConnections(1, TimeUnit.MINUTES)
+                .build();
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setBufferRequestBody(false);
+        return requestFactory;
+    }
+
+    @Bean
+    public CircuitBreaker statsCircuitBreaker(
+            MeterRegistry meterRegistry,
+            @Value("${stat-server.circuit-breaker.window-size}") int windowSize,
+            @Value("${stat-server.circuit-breaker.failure-rate-threshold}") int failureRateThreshold,
+            @Value("${stat-server.circuit-breaker.open-duration-ms}") long openDurationMs,
+            @Value("${stat-server.circuit-breaker.half-open-probes}") int halfOpenProbes) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("stats-server", windowSize, failureRateThreshold,
+                openDurationMs, halfOpenProbes);
+        // 0 - замкнут, 1 - разомкнут, 2 - пробные вызовы
+        Gauge.builder("stats.client.circuit.state", circuitBreaker, c -> c.getState().ordinal())
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+
+    @Bean
+    public RestTemplate statsRestTemplate(ClientHttpRequestFactory statsRequestFactory) {
+        return new RestTemplate(statsRequestFactory);
+    }
+}
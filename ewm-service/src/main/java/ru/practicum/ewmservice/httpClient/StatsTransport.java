@@ -0,0 +1,8 @@
+package ru.practicum.ewmservice.httpClient;
+
+public enum StatsTransport {
+    // Пул keep-alive соединений Apache HttpClient
+    POOLED,
+    // Новое соединение на каждый запрос (HttpURLConnection)
+    SIMPLE
+}
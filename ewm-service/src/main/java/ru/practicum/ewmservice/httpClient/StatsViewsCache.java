@@ -0,0 +1,131 @@
+package ru.practicum.ewmservice.httpClient;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewmservice.models.httpClientRequestEntity.ViewStats;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+/**
+ * Локальный кэш количества просмотров событий по uri. Записи живут ttl-ms и вытесняются
+ * по W-TinyLFU при превышении max-size. Промахи по одним и тем же uri, пришедшие одновременно,
+ * ожидают один общий запрос к сервису статистики, а промахи по разным uri загружаются одним запросом.
+ * Кэшируются только ответы сервиса статистики: если он недоступен, просмотры берутся из кэша
+ * и последних известных значений, но не сохраняются, чтобы после восстановления сервиса сразу
+ * получить актуальные значения. Загрузка выполняется в отдельном ограниченном пуле потоков,
+ * так как это блокирующий http-запрос.
+ */
+@Component
+@Slf4j
+public class StatsViewsCache {
+    private final HttpClient httpClient;
+
+    private final ThreadPoolExecutor loader;
+
+    private final AsyncLoadingCache<String, Long> cache;
+
+    StatsViewsCache(HttpClient httpClient,
+                    MeterRegistry meterRegistry,
+                    @Value("${stat-server.views-cache.ttl-ms}") long ttlMs,
+                    @Value("${stat-server.views-cache.max-size}") long maxSize,
+                    @Value("${stat-server.views-cache.loader-threads}") int loaderThreads,
+                    @Value("${stat-server.views-cache.loader-queue-capacity}") int loaderQueueCapacity) {
+        this.httpClient = httpClient;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // При заполненной очереди загрузка выполняется в потоке запроса, что ограничивает число ожидающих загрузок
+        this.loader = new ThreadPoolExecutor(loaderThreads, loaderThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loaderQueueCapacity), r -> {
+                    Thread thread = new Thread(r, "stats-views-loader-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.cache = Caffeine.newBuilder()
+                .executor(loader)
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .buildAsync(new CacheLoader<>() {
+                    @Override
+                    public Long load(String uri) {
+                        return loadViews(List.of(uri)).get(uri);
+                    }
+
+                    @Override
+                    public Map<String, Long> loadAll(Iterable<? extends String> uris) {
+                        return loadViews(uris);
+                    }
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "views");
+        Gauge.builder("stats.views.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .register(meterRegistry);
+        Gauge.builder("stats.views.cache.miss.ratio", cache, c -> c.synchronous().stats().missRate())
+                .register(meterRegistry);
+    }
+
+    public Map<String, Long> getViews(Collection<String> uris) {
+        if (uris.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return cache.getAll(uris).join();
+        } catch (CompletionException e) {
+            log.info("Не удалось загрузить просмотры, используются последние известные значения: {}",
+                    e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            return getFallbackViews(uris);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private Map<String, Long> loadViews(Iterable<? extends String> uris) {
+        String[] uriArray = StreamSupport.stream(uris.spliterator(), false).toArray(String[]::new);
+        // Ошибка загрузки не кэшируется: Caffeine удаляет записи с завершившейся ошибкой загрузкой
+        Map<String, ViewStats> viewStatsMap = httpClient.fetchStatByUri(LocalDateTime.now().minusYears(100),
+                LocalDateTime.now().plusYears(100), uriArray, true);
+        Map<String, Long> result = new HashMap<>();
+        for (String uri : uriArray) {
+            ViewStats viewStats = viewStatsMap.get(uri);
+            // Для uri без просмотров сервис статистики ничего не возвращает
+            result.put(uri, viewStats == null ? 0L : viewStats.getHits());
+        }
+        log.debug("Загружены просмотры в кэш: {}", result);
+        return result;
+    }
+
+    // Просмотры из кэша, а для остальных uri - последние известные значения или 0
+    private Map<String, Long> getFallbackViews(Collection<String> uris) {
+        Map<String, Long> result = new HashMap<>(cache.synchronous().getAllPresent(uris));
+        String[] missing = uris.stream()
+                .filter(uri -> !result.containsKey(uri))
+                .distinct()
+                .toArray(String[]::new);
+        Map<String, ViewStats> lastKnown = httpClient.getLastKnownStats(missing, true);
+        for (String uri : missing) {
+            ViewStats viewStats = lastKnown.get(uri);
+            result.put(uri, viewStats == null ? 0L : viewStats.getHits());
+        }
+        return result;
+    }
+}
@@ -26,7 +26,8 @@ public class Event {
     @ManyToOne
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
-    @Column(name = "confirmed_requests", nullable = false)
+    // Счётчик меняется только условным обновлением в EventRepository, чтобы сохранение события его не перезаписывало
+    @Column(name = "confirmed_requests", nullable = false, updatable = false)
     private int confirmedRequests;
     @Column(name = "created_on", nullable = false)
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", shape = JsonFormat.Shape.STRING)
@@ -0,0 +1,25 @@
+package ru.practicum.ewmservice.models.event;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Локальная проекция количества просмотров события из сервиса статистики.
+ * Обновляется периодической синхронизацией, используется для сортировки событий по просмотрам.
+ */
+@Entity
+@Table(name = "event_views")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class EventViews {
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+    @Column(name = "views", nullable = false)
+    private long views;
+}
@@ -0,0 +1,25 @@
+package ru.practicum.ewmservice.models.event;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Отметка синхронизации просмотров: хиты до highWaterMark уже учтены в event_views.
+ */
+@Entity
+@Table(name = "views_sync_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class ViewsSyncState {
+    @Id
+    @Column(name = "name")
+    private String name;
+    @Column(name = "high_water_mark")
+    private LocalDateTime highWaterMark;
+}
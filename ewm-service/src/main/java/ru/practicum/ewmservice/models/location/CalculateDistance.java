@@ -9,8 +9,8 @@ public interface CalculateDistance {
             double radLat1 = Math.PI * lat1 / 180;
             // переводим градусы долготы в радианы
             double radLat2 = Math.PI * lat2 / 180;
-            // находим разность долгот
-            double radTheta = lon1 - lon2;
+            // находим разность долгот и переводим её в радианы, как в функции distance() в базе данных
+            double radTheta = Math.PI * (lon1 - lon2) / 180;
             // находим длину ортодромии
             double dist = Math.sin(radLat1) * Math.sin(radLat2) +
                     Math.cos(radLat1) * Math.cos(radLat2) * Math.cos(radTheta);
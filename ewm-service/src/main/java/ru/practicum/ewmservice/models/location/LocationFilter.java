@@ -1,8 +0,0 @@
-package ru.practicum.ewmservice.models.location;
-
-import lombok.NoArgsConstructor;
-
-@NoArgsConstructor
-public class LocationFilter implements CalculateDistance {
-
-}
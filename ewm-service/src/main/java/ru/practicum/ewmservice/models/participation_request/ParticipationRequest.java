@@ -24,6 +24,7 @@ public class ParticipationRequest {
     @Column(name = "requester", nullable = false)
     private Long requester;
     @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
     private Status status;
 
 }
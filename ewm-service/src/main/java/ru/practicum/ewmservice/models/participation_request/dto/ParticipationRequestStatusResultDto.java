@@ -0,0 +1,19 @@
+package ru.practicum.ewmservice.models.participation_request.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.ewmservice.models.participation_request.Status;
+
+/**
+ * Результат изменения статуса одной заявки. Статус пустой, если заявка не найдена,
+ * а причина заполнена, если статус заявки отличается от запрошенного.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationRequestStatusResultDto {
+    private Long requestId;
+    private Status status;
+    private String reason;
+}
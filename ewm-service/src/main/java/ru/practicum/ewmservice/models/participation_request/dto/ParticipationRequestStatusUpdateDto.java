@@ -0,0 +1,16 @@
+package ru.practicum.ewmservice.models.participation_request.dto;
+
+import lombok.Data;
+import ru.practicum.ewmservice.models.participation_request.Status;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+public class ParticipationRequestStatusUpdateDto {
+    @NotEmpty(message = "Список заявок не должен быть пустым")
+    private List<@NotNull Long> requestIds;
+    @NotNull
+    private Status status;
+}
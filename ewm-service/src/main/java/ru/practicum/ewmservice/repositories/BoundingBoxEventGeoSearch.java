@@ -0,0 +1,72 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.location.QLocation;
+
+/**
+ * Отбор по прямоугольнику широт и долгот вокруг круга точки с наибольшим радиусом локации, который
+ * база данных находит по индексу ix_locations_lat_lon. Точное расстояние считается функцией distance()
+ * только для локаций из прямоугольника. Локации с координатами вне допустимых диапазонов, как и в индексе
+ * в памяти, проверяются функцией distance() при каждом запросе (их находит индекс ix_locations_out_of_range).
+ */
+public class BoundingBoxEventGeoSearch implements EventGeoSearch {
+    // Длина дуги в один градус в тех же единицах, что и функция distance()
+    private static final double KM_PER_DEGREE = 111.144;
+
+    // Запас на погрешность вычислений при построении границ круга
+    private static final double MARGIN_DEGREES = 1e-6;
+
+    private final LocationRepository locationRepository;
+
+    public BoundingBoxEventGeoSearch(LocationRepository locationRepository) {
+        this.locationRepository = locationRepository;
+    }
+
+    @Override
+    public BooleanExpression covers(double lat, double lon) {
+        QLocation location = QEvent.event.location;
+        BooleanExpression withinRadius = Expressions.booleanTemplate("function('"
+                        + EventSearchFunctions.LOCATION_COVERS + "', {0}, {1}, {2}, {3}, {4}) = true",
+                location.lat, location.lon, location.radius, lat, lon);
+        if (!(Math.abs(lat) <= 90) || !Double.isFinite(lon)) {
+            return withinRadius;
+        }
+        Double maxRadius = locationRepository.findMaxRadius();
+        if (maxRadius == null) {
+            return Expressions.FALSE.isTrue();
+        }
+
+        double radiusDegrees = Math.max(maxRadius, 0) / KM_PER_DEGREE;
+        double minLat = lat - radiusDegrees - MARGIN_DEGREES;
+        double maxLat = lat + radiusDegrees + MARGIN_DEGREES;
+        BooleanExpression box = location.lat.between(minLat, maxLat)
+                .and(location.lat.subtract(lat).abs()
+                        .loe(location.radius.divide(KM_PER_DEGREE).add(MARGIN_DEGREES)));
+        if (minLat > -90 && maxLat < 90) {
+            // Наибольшее отклонение по долготе у круга, не содержащего полюс
+            double lonDegrees = Math.toDegrees(Math.asin(Math.min(1.0,
+                    Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(lat))))) + MARGIN_DEGREES;
+            if (lonDegrees < 180) {
+                box = box.and(lonRange(location, lon, lonDegrees));
+            }
+        }
+        BooleanExpression outOfRange = Expressions.booleanTemplate("function('"
+                + EventSearchFunctions.LOCATION_OUT_OF_RANGE + "', {0}, {1}) = true", location.lat, location.lon);
+        return box.or(outOfRange).and(withinRadius);
+    }
+
+    // Отрезок долгот [lon - lonDegrees, lon + lonDegrees] в диапазоне [-180, 180], через линию перемены дат - два отрезка
+    private static BooleanExpression lonRange(QLocation location, double lon, double lonDegrees) {
+        double center = lon - 360 * Math.floor((lon + 180) / 360);
+        BooleanExpression range = location.lon.between(center - lonDegrees, center + lonDegrees);
+        if (center - lonDegrees < -180) {
+            range = range.or(location.lon.between(center - lonDegrees + 360, 180.0));
+        }
+        if (center + lonDegrees > 180) {
+            range = range.or(location.lon.between(-180.0, center + lonDegrees - 360));
+        }
+        return range;
+    }
+}
@@ -1,12 +1,18 @@
 package ru.practicum.ewmservice.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.ewmservice.models.category.Category;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     void deleteCategoryById(Long categoryId);
 
     Optional<Category> getCategoryByName(String name);
+
+    @Query("select c from Category as c where c.id > ?1 order by c.id")
+    List<Category> findAllAfter(long afterId, Pageable pageable);
 }
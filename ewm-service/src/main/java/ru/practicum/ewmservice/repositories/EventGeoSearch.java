@@ -0,0 +1,11 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+
+/**
+ * Способ отбора событий, в радиус локации которых попадает точка, для QueryDSL-запросов к EventRepository.
+ * Условие входит в запрос, поэтому отбор выполняется до постраничного вывода.
+ */
+public interface EventGeoSearch {
+    BooleanExpression covers(double lat, double lon);
+}
@@ -1,26 +1,71 @@
 package ru.practicum.ewmservice.repositories;
 
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import ru.practicum.ewmservice.models.event.Event;
 
 import java.util.List;
 
-public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event> {
+public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event>,
+        EventRepositoryCustom {
 
-    @Query("select e from Event as e where e.initiator.id = ?1")
+    /**
+     * Категория, инициатор и локация загружаются тем же запросом, а не отдельным запросом на каждое событие.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
+    Page<Event> findAll(Predicate predicate, Pageable pageable);
+
+    @Query("select e from Event as e join fetch e.category join fetch e.initiator left join fetch e.location " +
+            "where e.initiator.id = ?1")
     List<Event> getUserEvents(Long userId, Pageable pageable);
 
     @Query("select e from Event as e where e.category.id = ?1 order by e.id")
     List<Event> getEventsByCategory(Long categoryId);
 
+    /**
+     * Занимает место в событии одним условным обновлением строки: параллельные заявки не могут превысить лимит,
+     * а блокировка строки держится только до конца транзакции заявки. Возвращает 0, если мест нет.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Event as e set e.confirmedRequests = e.confirmedRequests + 1 " +
+            "where e.id = ?1 and e.confirmedRequests < e.participantLimit")
+    int reserveParticipantSlot(Long eventId);
+
+    /**
+     * Число свободных мест в событии. Строка события блокируется до конца транзакции,
+     * чтобы места не заняли до изменения счётчика подтверждённых заявок.
+     */
+    @Query(value = "SELECT participant_limit - confirmed_requests FROM events WHERE id = ?1 FOR UPDATE",
+            nativeQuery = true)
+    int lockFreeParticipantSlots(Long eventId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Event as e set e.confirmedRequests = e.confirmedRequests + ?2 where e.id = ?1")
+    int addConfirmedRequests(Long eventId, int count);
+
+    @Query(value = "SELECT max(id) FROM (SELECT id FROM events WHERE id > ?1 ORDER BY id LIMIT ?2) AS batch",
+            nativeQuery = true)
+    Long findReconcileBatchEnd(long afterId, int batchSize);
 
-    @Query(value = "SELECT * " +
-            "FROM events as e " +
-            "INNER JOIN locations as l on e.location_id = l.id " +
-            "where distance(l.lat, l.lon, ?1, ?2) <= l.radius",
-    nativeQuery = true)
-    List<Event> getEventsByLocation(double lat, double lon);
+    /**
+     * Исправляет счётчики подтверждённых заявок событий с id в диапазоне (afterId, toId] и возвращает
+     * расхождение по каждому исправленному событию. Счётчик, изменённый после подсчёта заявок,
+     * не перезаписывается: заявка и счётчик меняются в одной транзакции, поэтому такой счётчик уже верен.
+     */
+    @Query(value = "WITH counts AS (" +
+            "SELECT e.id, e.confirmed_requests AS stored, count(p.id) AS actual FROM events AS e " +
+            "LEFT JOIN participation_requests AS p ON p.event = e.id AND p.status = 'CONFIRMED' " +
+            "WHERE e.id > ?1 AND e.id <= ?2 GROUP BY e.id, e.confirmed_requests) " +
+            "UPDATE events AS e SET confirmed_requests = c.actual FROM counts AS c " +
+            "WHERE e.id = c.id AND c.stored <> c.actual AND e.confirmed_requests = c.stored " +
+            "RETURNING CAST(abs(c.actual - c.stored) AS INTEGER)",
+            nativeQuery = true)
+    List<Integer> reconcileConfirmedRequests(long afterId, long toId);
 }
@@ -0,0 +1,32 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.ewmservice.models.event.Event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EventRepositoryCustom {
+    /**
+     * События, подходящие под predicate, по убыванию количества просмотров из event_views.
+     * Сортировка и постраничный вывод выполняются в базе данных.
+     */
+    List<Event> findAllOrderByViews(Predicate predicate, Pageable pageable);
+
+    /**
+     * Не больше size событий по возрастанию id, следующих за событием afterId.
+     * Если afterId равен null, возвращается первая страница.
+     */
+    List<Event> findAllAfterId(Predicate predicate, Long afterId, int size);
+
+    /**
+     * Не больше size событий по возрастанию даты события и id, следующих за событием (afterDate, afterId).
+     */
+    List<Event> findAllAfterEventDate(Predicate predicate, LocalDateTime afterDate, Long afterId, int size);
+
+    /**
+     * Не больше size событий по убыванию просмотров и возрастанию id, следующих за событием (afterViews, afterId).
+     */
+    List<Event> findAllOrderByViewsAfter(Predicate predicate, Long afterViews, Long afterId, int size);
+}
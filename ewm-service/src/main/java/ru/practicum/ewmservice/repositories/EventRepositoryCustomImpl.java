@@ -0,0 +1,95 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.ewmservice.models.event.Event;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.event.QEventViews;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class EventRepositoryCustomImpl implements EventRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Event> findAllOrderByViews(Predicate predicate, Pageable pageable) {
+        // У каждого события есть строка в event_views, поэтому обход идёт по индексу ix_event_views_views
+        return orderByViews(predicate)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+    }
+
+    @Override
+    public List<Event> findAllAfterId(Predicate predicate, Long afterId, int size) {
+        QEvent event = QEvent.event;
+        BooleanBuilder where = new BooleanBuilder(predicate);
+        if (afterId != null) {
+            where.and(event.id.gt(afterId));
+        }
+        return fetchRelations(new JPAQuery<Event>(entityManager)
+                .select(event)
+                .from(event))
+                .where(where)
+                .orderBy(event.id.asc())
+                .limit(size)
+                .fetch();
+    }
+
+    @Override
+    public List<Event> findAllAfterEventDate(Predicate predicate, LocalDateTime afterDate, Long afterId, int size) {
+        QEvent event = QEvent.event;
+        BooleanBuilder where = new BooleanBuilder(predicate);
+        if (afterDate != null) {
+            // Условие goe отдельно от сравнения пары, чтобы по нему строился диапазон индекса по дате
+            where.and(event.eventDate.goe(afterDate))
+                    .and(event.eventDate.gt(afterDate).or(event.id.gt(afterId)));
+        }
+        return fetchRelations(new JPAQuery<Event>(entityManager)
+                .select(event)
+                .from(event))
+                .where(where)
+                .orderBy(event.eventDate.asc(), event.id.asc())
+                .limit(size)
+                .fetch();
+    }
+
+    @Override
+    public List<Event> findAllOrderByViewsAfter(Predicate predicate, Long afterViews, Long afterId, int size) {
+        QEventViews eventViews = QEventViews.eventViews;
+        BooleanBuilder where = new BooleanBuilder(predicate);
+        if (afterViews != null) {
+            where.and(eventViews.views.loe(afterViews))
+                    .and(eventViews.views.lt(afterViews).or(eventViews.eventId.gt(afterId)));
+        }
+        return orderByViews(where)
+                .limit(size)
+                .fetch();
+    }
+
+    private JPAQuery<Event> orderByViews(Predicate predicate) {
+        QEvent event = QEvent.event;
+        QEventViews eventViews = QEventViews.eventViews;
+        return fetchRelations(new JPAQuery<Event>(entityManager)
+                .select(event)
+                .from(eventViews)
+                .join(event).on(event.id.eq(eventViews.eventId)))
+                .where(predicate)
+                .orderBy(eventViews.views.desc(), eventViews.eventId.asc());
+    }
+
+    // Категория, инициатор и локация загружаются вместе с событиями, а не отдельным запросом на каждое событие
+    private static JPAQuery<Event> fetchRelations(JPAQuery<Event> query) {
+        QEvent event = QEvent.event;
+        return query
+                .innerJoin(event.category).fetchJoin()
+                .innerJoin(event.initiator).fetchJoin()
+                .leftJoin(event.location).fetchJoin();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import lombok.Builder;
+import lombok.Getter;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.event.State;
+
+import java.time.LocalDateTime;
+
+/**
+ * Условия поиска событий. В предикат попадают только заданные фильтры: пустой текст и пустые списки
+ * считаются незаданными, список из одного значения превращается в сравнение на равенство,
+ * а у периода может быть задана только одна граница. Отбор по точке выполняется, только если заданы обе координаты.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class EventSearchCriteria {
+    private final String text;
+
+    private final Long[] users;
+
+    private final Long[] categories;
+
+    private final State[] states;
+
+    private final Boolean paid;
+
+    private final LocalDateTime rangeStart;
+
+    private final LocalDateTime rangeEnd;
+
+    private final boolean onlyAvailable;
+
+    private final Double lat;
+
+    private final Double lon;
+
+    public Predicate toPredicate(EventTextSearch textSearch, EventGeoSearch geoSearch) {
+        QEvent event = QEvent.event;
+        if (rangeStart != null && rangeEnd != null && rangeStart.isAfter(rangeEnd)) {
+            throw new IllegalStateException("Начало периода " + rangeStart + " позже его окончания " + rangeEnd);
+        }
+
+        BooleanBuilder predicate = new BooleanBuilder();
+        if (states != null && states.length == 1) {
+            predicate.and(event.state.eq(states[0]));
+        } else if (states != null && states.length > 1) {
+            predicate.and(event.state.in(states));
+        }
+        if (users != null && users.length == 1) {
+            predicate.and(event.initiator.id.eq(users[0]));
+        } else if (users != null && users.length > 1) {
+            predicate.and(event.initiator.id.in(users));
+        }
+        if (categories != null && categories.length == 1) {
+            predicate.and(event.category.id.eq(categories[0]));
+        } else if (categories != null && categories.length > 1) {
+            predicate.and(event.category.id.in(categories));
+        }
+        if (text != null && !text.isBlank()) {
+            predicate.and(textSearch.matches(text));
+        }
+        if (paid != null) {
+            predicate.and(event.paid.eq(paid));
+        }
+        if (onlyAvailable) {
+            // Условие совпадает с условием частичного индекса ix_events_available_event_date
+            predicate.and(event.confirmedRequests.lt(event.participantLimit));
+        }
+        if (rangeStart != null && rangeEnd != null) {
+            predicate.and(event.eventDate.between(rangeStart, rangeEnd));
+        } else if (rangeStart != null) {
+            predicate.and(event.eventDate.goe(rangeStart));
+        } else if (rangeEnd != null) {
+            predicate.and(event.eventDate.loe(rangeEnd));
+        }
+        if (lat != null && lon != null) {
+            predicate.and(geoSearch.covers(lat, lon));
+        }
+        return predicate;
+    }
+}
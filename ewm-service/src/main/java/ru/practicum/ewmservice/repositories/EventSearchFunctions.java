@@ -0,0 +1,43 @@
+package ru.practicum.ewmservice.repositories;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Функции полнотекстового и географического поиска событий для JPQL. Регистрируются через
+ * spring.jpa.properties.hibernate.metadata_builder_contributor.
+ */
+public class EventSearchFunctions implements MetadataBuilderContributor {
+    public static final String MATCH = "event_text_match";
+
+    public static final String RANK = "event_text_rank";
+
+    public static final String LOCATION_COVERS = "event_location_covers";
+
+    public static final String LOCATION_OUT_OF_RANGE = "event_location_out_of_range";
+
+    public static final String LOCATION_WITHIN = "event_location_within";
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        // ?1 - id события, ?2 - текст запроса, ?3 - шаблон LIKE для поиска подстроки
+        metadataBuilder.applySqlFunction(MATCH, new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "(?1 in (select found.id from search_event_ids(?2, ?3) as found(id)))"));
+        metadataBuilder.applySqlFunction(RANK, new SQLFunctionTemplate(StandardBasicTypes.DOUBLE,
+                "(select ts_rank(ranked.search_vector, event_search_query(?2)) from events as ranked " +
+                        "where ranked.id = ?1)"));
+        // ?1, ?2, ?3 - широта, долгота и радиус локации, ?4, ?5 - широта и долгота точки
+        metadataBuilder.applySqlFunction(LOCATION_COVERS, new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "(distance(?1, ?2, ?4, ?5) <= ?3)"));
+        // ?1, ?2 - широта и долгота локации. Выражение совпадает с условием индекса ix_locations_out_of_range
+        metadataBuilder.applySqlFunction(LOCATION_OUT_OF_RANGE, new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "(not (?1 between -90 and 90 and ?2 between -180 and 180))"));
+        // ?1, ?2, ?3 - широта, долгота и радиус локации, ?4, ?5 - широта и долгота точки.
+        // Радиус домножается на длину градуса дуги на сфере PostGIS в метрах, делённую на 111.144
+        metadataBuilder.applySqlFunction(LOCATION_WITHIN, new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN,
+                "st_dwithin(geography(st_makepoint(?2, ?1)), geography(st_makepoint(?5, ?4)), " +
+                        "?3 * (6371008.7714 * pi() / 180 / 111.144), false)"));
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+
+/**
+ * Способ отбора событий по тексту для QueryDSL-запросов к EventRepository.
+ */
+public interface EventTextSearch {
+    BooleanExpression matches(String text);
+
+    /**
+     * Порядок по убыванию релевантности или null, если способ поиска её не оценивает.
+     */
+    OrderSpecifier<?> relevance(String text);
+}
@@ -0,0 +1,24 @@
+package ru.practicum.ewmservice.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.ewmservice.models.event.EventViews;
+
+public interface EventViewsRepository extends JpaRepository<EventViews, Long> {
+
+    // Просмотры удалённых или несуществующих событий пропускаются
+    @Modifying
+    @Query(value = "INSERT INTO event_views (event_id, views) " +
+            "SELECT e.id, ?2 FROM events AS e WHERE e.id = ?1 " +
+            "ON CONFLICT (event_id) DO UPDATE SET views = excluded.views",
+            nativeQuery = true)
+    int upsertViews(long eventId, long views);
+
+    @Modifying
+    @Query(value = "INSERT INTO event_views (event_id, views) " +
+            "SELECT e.id, 0 FROM events AS e " +
+            "WHERE NOT EXISTS (SELECT 1 FROM event_views AS v WHERE v.event_id = e.id)",
+            nativeQuery = true)
+    int insertMissing();
+}
@@ -0,0 +1,36 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import ru.practicum.ewmservice.models.event.QEvent;
+
+import java.util.Locale;
+
+/**
+ * Полнотекстовый поиск по столбцу events.search_vector, который заполняет триггер (см. schema.sql).
+ * Запрос разбирается как в поисковой строке (websearch_to_tsquery) русским и английским словарём.
+ * Дополнительно находятся события, в кратком или полном описании которых встречается подстрока запроса:
+ * такие совпадения без совпадения по словам получают нулевую релевантность.
+ */
+public class FullTextEventTextSearch implements EventTextSearch {
+    @Override
+    public BooleanExpression matches(String text) {
+        return Expressions.booleanTemplate("function('" + EventSearchFunctions.MATCH + "', {0}, {1}, {2}) = true",
+                QEvent.event.id, text, likePattern(text));
+    }
+
+    @Override
+    public OrderSpecifier<?> relevance(String text) {
+        return Expressions.numberTemplate(Double.class, "function('" + EventSearchFunctions.RANK + "', {0}, {1})",
+                QEvent.event.id, text).desc();
+    }
+
+    private static String likePattern(String text) {
+        String escaped = text.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
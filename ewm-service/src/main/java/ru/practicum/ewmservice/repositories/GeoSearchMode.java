@@ -0,0 +1,10 @@
+package ru.practicum.ewmservice.repositories;
+
+public enum GeoSearchMode {
+    // Локации, в радиус которых попадает точка, находятся по индексу в памяти, а события отбираются по их id
+    INDEX,
+    // Прямоугольник широт и долгот по индексу locations (lat, lon), затем точная проверка функцией distance()
+    BOUNDING_BOX,
+    // ST_DWithin по geography с GiST-индексом, нужен PostGIS и скрипт postgis.sql
+    POSTGIS
+}
@@ -0,0 +1,18 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import ru.practicum.ewmservice.models.event.QEvent;
+
+public class LikeEventTextSearch implements EventTextSearch {
+    @Override
+    public BooleanExpression matches(String text) {
+        return QEvent.event.annotation.containsIgnoreCase(text)
+                .or(QEvent.event.description.containsIgnoreCase(text));
+    }
+
+    @Override
+    public OrderSpecifier<?> relevance(String text) {
+        return null;
+    }
+}
@@ -9,12 +9,12 @@ import java.util.List;
 import java.util.Optional;
 
 public interface LocationRepository extends JpaRepository<Location, Long> {
-    @Query(value = "SELECT * " +
-            "FROM locations as l " +
-            "where distance(l.lat, l.lon, ?1, ?2) <= l.radius",
-            nativeQuery = true)
-    Optional<Location> findLocationByCoordinate(double lat, double lon);
-
     @Query("select l from Location as l where l.name is not null")
     List<Location> findLocationsWhereNameNotNull(Pageable pageable);
+
+    @Query("select l from Location as l where l.name is not null and l.id > ?1 order by l.id")
+    List<Location> findLocationsWhereNameNotNullAfter(long afterId, Pageable pageable);
+
+    @Query("select max(l.radius) from Location as l")
+    Double findMaxRadius();
 }
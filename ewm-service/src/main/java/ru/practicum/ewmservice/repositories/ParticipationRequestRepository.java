@@ -1,17 +1,91 @@
 package ru.practicum.ewmservice.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.ewmservice.models.participation_request.ParticipationRequest;
+import ru.practicum.ewmservice.models.participation_request.Status;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ParticipationRequestRepository extends JpaRepository<ParticipationRequest, Long> {
     Optional<ParticipationRequest> findByEventAndRequester(Long eventId, Long userId);
 
+    /**
+     * Создаёт заявку, если у пользователя ещё нет заявки на это событие, и возвращает её id.
+     * Параллельная вставка той же заявки ждёт фиксации первой и ничего не вставляет.
+     */
+    @Query(value = "INSERT INTO participation_requests (created, event, requester, status) VALUES (?1, ?2, ?3, ?4) " +
+            "ON CONFLICT ON CONSTRAINT uq_participant_per_event DO NOTHING RETURNING id",
+            nativeQuery = true)
+    Optional<Long> insertIfAbsent(LocalDateTime created, Long eventId, Long userId, String status);
+
+    // Пусто, если ключ уже занят
+    @Query(value = "INSERT INTO idempotency_keys (requester, idempotency_key, event, created) " +
+            "VALUES (?1, ?2, ?3, ?4) ON CONFLICT DO NOTHING RETURNING event",
+            nativeQuery = true)
+    Optional<Long> claimIdempotencyKey(Long userId, String idempotencyKey, Long eventId, LocalDateTime created);
+
+    @Query(value = "SELECT request_id FROM idempotency_keys " +
+            "WHERE requester = ?1 AND idempotency_key = ?2 AND event = ?3",
+            nativeQuery = true)
+    Optional<Long> findIdempotentRequest(Long userId, String idempotencyKey, Long eventId);
+
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET request_id = ?3 WHERE requester = ?1 AND idempotency_key = ?2",
+            nativeQuery = true)
+    int completeIdempotencyKey(Long userId, String idempotencyKey, Long requestId);
+
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE created < ?1", nativeQuery = true)
+    int deleteIdempotencyKeysCreatedBefore(LocalDateTime created);
+
     List<ParticipationRequest> findAllByRequesterOrderById(Long userId);
 
     @Query("select p from  ParticipationRequest as p where p.event = ?1 order by p.id")
     List<ParticipationRequest> findAllRequestsByEvent(Long eventId);
+
+    @Query("select p from ParticipationRequest as p where p.event = ?1 and p.id > ?2 order by p.id")
+    List<ParticipationRequest> findEventRequestsAfter(Long eventId, long afterId, Pageable pageable);
+
+    @Query("select p from ParticipationRequest as p where p.event = ?1 and p.status = ?2 and p.id > ?3 order by p.id")
+    List<ParticipationRequest> findEventRequestsAfter(Long eventId, Status status, long afterId, Pageable pageable);
+
+    @Query("select p from ParticipationRequest as p where p.requester = ?1 and p.id > ?2 order by p.id")
+    List<ParticipationRequest> findRequesterRequestsAfter(Long userId, long afterId, Pageable pageable);
+
+    @Query("select p from ParticipationRequest as p where p.requester = ?1 and p.status = ?2 and p.id > ?3 " +
+            "order by p.id")
+    List<ParticipationRequest> findRequesterRequestsAfter(Long userId, Status status, long afterId,
+                                                          Pageable pageable);
+
+    // Заявки блокируются, чтобы их статус не изменился до массового обновления
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from ParticipationRequest as p where p.event = ?1 and p.id in ?2")
+    List<ParticipationRequest> findAllForUpdateByEventAndIdIn(Long eventId, Collection<Long> requestIds);
+
+    // Вместе с подтверждаемыми блокируются все ожидающие заявки события: если места закончатся, их отклонят
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from ParticipationRequest as p where p.event = ?1 and (p.id in ?2 or p.status = ?3)")
+    List<ParticipationRequest> findAllForUpdateByEventAndIdInOrStatus(Long eventId, Collection<Long> requestIds,
+                                                                      Status status);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ParticipationRequest as p set p.status = ?2 where p.id in ?1")
+    int updateStatus(Collection<Long> requestIds, Status status);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ParticipationRequest as p set p.status = ?3 where p.event = ?1 and p.status = ?2")
+    int updateStatusByEvent(Long eventId, Status expected, Status status);
+
+    // Статус меняется, только если его не изменил параллельный запрос
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ParticipationRequest as p set p.status = ?3 where p.id = ?1 and p.status = ?2")
+    int changeStatus(Long requestId, Status expected, Status status);
 }
@@ -0,0 +1,20 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.location.QLocation;
+
+/**
+ * Отбор через ST_DWithin по geography на сфере с GiST-индексом ix_locations_geography (см. postgis.sql).
+ * Радиус переводится в метры так, чтобы граница совпадала с границей функции distance().
+ */
+public class PostGisEventGeoSearch implements EventGeoSearch {
+    @Override
+    public BooleanExpression covers(double lat, double lon) {
+        QLocation location = QEvent.event.location;
+        return Expressions.booleanTemplate("function('" + EventSearchFunctions.LOCATION_WITHIN
+                        + "', {0}, {1}, {2}, {3}, {4}) = true",
+                location.lat, location.lon, location.radius, lat, lon);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ewmservice.repositories;
+
+public enum TextSearchMode {
+    // Поиск подстроки в кратком и полном описании, работает на любой базе данных
+    LIKE,
+    // Полнотекстовый поиск PostgreSQL с ранжированием и поиском подстроки по триграммному индексу
+    FULLTEXT
+}
@@ -12,5 +12,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("select u from User as u where u.id in (?1) order by u.id")
     List<User> getUsers(Long[] ids, Pageable pageable);
 
+    @Query("select u from User as u where u.id in (?1) and u.id > ?2 order by u.id")
+    List<User> getUsersAfter(Long[] ids, long afterId, Pageable pageable);
+
     Optional<User> getUserByName(String name);
 }
@@ -0,0 +1,7 @@
+package ru.practicum.ewmservice.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.ewmservice.models.event.ViewsSyncState;
+
+public interface ViewsSyncStateRepository extends JpaRepository<ViewsSyncState, String> {
+}
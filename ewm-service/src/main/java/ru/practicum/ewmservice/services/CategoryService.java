@@ -1,5 +1,6 @@
 package ru.practicum.ewmservice.services;
 
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.category.dto.NewCategoryDto;
 
@@ -14,5 +15,7 @@ public interface CategoryService {
 
     List<CategoryDto> getCategories(int from, int size);
 
+    KeysetPage<CategoryDto> getCategories(String cursor, int size);
+
     CategoryDto getCategory(Long categoryId);
 }
@@ -3,9 +3,14 @@ package ru.practicum.ewmservice.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.ContinuationToken;
+import ru.practicum.ewmservice.EntityCache;
+import ru.practicum.ewmservice.EntityCacheConfig;
 import ru.practicum.ewmservice.FromSizeRequest;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.DataConflictException;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.category.Category;
@@ -28,6 +33,8 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
 
+    private final EntityCache entityCache;
+
     private final EventRepository eventRepository;
 
     @Override
@@ -42,6 +49,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = EntityCacheConfig.CATEGORIES, key = "#categoryDto.id")
     public CategoryDto patchCategory(CategoryDto categoryDto) {
         Category category = CategoryMapper.toCategoryFromCategoryDto(categoryDto);
         checkCategoryInDatabase(category.getId());
@@ -53,6 +61,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = EntityCacheConfig.CATEGORIES, key = "#categoryId")
     public void deleteCategory(Long categoryId) {
         checkCategoryInDatabase(categoryId);
         List<Event> eventsByCategory = eventRepository.getEventsByCategory(categoryId);
@@ -73,6 +82,18 @@ public class CategoryServiceImpl implements CategoryService {
         return result;
     }
 
+    @Override
+    public KeysetPage<CategoryDto> getCategories(String cursor, int size) {
+        ContinuationToken after = ContinuationToken.decode(cursor, ContinuationToken.BY_ID);
+        List<Category> found = categoryRepository.findAllAfter(after == null ? 0 : after.getId(),
+                FromSizeRequest.of(0, size));
+        KeysetPage<CategoryDto> result = KeysetPage.of(found, size,
+                category -> ContinuationToken.of(ContinuationToken.BY_ID, null, category.getId()),
+                CategoryMapper::toCategoryDtoFromCategory);
+        log.info("Получены категории из базы данных: {}", result);
+        return result;
+    }
+
     @Override
     public CategoryDto getCategory(Long categoryId) {
         Category category = checkCategoryInDatabase(categoryId);
@@ -82,7 +103,8 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     private Category checkCategoryInDatabase(Long categoryId) {
-        Optional<Category> categoryOptional = categoryRepository.findById(categoryId);
+        Optional<Category> categoryOptional = entityCache.findCategory(categoryId)
+                .map(EntityCache.CategorySnapshot::toCategory);
         if (categoryOptional.isEmpty()) {
             throw new EntityNotFoundException("Категория с id " + categoryId + " не найдена в базе данных");
         }
@@ -0,0 +1,96 @@
+package ru.practicum.ewmservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.repositories.EventRepository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сверка счётчиков подтверждённых заявок событий с таблицей заявок. Счётчик меняется вместе со статусом
+ * заявки, а сверка исправляет расхождения, появившиеся в обход сервиса. События обходятся пачками
+ * по batch-size в отдельных транзакциях, чтобы не держать блокировки всей таблицы событий.
+ */
+@Component
+@Slf4j
+public class ConfirmedRequestsReconciler {
+    private final EventRepository eventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final AtomicLong lastDrift = new AtomicLong();
+
+    private final Counter driftCounter;
+
+    private final Counter repairedCounter;
+
+    private final Counter failedCounter;
+
+    ConfirmedRequestsReconciler(EventRepository eventRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${events.confirmed-requests.reconcile.enabled}") boolean enabled,
+                                @Value("${events.confirmed-requests.reconcile.batch-size}") int batchSize) {
+        this.eventRepository = eventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        meterRegistry.gauge("ewm.requests.reconcile.last-drift", lastDrift);
+        this.driftCounter = meterRegistry.counter("ewm.requests.reconcile.drift");
+        this.repairedCounter = meterRegistry.counter("ewm.requests.reconcile.repaired");
+        this.failedCounter = meterRegistry.counter("ewm.requests.reconcile.failed");
+    }
+
+    @Scheduled(fixedDelayString = "${events.confirmed-requests.reconcile.interval-ms}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcileOnce();
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.info("Не удалось сверить счётчики подтверждённых заявок: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает суммарное расхождение счётчиков с числом подтверждённых заявок.
+     */
+    long reconcileOnce() {
+        long drift = 0;
+        long repaired = 0;
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            Long to = eventRepository.findReconcileBatchEnd(from, batchSize);
+            if (to == null) {
+                break;
+            }
+            List<Integer> fixed = transactionTemplate.execute(status ->
+                    eventRepository.reconcileConfirmedRequests(from, to));
+            drift += fixed.stream().mapToLong(Integer::longValue).sum();
+            repaired += fixed.size();
+            afterId = to;
+        }
+        lastDrift.set(drift);
+        driftCounter.increment(drift);
+        repairedCounter.increment(repaired);
+        if (repaired > 0) {
+            log.info("Исправлены счётчики подтверждённых заявок событий: {}, суммарное расхождение: {}",
+                    repaired, drift);
+        }
+        return drift;
+    }
+}
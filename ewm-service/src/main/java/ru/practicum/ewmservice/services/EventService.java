@@ -1,5 +1,6 @@
 package ru.practicum.ewmservice.services;
 
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.event.State;
 import ru.practicum.ewmservice.models.event.dto.*;
 
@@ -21,10 +22,20 @@ public interface EventService {
 
     EventFullDto rejectEvent(Long eventId);
 
+    /**
+     * Публичный поиск: возвращает только опубликованные события, без rangeStart - ещё не начавшиеся.
+     */
     List<EventShortDto> searchEvents(String text, Long[] categories, Boolean paid, LocalDateTime rangeStart,
                                      LocalDateTime rangeEnd, boolean isAvailable, String sort, int from,
                                      int size, String ip, String uri, Double lat, Double lon);
 
+    /**
+     * Публичный поиск с постраничным выводом по курсору. Пустой курсор означает первую страницу.
+     */
+    KeysetPage<EventShortDto> searchEvents(String text, Long[] categories, Boolean paid, LocalDateTime rangeStart,
+                                           LocalDateTime rangeEnd, boolean isAvailable, String sort, String cursor,
+                                           int size, String ip, String uri, Double lat, Double lon);
+
     EventFullDto getEventFullInfoById(Long eventId, String ip, String uri);
 
     EventFullDto putEventByAdmin(Long eventId, AdminUpdateEventRequest adminUpdateEventRequest);
@@ -32,6 +43,10 @@ public interface EventService {
     List<EventFullDto> searchEventByAdmin(Long[] users, State[] states, Long[] categories, LocalDateTime rangeStart,
                                           LocalDateTime rangeEnd, int from, int size, Double lat, Double lon);
 
+    KeysetPage<EventFullDto> searchEventByAdmin(Long[] users, State[] states, Long[] categories,
+                                                LocalDateTime rangeStart, LocalDateTime rangeEnd, String cursor,
+                                                int size, Double lat, Double lon);
+
     List<EventShortDto> searchEventInLocation(double lat, double lon);
 
 }
@@ -1,28 +1,35 @@
 package ru.practicum.ewmservice.services;
 
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.querydsl.QSort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.ContinuationToken;
+import ru.practicum.ewmservice.EntityCache;
 import ru.practicum.ewmservice.FromSizeRequest;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.httpClient.HttpClient;
+import ru.practicum.ewmservice.httpClient.StatsViewsCache;
 import ru.practicum.ewmservice.models.category.Category;
 import ru.practicum.ewmservice.models.event.Event;
-import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.event.EventViews;
 import ru.practicum.ewmservice.models.event.State;
 import ru.practicum.ewmservice.models.event.dto.*;
-import ru.practicum.ewmservice.models.httpClientRequestEntity.ViewStats;
 import ru.practicum.ewmservice.models.location.Location;
-import ru.practicum.ewmservice.models.location.LocationFilter;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 import ru.practicum.ewmservice.models.location.dto.LocationMapper;
 import ru.practicum.ewmservice.models.user.User;
-import ru.practicum.ewmservice.repositories.CategoryRepository;
+import ru.practicum.ewmservice.repositories.EventGeoSearch;
 import ru.practicum.ewmservice.repositories.EventRepository;
+import ru.practicum.ewmservice.repositories.EventSearchCriteria;
+import ru.practicum.ewmservice.repositories.EventTextSearch;
+import ru.practicum.ewmservice.repositories.EventViewsRepository;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -30,7 +37,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 @Slf4j
@@ -40,7 +46,7 @@ public class EventServiceImpl implements EventService {
 
     private final EventRepository eventRepository;
 
-    private final CategoryRepository categoryRepository;
+    private final EntityCache entityCache;
 
     private final UserServiceImpl userService;
 
@@ -48,9 +54,15 @@ public class EventServiceImpl implements EventService {
 
     private final HttpClient httpClient;
 
+    private final StatsViewsCache viewsCache;
+
+    private final EventViewsRepository eventViewsRepository;
+
     private final LocationServiceImpl locationService;
 
-    private final LocationFilter locationFilter;
+    private final EventGeoSearch eventGeoSearch;
+
+    private final EventTextSearch eventTextSearch;
 
     @Override
     @Transactional
@@ -79,6 +91,7 @@ public class EventServiceImpl implements EventService {
         event.setState(State.PENDING);
 
         EventFullDto savedEvent = mapper.toEventFullDtoFromEvent(eventRepository.save(event));
+        eventViewsRepository.save(new EventViews(savedEvent.getId(), 0));
         log.debug("Событие {} сохранено в базе данных", savedEvent);
         log.debug("{}", eventRepository.findById(savedEvent.getId()));
         return savedEvent;
@@ -161,75 +174,77 @@ public class EventServiceImpl implements EventService {
     public List<EventShortDto> searchEvents(String text, Long[] categories, Boolean paid, LocalDateTime rangeStart,
                                             LocalDateTime rangeEnd, boolean isAvailable, String sort, int from,
                                             int size, String ip, String uri, Double lat, Double lon) {
-        if (rangeStart == null) {
-            rangeStart = LocalDateTime.now();
-        }
-        if (rangeEnd == null) {
-            rangeEnd = LocalDateTime.now().plusYears(100);
-        }
         Pageable pageable = setPageable(from, size, sort);
+        if (sort == null && text != null) {
+            // Без явной сортировки найденные по тексту события упорядочиваются по релевантности
+            OrderSpecifier<?> relevance = eventTextSearch.relevance(text);
+            if (relevance != null) {
+                pageable = FromSizeRequest.of(from, size, new QSort(relevance));
+            }
+        }
 
+        Predicate predicate = publicSearchPredicate(text, categories, paid, rangeStart, rangeEnd, isAvailable,
+                lat, lon);
+        // Сортировка по просмотрам выполняется в базе данных по таблице event_views
+        List<Event> foundEvents = "VIEWS".equals(sort)
+                ? eventRepository.findAllOrderByViews(predicate, pageable)
+                : eventRepository.findAll(predicate, pageable).getContent();
 
-        BooleanExpression byAnnotation;
-        BooleanExpression byDescription;
-        BooleanExpression byPaid;
-        BooleanExpression byAvailable;
-        BooleanExpression byCategories;
-        BooleanExpression byEventDate = QEvent.event.eventDate.between(rangeStart, rangeEnd);
+        List<EventShortDto> result = toEventShortDtos(foundEvents, getEventViews(ids(foundEvents)));
+        log.info("Найден список событий в базе данных: {}", result);
+        httpClient.postStat(null, uri, ip);
+        return result;
+    }
 
-        if (text == null) {
-            byAnnotation = QEvent.event.annotation.ne("");
-            byDescription = QEvent.event.description.ne("");
-        } else {
-            byAnnotation = QEvent.event.annotation.containsIgnoreCase(text);
-            byDescription = QEvent.event.description.containsIgnoreCase(text);
-        }
-        if (categories == null) {
-            byCategories = QEvent.event.category.id.ne(0L);
-        } else {
-            byCategories = QEvent.event.category.id.in(categories);
-        }
-        if (paid == null) {
-            byPaid = QEvent.event.paid.isTrue().or(QEvent.event.paid.isFalse());
-        } else {
-            byPaid = QEvent.event.paid.eq(paid);
-        }
-        if (isAvailable) {
-            byAvailable = QEvent.event.confirmedRequests.lt(QEvent.event.participantLimit);
-        } else {
-            byAvailable = QEvent.event.id.ne(0L);
+    @Override
+    public KeysetPage<EventShortDto> searchEvents(String text, Long[] categories, Boolean paid,
+                                                  LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                                  boolean isAvailable, String sort, String cursor, int size,
+                                                  String ip, String uri, Double lat, Double lon) {
+        String order;
+        switch (String.valueOf(sort)) {
+            case "EVENT_DATE":
+                order = ContinuationToken.BY_EVENT_DATE;
+                break;
+            case "VIEWS":
+                order = ContinuationToken.BY_VIEWS;
+                break;
+            case "null":
+                // Релевантность не подходит для курсора, поэтому без явной сортировки события идут по id
+                order = ContinuationToken.BY_ID;
+                break;
+            default:
+                throw new IllegalStateException("Указанного метода сортировки не существует");
         }
-
-        Iterable<Event> foundEvents = eventRepository.findAll(byAnnotation.or(byDescription).and(byCategories)
-                .and(byPaid).and(byAvailable).and(byEventDate), pageable);
-
-        // Отбираем события по локации
-        if (lat != null && lon != null) {
-            foundEvents = StreamSupport.stream(foundEvents.spliterator(), false)
-                    .filter((Event e) -> {
-                        double dist = locationFilter.calculateDistance(
-                                e.getLocation().getLat(), e.getLocation().getLon(), lat, lon);
-                        return dist <= e.getLocation().getRadius();
-                    })
-                    .collect(Collectors.toList());
+        ContinuationToken after = ContinuationToken.decode(cursor, order);
+        Long afterId = after == null ? null : after.getId();
+
+        Predicate predicate = publicSearchPredicate(text, categories, paid, rangeStart, rangeEnd, isAvailable,
+                lat, lon);
+        List<Event> foundEvents;
+        switch (order) {
+            case ContinuationToken.BY_EVENT_DATE:
+                foundEvents = eventRepository.findAllAfterEventDate(predicate,
+                        after == null ? null : after.getDateKey(), afterId, size);
+                break;
+            case ContinuationToken.BY_VIEWS:
+                foundEvents = eventRepository.findAllOrderByViewsAfter(predicate,
+                        after == null ? null : after.getLongKey(), afterId, size);
+                break;
+            default:
+                foundEvents = eventRepository.findAllAfterId(predicate, afterId, size);
         }
 
-        List<EventShortDto> result = StreamSupport.stream(foundEvents.spliterator(), false)
-                .map(mapper::toEventShortDtoFromEvent)
-                .collect(Collectors.toList());
-
-        String[] uris = result.stream().map((EventShortDto e) -> ("/event/" + e.getId())).toArray(String[]::new);
-
-        Map<String, ViewStats> viewStatsMap = httpClient.getStat(LocalDateTime.now().minusYears(100),
-                LocalDateTime.now().plusYears(100), uris, true);
-        if (viewStatsMap != null) {
-            result = result.stream()
-                    .peek((e -> {
-                        if (viewStatsMap.get("/event/" + e.getId()) != null) {
-                            e.setViews(Math.toIntExact(viewStatsMap.get("/event/" + e.getId()).getHits()));
-                        }
-                    })).collect(Collectors.toList());
+        Map<Long, Long> views = getEventViews(ids(foundEvents));
+        String nextCursor = null;
+        if (foundEvents.size() == size) {
+            Event last = foundEvents.get(foundEvents.size() - 1);
+            Object key = ContinuationToken.BY_EVENT_DATE.equals(order) ? last.getEventDate()
+                    : ContinuationToken.BY_VIEWS.equals(order) ? views.getOrDefault(last.getId(), 0L) : null;
+            nextCursor = ContinuationToken.of(order, key, last.getId()).encode();
         }
+        KeysetPage<EventShortDto> result = new KeysetPage<>(
+                toEventShortDtos(foundEvents, views), nextCursor);
         log.info("Найден список событий в базе данных: {}", result);
         httpClient.postStat(null, uri, ip);
         return result;
@@ -241,10 +256,8 @@ public class EventServiceImpl implements EventService {
         httpClient.postStat(event.getId(), uri, ip);
         eventRepository.save(event);
         EventFullDto result = mapper.toEventFullDtoFromEvent(event);
-        Map<String, ViewStats> viewStatsMap = httpClient.getStat(LocalDateTime.now().minusYears(100),
-                LocalDateTime.now().plusYears(100), new String[]{uri}, true);
-        if (viewStatsMap != null) {
-            Long views = viewStatsMap.get(uri).getHits();
+        if (uri != null) {
+            Long views = viewsCache.getViews(List.of(uri)).get(uri);
             result.setViews(Math.toIntExact(views));
         }
         log.debug("Получено событие из базы данных: {}", result);
@@ -272,71 +285,35 @@ public class EventServiceImpl implements EventService {
                                                  LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size,
                                                  Double lat, Double lon) {
         Pageable pageable = setPageable(from, size, null);
+        Predicate predicate = adminSearchPredicate(users, states, categories, rangeStart, rangeEnd, lat, lon);
+        List<Event> foundEvents = eventRepository.findAll(predicate, pageable).getContent();
 
-        BooleanExpression byUserId;
-        BooleanExpression byStates;
-        BooleanExpression byCategories;
-        BooleanExpression byEventDate;
-
-        if (users != null) {
-            byUserId = QEvent.event.initiator.id.in(users);
-        } else {
-            byUserId = QEvent.event.initiator.id.ne(0L);
-        }
-        if (states != null) {
-            byStates = QEvent.event.state.in(states);
-        } else {
-            byStates = QEvent.event.state.isNotNull();
-        }
-        if (categories != null) {
-            byCategories = QEvent.event.category.id.in(categories);
-        } else {
-            byCategories = QEvent.event.category.id.ne(0L);
-        }
-        if (rangeEnd == null && rangeStart == null) {
-            byEventDate = QEvent.event.eventDate.after(LocalDateTime.now().minusYears(100));
-        } else {
-            byEventDate = QEvent.event.eventDate.between(rangeStart, rangeEnd);
-        }
-
-        Iterable<Event> foundEvents = eventRepository.findAll(byCategories.and(byUserId).and(byStates)
-                .and(byEventDate), pageable);
-        System.out.println(foundEvents);
-
-        // Отбираем события по локации
-        if (lat != null && lon != null) {
-            foundEvents = StreamSupport.stream(foundEvents.spliterator(), false)
-                    .filter((Event e) -> {
-                        double dist = locationFilter.calculateDistance(
-                                e.getLocation().getLat(), e.getLocation().getLon(), lat, lon);
-                        return dist <= e.getLocation().getRadius();
-                    })
-                    .collect(Collectors.toList());
-        }
-
-        List<EventFullDto> result = StreamSupport.stream(foundEvents.spliterator(), false)
-                .map(mapper::toEventFullDtoFromEvent)
-                .collect(Collectors.toList());
-        String[] uris = result.stream().map((EventFullDto e) -> ("/event/" + e.getId())).toArray(String[]::new);
-
-        Map<String, ViewStats> viewStatsMap = httpClient.getStat(LocalDateTime.now().minusYears(100),
-                LocalDateTime.now().plusYears(100), uris, true);
-        if (viewStatsMap != null) {
-            result = result.stream()
-                    .peek((e -> {
-                        if (viewStatsMap.get("/event/" + e.getId()) != null) {
-                            e.setViews(Math.toIntExact(viewStatsMap.get("/event/" + e.getId()).getHits()));
-                        }
-                    })).collect(Collectors.toList());
-        }
+        List<EventFullDto> result = toEventFullDtos(foundEvents, getEventViews(ids(foundEvents)));
+        log.debug("Найден список событий в базе данных: {}", result);
+        return result;
+    }
 
+    @Override
+    public KeysetPage<EventFullDto> searchEventByAdmin(Long[] users, State[] states, Long[] categories,
+                                                       LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                                       String cursor, int size, Double lat, Double lon) {
+        ContinuationToken after = ContinuationToken.decode(cursor, ContinuationToken.BY_ID);
+        List<Event> foundEvents = eventRepository.findAllAfterId(
+                adminSearchPredicate(users, states, categories, rangeStart, rangeEnd, lat, lon),
+                after == null ? null : after.getId(), size);
+
+        String nextCursor = foundEvents.size() == size
+                ? ContinuationToken.of(ContinuationToken.BY_ID, null, foundEvents.get(size - 1).getId()).encode()
+                : null;
+        KeysetPage<EventFullDto> result = new KeysetPage<>(
+                toEventFullDtos(foundEvents, getEventViews(ids(foundEvents))), nextCursor);
         log.debug("Найден список событий в базе данных: {}", result);
         return result;
     }
 
     @Override
     public List<EventShortDto> searchEventInLocation(double lat, double lon) {
-        List<EventShortDto> result = eventRepository.getEventsByLocation(lat, lon).stream()
+        List<EventShortDto> result = locationService.getEventsByCoordinate(lat, lon).stream()
                 .map(mapper::toEventShortDtoFromEvent)
                 .collect(Collectors.toList());
         log.debug("Получен список событий из базы данных: {}", result);
@@ -344,7 +321,8 @@ public class EventServiceImpl implements EventService {
     }
 
     private Category checkCategoryInDatabase(Long categoryId) {
-        Optional<Category> categoryOptional = categoryRepository.findById(categoryId);
+        Optional<Category> categoryOptional = entityCache.findCategory(categoryId)
+                .map(EntityCache.CategorySnapshot::toCategory);
         if (categoryOptional.isEmpty()) {
             throw new
                     EntityNotFoundException("Категория с id " + categoryId + " не найдена в базе данных");
@@ -361,6 +339,62 @@ public class EventServiceImpl implements EventService {
         return eventOptional.get();
     }
 
+    // Публичный поиск возвращает только опубликованные события, по умолчанию - ещё не начавшиеся
+    private Predicate publicSearchPredicate(String text, Long[] categories, Boolean paid, LocalDateTime rangeStart,
+                                            LocalDateTime rangeEnd, boolean isAvailable, Double lat, Double lon) {
+        return EventSearchCriteria.builder()
+                .text(text)
+                .categories(categories)
+                .paid(paid)
+                .states(new State[]{State.PUBLISHED})
+                .rangeStart(rangeStart == null ? LocalDateTime.now() : rangeStart)
+                .rangeEnd(rangeEnd)
+                .onlyAvailable(isAvailable)
+                .lat(lat)
+                .lon(lon)
+                .build()
+                .toPredicate(eventTextSearch, eventGeoSearch);
+    }
+
+    private Predicate adminSearchPredicate(Long[] users, State[] states, Long[] categories,
+                                           LocalDateTime rangeStart, LocalDateTime rangeEnd, Double lat, Double lon) {
+        return EventSearchCriteria.builder()
+                .users(users)
+                .states(states)
+                .categories(categories)
+                .rangeStart(rangeStart)
+                .rangeEnd(rangeEnd)
+                .lat(lat)
+                .lon(lon)
+                .build()
+                .toPredicate(eventTextSearch, eventGeoSearch);
+    }
+
+    private List<EventShortDto> toEventShortDtos(List<Event> events, Map<Long, Long> views) {
+        List<EventShortDto> result = events.stream()
+                .map(mapper::toEventShortDtoFromEvent)
+                .collect(Collectors.toList());
+        result.forEach(e -> e.setViews(Math.toIntExact(views.getOrDefault(e.getId(), 0L))));
+        return result;
+    }
+
+    private List<EventFullDto> toEventFullDtos(List<Event> events, Map<Long, Long> views) {
+        List<EventFullDto> result = events.stream()
+                .map(mapper::toEventFullDtoFromEvent)
+                .collect(Collectors.toList());
+        result.forEach(e -> e.setViews(Math.toIntExact(views.getOrDefault(e.getId(), 0L))));
+        return result;
+    }
+
+    private static List<Long> ids(List<Event> events) {
+        return events.stream().map(Event::getId).collect(Collectors.toList());
+    }
+
+    private Map<Long, Long> getEventViews(List<Long> eventIds) {
+        return eventViewsRepository.findAllById(eventIds).stream()
+                .collect(Collectors.toMap(EventViews::getEventId, EventViews::getViews));
+    }
+
     private void checkIsEventInitiator(Long userId, Event event) {
         if (!event.getInitiator().getId().equals(userId)) {
             throw new IllegalStateException("Пользователь с id " + userId + " не является инициатором события");
@@ -373,7 +407,8 @@ public class EventServiceImpl implements EventService {
                 sort = "eventDate";
                 return FromSizeRequest.of(from, size, Sort.by(sort).ascending());
             case "VIEWS":
-                return FromSizeRequest.of(from, size, Sort.by(sort.toLowerCase()).ascending());
+                // Сортировку по просмотрам задаёт запрос EventRepository.findAllOrderByViews
+                return FromSizeRequest.of(from, size, null);
             case "null":
                 return FromSizeRequest.of(from, size, null);
             default:
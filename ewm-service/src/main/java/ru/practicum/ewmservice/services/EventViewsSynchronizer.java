@@ -0,0 +1,150 @@
+package ru.practicum.ewmservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.httpClient.HttpClient;
+import ru.practicum.ewmservice.models.event.ViewsSyncState;
+import ru.practicum.ewmservice.models.httpClientRequestEntity.ViewStats;
+import ru.practicum.ewmservice.repositories.EventViewsRepository;
+import ru.practicum.ewmservice.repositories.ViewsSyncStateRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Синхронизация таблицы event_views с сервисом статистики. Первый запуск (и запуск после сброса отметки
+ * по расписанию full-sync-cron) загружает просмотры всех событий. Дальше по отметке high_water_mark
+ * запрашиваются только uri событий, у которых с прошлой синхронизации появились хиты, и для них
+ * заново загружается число уникальных просмотров. Хиты, пришедшие в сервис статистики позже чем
+ * через lag-ms, учитываются при следующей полной синхронизации.
+ */
+@Component
+@Slf4j
+public class EventViewsSynchronizer {
+    private static final String SYNC_NAME = "event_views";
+
+    private static final Pattern EVENT_URI = Pattern.compile("/events/(\\d{1,18})");
+
+    private static final int URIS_PER_REQUEST = 100;
+
+    private final HttpClient httpClient;
+
+    private final EventViewsRepository eventViewsRepository;
+
+    private final ViewsSyncStateRepository syncStateRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long lagMs;
+
+    private final Counter updatedCounter;
+
+    private final Counter failedCounter;
+
+    EventViewsSynchronizer(HttpClient httpClient,
+                           EventViewsRepository eventViewsRepository,
+                           ViewsSyncStateRepository syncStateRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${stat-server.views-sync.enabled}") boolean enabled,
+                           @Value("${stat-server.views-sync.lag-ms}") long lagMs) {
+        this.httpClient = httpClient;
+        this.eventViewsRepository = eventViewsRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.lagMs = lagMs;
+        this.updatedCounter = meterRegistry.counter("ewm.views.sync.updated");
+        this.failedCounter = meterRegistry.counter("ewm.views.sync.failed");
+    }
+
+    @Scheduled(fixedDelayString = "${stat-server.views-sync.interval-ms}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            syncOnce();
+        } catch (Exception e) {
+            // Отметка не сдвигается, поэтому пропущенный период будет загружен при следующем запуске
+            failedCounter.increment();
+            log.info("Не удалось синхронизировать просмотры событий: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${stat-server.views-sync.full-sync-cron}")
+    public void requestFullSync() {
+        if (!enabled) {
+            return;
+        }
+        syncStateRepository.save(new ViewsSyncState(SYNC_NAME, null));
+        log.info("Отметка синхронизации просмотров сброшена, следующая синхронизация будет полной");
+    }
+
+    void syncOnce() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime end = now.minus(lagMs, ChronoUnit.MILLIS).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime highWaterMark = syncStateRepository.findById(SYNC_NAME)
+                .map(ViewsSyncState::getHighWaterMark)
+                .orElse(null);
+
+        boolean full = highWaterMark == null;
+        Map<Long, Long> views;
+        if (full) {
+            views = toEventViews(httpClient.fetchStat(now.minusYears(100), now.plusYears(100), null, true));
+        } else {
+            if (!end.isAfter(highWaterMark)) {
+                return;
+            }
+            // Время хита хранится с точностью до секунды, а границы периода в запрос не входят,
+            // поэтому период начинается на секунду раньше отметки
+            List<String> changed = new ArrayList<>();
+            toEventViews(httpClient.fetchStat(highWaterMark.minusSeconds(1), end, null, false))
+                    .keySet()
+                    .forEach(eventId -> changed.add("/events/" + eventId));
+            views = new HashMap<>();
+            for (int i = 0; i < changed.size(); i += URIS_PER_REQUEST) {
+                String[] uris = changed.subList(i, Math.min(i + URIS_PER_REQUEST, changed.size()))
+                        .toArray(String[]::new);
+                views.putAll(toEventViews(httpClient.fetchStat(now.minusYears(100), now.plusYears(100), uris, true)));
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (full) {
+                eventViewsRepository.insertMissing();
+            }
+            views.forEach(eventViewsRepository::upsertViews);
+            syncStateRepository.save(new ViewsSyncState(SYNC_NAME, end));
+        });
+        updatedCounter.increment(views.size());
+        log.debug("Синхронизированы просмотры событий ({}), обновлено событий: {}, отметка: {}",
+                full ? "полная" : "по изменениям", views.size(), end);
+    }
+
+    private static Map<Long, Long> toEventViews(List<ViewStats> viewStats) {
+        Map<Long, Long> result = new HashMap<>();
+        for (ViewStats stats : viewStats) {
+            Matcher matcher = stats.getUri() == null ? null : EVENT_URI.matcher(stats.getUri());
+            if (matcher != null && matcher.matches()) {
+                // Одно событие может встречаться в статистике нескольких приложений
+                result.merge(Long.parseLong(matcher.group(1)), stats.getHits(), Long::sum);
+            }
+        }
+        return result;
+    }
+}
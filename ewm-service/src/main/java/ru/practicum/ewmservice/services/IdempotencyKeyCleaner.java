@@ -0,0 +1,42 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.repositories.ParticipationRequestRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Удаление ключей идемпотентности старше ttl-ms. Повтор запроса с удалённым ключом
+ * обрабатывается как новый запрос.
+ */
+@Component
+@Slf4j
+public class IdempotencyKeyCleaner {
+    private final ParticipationRequestRepository participationRequestRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long ttlMs;
+
+    IdempotencyKeyCleaner(ParticipationRequestRepository participationRequestRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${participation-requests.idempotency-key.ttl-ms}") long ttlMs) {
+        this.participationRequestRepository = participationRequestRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMs = ttlMs;
+    }
+
+    @Scheduled(fixedDelayString = "${participation-requests.idempotency-key.cleanup-interval-ms}")
+    public void deleteExpired() {
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(ttlMs, ChronoUnit.MILLIS);
+        Integer deleted = transactionTemplate.execute(status ->
+                participationRequestRepository.deleteIdempotencyKeysCreatedBefore(expiredBefore));
+        log.debug("Удалено ключей идемпотентности, созданных до {}: {}", expiredBefore, deleted);
+    }
+}
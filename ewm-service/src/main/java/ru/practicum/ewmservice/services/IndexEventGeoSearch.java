@@ -0,0 +1,28 @@
+package ru.practicum.ewmservice.services;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.repositories.EventGeoSearch;
+
+import java.util.List;
+
+/**
+ * Отбор по id локаций, которые нашёл индекс в памяти. Тригонометрия в базе данных не вычисляется.
+ */
+public class IndexEventGeoSearch implements EventGeoSearch {
+    private final LocationIndex locationIndex;
+
+    public IndexEventGeoSearch(LocationIndex locationIndex) {
+        this.locationIndex = locationIndex;
+    }
+
+    @Override
+    public BooleanExpression covers(double lat, double lon) {
+        List<Long> ids = locationIndex.findCovering(lat, lon);
+        if (ids.isEmpty()) {
+            return Expressions.FALSE.isTrue();
+        }
+        return QEvent.event.location.id.in(ids);
+    }
+}
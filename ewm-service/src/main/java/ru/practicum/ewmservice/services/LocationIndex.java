@@ -0,0 +1,211 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewmservice.models.location.CalculateDistance;
+import ru.practicum.ewmservice.models.location.Location;
+import ru.practicum.ewmservice.repositories.LocationRepository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс локаций в памяти по сетке широт и долгот. Каждая локация записывается во все ячейки,
+ * которые пересекает её круг, поэтому для точки проверяются только локации её ячейки.
+ * Локации, круг которых занимает больше max-cells ячеек, и локации с координатами вне допустимых
+ * диапазонов проверяются при каждом запросе. Расстояние считается так же, как функция distance() в базе данных.
+ * Индекс загружается при запуске, добавленные локации попадают в него сразу, а удалённые убираются
+ * после фиксации транзакции. Поэтому в индексе могут остаться локации из откатившихся транзакций,
+ * и найденные id нужно загружать из базы данных.
+ */
+@Component
+@Slf4j
+public class LocationIndex implements CalculateDistance {
+    // Длина дуги в один градус в тех же единицах, что и calculateDistance
+    private static final double KM_PER_DEGREE = 60 * 1.8524;
+
+    // Запас на погрешность вычислений при построении границ круга
+    private static final double MARGIN_DEGREES = 1e-6;
+
+    private final double cellSize;
+
+    private final int latCells;
+
+    private final int lonCells;
+
+    private final int maxCells;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    private final Set<Long> wide = ConcurrentHashMap.newKeySet();
+
+    LocationIndex(LocationRepository locationRepository,
+                  @Value("${locations.index.cell-size-degrees}") double cellSize,
+                  @Value("${locations.index.max-cells}") int maxCells) {
+        if (!(cellSize > 0) || 180 / cellSize != Math.rint(180 / cellSize)) {
+            throw new IllegalStateException("Размер ячейки индекса локаций должен делить 180 градусов: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.latCells = (int) Math.rint(180 / cellSize);
+        this.lonCells = 2 * latCells;
+        this.maxCells = maxCells;
+        locationRepository.findAll().forEach(this::add);
+        log.info("Загружено локаций в индекс: {}, проверяются при каждом запросе: {}", entries.size(), wide.size());
+    }
+
+    public void add(Location location) {
+        double radius = location.getRadius() == null ? 0 : location.getRadius();
+        long[] keys = coveredCells(location.getLat(), location.getLon(), radius);
+        Entry entry = new Entry(location.getId(), location.getLat(), location.getLon(), radius, keys);
+        remove(location.getId());
+        entries.put(entry.id, entry);
+        if (keys == null) {
+            wide.add(entry.id);
+            return;
+        }
+        for (long key : keys) {
+            cells.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(entry.id);
+        }
+    }
+
+    /**
+     * Убирает локацию из индекса. Внутри транзакции локация убирается после её фиксации.
+     */
+    public void removeAfterCommit(long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remove(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                remove(id);
+            }
+        });
+    }
+
+    /**
+     * Id локаций, в радиус которых попадает точка, по возрастанию.
+     */
+    public List<Long> findCovering(double lat, double lon) {
+        Collection<Long> candidates;
+        if (isIndexable(lat, lon)) {
+            Set<Long> cell = cells.getOrDefault(cellKey(latCell(lat), lonCell(lon)), Set.of());
+            candidates = new HashSet<>(cell);
+            candidates.addAll(wide);
+        } else {
+            candidates = entries.keySet();
+        }
+        return candidates.stream()
+                .map(entries::get)
+                .filter(e -> e != null && calculateDistance(e.lat, e.lon, lat, lon) <= e.radius)
+                .map(e -> e.id)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        if (entry.cellKeys == null) {
+            wide.remove(id);
+            return;
+        }
+        for (long key : entry.cellKeys) {
+            cells.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    // Ячейки, которые пересекает круг локации, или null, если локацию нужно проверять при каждом запросе
+    private long[] coveredCells(double lat, double lon, double radius) {
+        if (!isIndexable(lat, lon) || !(radius >= 0)) {
+            return null;
+        }
+        double radiusDegrees = radius / KM_PER_DEGREE;
+        double minLat = lat - radiusDegrees - MARGIN_DEGREES;
+        double maxLat = lat + radiusDegrees + MARGIN_DEGREES;
+
+        int lonCellCount = lonCells;
+        int firstLonCell = 0;
+        if (minLat > -90 && maxLat < 90) {
+            // Наибольшее отклонение по долготе у круга, не содержащего полюс
+            double lonDegrees = Math.toDegrees(Math.asin(Math.min(1.0,
+                    Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(lat))))) + MARGIN_DEGREES;
+            if (lonDegrees < 180) {
+                firstLonCell = lonCell(lon - lonDegrees);
+                lonCellCount = Math.min(lonCells, countLonCells(lon - lonDegrees, lon + lonDegrees));
+            }
+        }
+        int firstLatCell = latCell(Math.max(minLat, -90));
+        int lastLatCell = latCell(Math.min(maxLat, 90));
+        long count = (long) (lastLatCell - firstLatCell + 1) * lonCellCount;
+        if (count > maxCells) {
+            return null;
+        }
+
+        long[] keys = new long[(int) count];
+        int i = 0;
+        for (int latCell = firstLatCell; latCell <= lastLatCell; latCell++) {
+            for (int j = 0; j < lonCellCount; j++) {
+                keys[i++] = cellKey(latCell, Math.floorMod(firstLonCell + j, lonCells));
+            }
+        }
+        return keys;
+    }
+
+    private int countLonCells(double fromLon, double toLon) {
+        return (int) (Math.floor((toLon + 180) / cellSize) - Math.floor((fromLon + 180) / cellSize)) + 1;
+    }
+
+    private static boolean isIndexable(double lat, double lon) {
+        return Math.abs(lat) <= 90 && Double.isFinite(lon);
+    }
+
+    private int latCell(double lat) {
+        return Math.min(latCells - 1, (int) Math.floor((lat + 90) / cellSize));
+    }
+
+    // Долгота приводится к диапазону [-180, 180), так как расстояние зависит только от разности долгот по модулю 360
+    private int lonCell(double lon) {
+        return Math.floorMod((long) Math.floor((lon + 180) / cellSize), lonCells);
+    }
+
+    private long cellKey(int latCell, int lonCell) {
+        return (long) latCell * lonCells + lonCell;
+    }
+
+    private static final class Entry {
+        private final long id;
+
+        private final double lat;
+
+        private final double lon;
+
+        private final double radius;
+
+        private final long[] cellKeys;
+
+        private Entry(long id, double lat, double lon, double radius, long[] cellKeys) {
+            this.id = id;
+            this.lat = lat;
+            this.lon = lon;
+            this.radius = radius;
+            this.cellKeys = cellKeys;
+        }
+    }
+}
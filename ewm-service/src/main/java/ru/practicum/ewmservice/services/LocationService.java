@@ -1,5 +1,6 @@
 package ru.practicum.ewmservice.services;
 
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 
 import java.util.List;
@@ -9,5 +10,7 @@ public interface LocationService {
 
     List<LocationDto> getAllLocations(int from, int size);
 
+    KeysetPage<LocationDto> getAllLocations(String cursor, int size);
+
     void deleteLocationById(Long id);
 }
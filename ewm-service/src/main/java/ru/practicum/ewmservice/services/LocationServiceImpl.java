@@ -3,17 +3,24 @@ package ru.practicum.ewmservice.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.ContinuationToken;
+import ru.practicum.ewmservice.EntityCache;
+import ru.practicum.ewmservice.EntityCacheConfig;
 import ru.practicum.ewmservice.FromSizeRequest;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.event.Event;
 import ru.practicum.ewmservice.models.location.Location;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 import ru.practicum.ewmservice.models.location.dto.LocationMapper;
+import ru.practicum.ewmservice.repositories.EventGeoSearch;
 import ru.practicum.ewmservice.repositories.EventRepository;
 import ru.practicum.ewmservice.repositories.LocationRepository;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -25,8 +32,14 @@ import java.util.stream.Collectors;
 public class LocationServiceImpl implements LocationService {
     private final LocationRepository locationRepository;
 
+    private final EntityCache entityCache;
+
     private final EventRepository eventRepository;
 
+    private final LocationIndex locationIndex;
+
+    private final EventGeoSearch eventGeoSearch;
+
     @Override
     @Transactional
     public LocationDto addLocation(LocationDto locationDto) {
@@ -34,8 +47,9 @@ public class LocationServiceImpl implements LocationService {
             throw new IllegalStateException("По координатам " + locationDto.getLat() + ", " + locationDto.getLon() +
                     " в базе данных уже есть запись локации");
         }
-        Location location = LocationMapper.toLocationFromLocationDto(locationDto);
-        LocationDto result = LocationMapper.toLocationDtoFromLocation(locationRepository.save(location));
+        Location location = locationRepository.save(LocationMapper.toLocationFromLocationDto(locationDto));
+        locationIndex.add(location);
+        LocationDto result = LocationMapper.toLocationDtoFromLocation(location);
         log.debug("Локация сохранена в базе данных: {}", location);
         return result;
     }
@@ -50,22 +64,48 @@ public class LocationServiceImpl implements LocationService {
         return result;
     }
 
+    @Override
+    public KeysetPage<LocationDto> getAllLocations(String cursor, int size) {
+        ContinuationToken after = ContinuationToken.decode(cursor, ContinuationToken.BY_ID);
+        List<Location> found = locationRepository.findLocationsWhereNameNotNullAfter(
+                after == null ? 0 : after.getId(), FromSizeRequest.of(0, size));
+        KeysetPage<LocationDto> result = KeysetPage.of(found, size,
+                location -> ContinuationToken.of(ContinuationToken.BY_ID, null, location.getId()),
+                LocationMapper::toLocationDtoFromLocation);
+        log.debug("Получен список локаций из быза данных: {}", result);
+        return result;
+    }
+
     @Override
     @Transactional
+    @CacheEvict(cacheNames = EntityCacheConfig.LOCATIONS, key = "#id")
     public void deleteLocationById(Long id) {
         Location location = checkLocation(id);
-        List<Event> events = eventRepository.getEventsByLocation(location.getLat(), location.getLon());
+        List<Event> events = getEventsByCoordinate(location.getLat(), location.getLon());
         log.debug("Найденные события в локации: {}", events);
         if (events.size() != 0) {
             throw new IllegalStateException("Локация не может быть удалена, пока к ней привязаны события");
         }
         locationRepository.deleteById(id);
+        locationIndex.removeAfterCommit(id);
         log.debug("Локация с id " + id + " удалена из базы данных");
     }
 
     public Optional<Location> getLocationByCoordinate(double lat, double lon) {
-        return locationRepository
-                .findLocationByCoordinate(lat, lon);
+        List<Long> ids = locationIndex.findCovering(lat, lon);
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        // Если точка попадает в несколько локаций, берётся созданная раньше
+        return locationRepository.findAllById(ids).stream()
+                .min(Comparator.comparing(Location::getId));
+    }
+
+    /**
+     * События в локациях, в радиус которых попадает точка.
+     */
+    public List<Event> getEventsByCoordinate(double lat, double lon) {
+        return eventRepository.findAll(eventGeoSearch.covers(lat, lon), Pageable.unpaged()).getContent();
     }
 
     public void compareLocation(LocationDto locationDto) {
@@ -76,7 +116,8 @@ public class LocationServiceImpl implements LocationService {
     }
 
     public Location checkLocation(Long id) {
-        Optional<Location> locationOptional = locationRepository.findById(id);
+        Optional<Location> locationOptional = entityCache.findLocation(id)
+                .map(EntityCache.LocationSnapshot::toLocation);
         if (locationOptional.isEmpty()) {
             throw new EntityNotFoundException("Локация с id " + id + " не найдена в базе данных");
         }
@@ -1,19 +1,34 @@
 package ru.practicum.ewmservice.services;
 
+import ru.practicum.ewmservice.KeysetPage;
+import ru.practicum.ewmservice.models.participation_request.Status;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusResultDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusUpdateDto;
 
 import java.util.List;
 
 public interface ParticipationRequestService {
     ParticipationRequestDto addNewParticipationRequest(Long userId, Long eventId);
 
+    ParticipationRequestDto addNewParticipationRequest(Long userId, Long eventId, String idempotencyKey);
+
     List<ParticipationRequestDto> getUserParticipationRequests(Long userId);
 
+    KeysetPage<ParticipationRequestDto> getUserParticipationRequests(Long userId, Status status, String cursor,
+                                                                     int size);
+
     List<ParticipationRequestDto> getUserEventParticipationRequests(Long userId, Long eventId);
 
+    KeysetPage<ParticipationRequestDto> getUserEventParticipationRequests(Long userId, Long eventId, Status status,
+                                                                          String cursor, int size);
+
     ParticipationRequestDto cancelParticipationRequestByUser(Long userId, Long requestId);
 
     ParticipationRequestDto confirmParticipationRequest(Long userId, Long eventId, Long requestId);
 
     ParticipationRequestDto rejectParticipationRequest(Long userId, Long eventId, Long requestId);
+
+    List<ParticipationRequestStatusResultDto> updateParticipationRequestsStatus(
+            Long userId, Long eventId, ParticipationRequestStatusUpdateDto statusUpdate);
 }
@@ -2,21 +2,33 @@ package ru.practicum.ewmservice.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.ContinuationToken;
+import ru.practicum.ewmservice.FromSizeRequest;
+import ru.practicum.ewmservice.KeysetPage;
+import ru.practicum.ewmservice.exceptions.DataConflictException;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.event.Event;
 import ru.practicum.ewmservice.models.participation_request.ParticipationRequest;
 import ru.practicum.ewmservice.models.participation_request.Status;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestMapper;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusResultDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusUpdateDto;
 import ru.practicum.ewmservice.repositories.EventRepository;
 import ru.practicum.ewmservice.repositories.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,31 +49,50 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
     @Override
     @Transactional
     public ParticipationRequestDto addNewParticipationRequest(Long userId, Long eventId) {
+        return addNewParticipationRequest(userId, eventId, null);
+    }
+
+    /**
+     * Заявка вставляется сразу, а повторная заявка пользователя на то же событие отсекается уникальным
+     * ограничением. Повтор запроса с тем же ключом идемпотентности возвращает заявку, созданную первым запросом.
+     * Ключ занимается в той же транзакции, что и создание заявки: повтор ждёт её завершения,
+     * а после отката первого запроса выполняется заново.
+     */
+    @Override
+    @Transactional
+    public ParticipationRequestDto addNewParticipationRequest(Long userId, Long eventId, String idempotencyKey) {
         userService.checkUserInDatabase(userId);
         Event event = eventService.checkEventInDatabase(eventId);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        if (idempotencyKey != null
+                && participationRequestRepository.claimIdempotencyKey(userId, idempotencyKey, eventId, now).isEmpty()) {
+            Long requestId = participationRequestRepository.findIdempotentRequest(userId, idempotencyKey, eventId)
+                    .orElseThrow(() -> new DataConflictException("Ключ идемпотентности " + idempotencyKey
+                            + " уже использован для другого события"));
+            ParticipationRequestDto result = requestMapper.toParticipationRequestDtoFromParticipationRequest(
+                    checkParticipationRequestInDatabase(requestId));
+            log.debug("Повтор запроса с ключом идемпотентности {}, возвращена заявка {}", idempotencyKey, result);
+            return result;
+        }
         if (event.getInitiator().getId().equals(userId)) {
             throw new IllegalStateException("Ининциатор не может ооставить заявку на участие в своём событии");
         }
         if (event.getConfirmedRequests() >= event.getParticipantLimit()) {
             throw new IllegalStateException("Превышен лимит заявок на участие в событии");
         }
-        if (participationRequestRepository.findByEventAndRequester(eventId, userId).isPresent()) {
-            throw new IllegalStateException("Запрос уже существует");
-        }
 
-        ParticipationRequest participationRequest = new ParticipationRequest();
-        participationRequest.setRequester(userId);
-        participationRequest.setEvent(eventId);
-        participationRequest.setCreated(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
-        if (!event.isRequestModeration()) {
-            participationRequest.setStatus(Status.CONFIRMED);
-            event.setConfirmedRequests(event.getConfirmedRequests() + 1);
-        } else {
-            participationRequest.setStatus(Status.PENDING);
+        Status status = event.isRequestModeration() ? Status.PENDING : Status.CONFIRMED;
+        Long requestId = participationRequestRepository.insertIfAbsent(now, eventId, userId, status.name())
+                .orElseThrow(() -> new IllegalStateException("Запрос уже существует"));
+        // Проверка выше читает счётчик без блокировки, место занимается только при успешном обновлении
+        if (status == Status.CONFIRMED && eventRepository.reserveParticipantSlot(eventId) == 0) {
+            throw new IllegalStateException("Превышен лимит заявок на участие в событии");
+        }
+        if (idempotencyKey != null) {
+            participationRequestRepository.completeIdempotencyKey(userId, idempotencyKey, requestId);
         }
-        eventRepository.save(event);
         ParticipationRequestDto result = requestMapper.toParticipationRequestDtoFromParticipationRequest(
-                participationRequestRepository.save(participationRequest));
+                new ParticipationRequest(requestId, now, eventId, userId, status));
         log.debug("Сохранена заявка на участие {} в базе данных", result);
         return result;
     }
@@ -77,6 +108,20 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
         return result;
     }
 
+    @Override
+    public KeysetPage<ParticipationRequestDto> getUserParticipationRequests(Long userId, Status status, String cursor,
+                                                                            int size) {
+        userService.checkUserInDatabase(userId);
+        long afterId = afterId(cursor);
+        Pageable pageable = FromSizeRequest.of(0, size);
+        List<ParticipationRequest> found = status == null
+                ? participationRequestRepository.findRequesterRequestsAfter(userId, afterId, pageable)
+                : participationRequestRepository.findRequesterRequestsAfter(userId, status, afterId, pageable);
+        KeysetPage<ParticipationRequestDto> result = toKeysetPage(found, size);
+        log.debug("Получены запросы на участие пользователя с id {} со статусом {} : {}", userId, status, result);
+        return result;
+    }
+
     @Override
     public List<ParticipationRequestDto> getUserEventParticipationRequests(Long userId, Long eventId) {
         userService.checkUserInDatabase(userId);
@@ -91,6 +136,24 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
     }
 
     @Override
+    public KeysetPage<ParticipationRequestDto> getUserEventParticipationRequests(Long userId, Long eventId,
+                                                                                 Status status, String cursor,
+                                                                                 int size) {
+        userService.checkUserInDatabase(userId);
+        eventService.checkEventInDatabase(eventId);
+        long afterId = afterId(cursor);
+        Pageable pageable = FromSizeRequest.of(0, size);
+        List<ParticipationRequest> found = status == null
+                ? participationRequestRepository.findEventRequestsAfter(eventId, afterId, pageable)
+                : participationRequestRepository.findEventRequestsAfter(eventId, status, afterId, pageable);
+        KeysetPage<ParticipationRequestDto> result = toKeysetPage(found, size);
+        log.debug("Получены запросы на участие в событии с id: {} со статусом {}, соданного пользователем "
+                + "с id: {} : {}", eventId, status, userId, result);
+        return result;
+    }
+
+    @Override
+    @Transactional
     public ParticipationRequestDto cancelParticipationRequestByUser(Long userId, Long requestId) {
         userService.checkUserInDatabase(userId);
         Optional<ParticipationRequest> requestOptional = participationRequestRepository.findById(requestId);
@@ -101,9 +164,7 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
         if (!request.getRequester().equals(userId)) {
             throw new IllegalStateException("Пользователь не является автором запроса");
         }
-        request.setStatus(Status.CANCELED);
-        ParticipationRequestDto result = requestMapper.toParticipationRequestDtoFromParticipationRequest(
-                participationRequestRepository.save(request));
+        ParticipationRequestDto result = changeStatus(request, Status.CANCELED);
         log.debug("Запрос на участие отменён пользователем {}", result);
         return result;
     }
@@ -114,9 +175,7 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
         userService.checkUserInDatabase(userId);
         eventService.checkEventInDatabase(eventId);
         ParticipationRequest request = checkParticipationRequestInDatabase(requestId);
-        request.setStatus(Status.CONFIRMED);
-        ParticipationRequestDto result = requestMapper
-                .toParticipationRequestDtoFromParticipationRequest(participationRequestRepository.save(request));
+        ParticipationRequestDto result = changeStatus(request, Status.CONFIRMED);
         log.debug("Подтверждена заявка {}", result);
         return result;
     }
@@ -127,13 +186,120 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
         userService.checkUserInDatabase(userId);
         eventService.checkEventInDatabase(eventId);
         ParticipationRequest request = checkParticipationRequestInDatabase(requestId);
-        request.setStatus(Status.REJECTED);
-        ParticipationRequestDto result = requestMapper
-                .toParticipationRequestDtoFromParticipationRequest(participationRequestRepository.save(request));
+        ParticipationRequestDto result = changeStatus(request, Status.REJECTED);
         log.debug("Отклонена заявка {}", result);
         return result;
     }
 
+    /**
+     * Подтверждает или отклоняет заявки на участие одной транзакцией. Изменяются только ожидающие заявки;
+     * заявки, на которые не хватило мест, отклоняются. Если подтверждение исчерпало лимит участников,
+     * в той же транзакции отклоняются и остальные ожидающие заявки события.
+     * Результаты возвращаются в порядке id в запросе.
+     */
+    @Override
+    @Transactional
+    public List<ParticipationRequestStatusResultDto> updateParticipationRequestsStatus(
+            Long userId, Long eventId, ParticipationRequestStatusUpdateDto statusUpdate) {
+        userService.checkUserInDatabase(userId);
+        Event event = eventService.checkEventInDatabase(eventId);
+        if (!event.getInitiator().getId().equals(userId)) {
+            throw new IllegalStateException("Пользователь не является инициатором события");
+        }
+        Status status = statusUpdate.getStatus();
+        if (status != Status.CONFIRMED && status != Status.REJECTED) {
+            throw new IllegalStateException("Заявку можно только подтвердить или отклонить");
+        }
+
+        List<Long> requestIds = statusUpdate.getRequestIds().stream()
+                .distinct()
+                .collect(Collectors.toList());
+        List<ParticipationRequest> locked = status == Status.CONFIRMED
+                ? participationRequestRepository.findAllForUpdateByEventAndIdInOrStatus(eventId, requestIds,
+                Status.PENDING)
+                : participationRequestRepository.findAllForUpdateByEventAndIdIn(eventId, requestIds);
+        Map<Long, ParticipationRequest> requests = locked.stream()
+                .collect(Collectors.toMap(ParticipationRequest::getId, Function.identity()));
+        List<Long> pending = requestIds.stream()
+                .filter(id -> requests.containsKey(id) && requests.get(id).getStatus() == Status.PENDING)
+                .collect(Collectors.toList());
+
+        List<Long> confirmed = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>(pending);
+        int rejectedCount = 0;
+        if (status == Status.CONFIRMED && !pending.isEmpty()) {
+            int freeSlots = Math.max(0, eventRepository.lockFreeParticipantSlots(eventId));
+            confirmed.addAll(pending.subList(0, Math.min(freeSlots, pending.size())));
+            rejected = new ArrayList<>(pending.subList(confirmed.size(), pending.size()));
+            if (!confirmed.isEmpty()) {
+                eventRepository.addConfirmedRequests(eventId, confirmed.size());
+                participationRequestRepository.updateStatus(confirmed, Status.CONFIRMED);
+            }
+            if (confirmed.size() == freeSlots) {
+                // Мест не осталось: отклоняются все ожидающие заявки события, в том числе не вошедшие в запрос
+                rejectedCount = participationRequestRepository.updateStatusByEvent(eventId, Status.PENDING,
+                        Status.REJECTED);
+                rejected.clear();
+            }
+        }
+        if (!rejected.isEmpty()) {
+            rejectedCount = participationRequestRepository.updateStatus(rejected, Status.REJECTED);
+        }
+
+        Set<Long> confirmedIds = new HashSet<>(confirmed);
+        List<ParticipationRequestStatusResultDto> result = new ArrayList<>();
+        for (Long id : requestIds) {
+            ParticipationRequest request = requests.get(id);
+            if (request == null) {
+                result.add(new ParticipationRequestStatusResultDto(id, null,
+                        "Заявка на участие с id " + id + " не найдена в событии"));
+            } else if (request.getStatus() != Status.PENDING) {
+                result.add(new ParticipationRequestStatusResultDto(id, request.getStatus(),
+                        "Заявка не ожидает рассмотрения"));
+            } else if (confirmedIds.contains(id)) {
+                result.add(new ParticipationRequestStatusResultDto(id, Status.CONFIRMED, null));
+            } else {
+                result.add(new ParticipationRequestStatusResultDto(id, Status.REJECTED,
+                        status == Status.REJECTED ? null : "Превышен лимит заявок на участие в событии"));
+            }
+        }
+        log.debug("Изменены статусы заявок на участие в событии с id {}: подтверждено {}, отклонено {}",
+                eventId, confirmed.size(), rejectedCount);
+        return result;
+    }
+
+    /**
+     * Меняет статус заявки и счётчик подтверждённых заявок события в одной транзакции.
+     * Сначала меняется статус, потом счётчик, в том же порядке блокировок, что и при изменении статусов списком.
+     */
+    private ParticipationRequestDto changeStatus(ParticipationRequest request, Status status) {
+        Status previous = request.getStatus();
+        if (previous != status) {
+            if (participationRequestRepository.changeStatus(request.getId(), previous, status) == 0) {
+                throw new IllegalStateException("Статус заявки изменён другим запросом");
+            }
+            if (status == Status.CONFIRMED && eventRepository.reserveParticipantSlot(request.getEvent()) == 0) {
+                throw new IllegalStateException("Превышен лимит заявок на участие в событии");
+            }
+            if (previous == Status.CONFIRMED) {
+                eventRepository.addConfirmedRequests(request.getEvent(), -1);
+            }
+            request.setStatus(status);
+        }
+        return requestMapper.toParticipationRequestDtoFromParticipationRequest(request);
+    }
+
+    private static long afterId(String cursor) {
+        ContinuationToken after = ContinuationToken.decode(cursor, ContinuationToken.BY_ID);
+        return after == null ? 0 : after.getId();
+    }
+
+    private KeysetPage<ParticipationRequestDto> toKeysetPage(List<ParticipationRequest> found, int size) {
+        return KeysetPage.of(found, size,
+                request -> ContinuationToken.of(ContinuationToken.BY_ID, null, request.getId()),
+                requestMapper::toParticipationRequestDtoFromParticipationRequest);
+    }
+
     private ParticipationRequest checkParticipationRequestInDatabase(Long requestId) {
         Optional<ParticipationRequest> participationRequestOptional = participationRequestRepository.findById(requestId);
         if (participationRequestOptional.isEmpty()) {
@@ -1,5 +1,6 @@
 package ru.practicum.ewmservice.services;
 
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.user.dto.NewUserRequest;
 import ru.practicum.ewmservice.models.user.dto.UserDto;
 
@@ -10,5 +11,7 @@ public interface UserService {
 
     List<UserDto> getUsers(int from, int size, Long[] ids);
 
+    KeysetPage<UserDto> getUsers(String cursor, int size, Long[] ids);
+
     void deleteUser(Long userId);
 }
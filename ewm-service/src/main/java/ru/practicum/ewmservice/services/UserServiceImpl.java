@@ -2,10 +2,15 @@ package ru.practicum.ewmservice.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Pageable;
+import ru.practicum.ewmservice.ContinuationToken;
+import ru.practicum.ewmservice.EntityCache;
+import ru.practicum.ewmservice.EntityCacheConfig;
 import ru.practicum.ewmservice.FromSizeRequest;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.DataConflictException;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.user.User;
@@ -26,6 +31,8 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
 
+    private final EntityCache entityCache;
+
     @Override
     @Transactional
     public UserDto addNewUser(NewUserRequest newUser) {
@@ -49,8 +56,21 @@ public class UserServiceImpl implements UserService {
         return result;
     }
 
+    @Override
+    public KeysetPage<UserDto> getUsers(String cursor, int size, Long[] ids) {
+        ContinuationToken after = ContinuationToken.decode(cursor, ContinuationToken.BY_ID);
+        List<User> found = userRepository.getUsersAfter(ids, after == null ? 0 : after.getId(),
+                FromSizeRequest.of(0, size));
+        KeysetPage<UserDto> result = KeysetPage.of(found, size,
+                user -> ContinuationToken.of(ContinuationToken.BY_ID, null, user.getId()),
+                UserMapper::mapToUserDtoFromUser);
+        log.debug("Получен список пользователей из базы данных {}", result);
+        return result;
+    }
+
     @Override
     @Transactional
+    @CacheEvict(cacheNames = EntityCacheConfig.USERS, key = "#userId")
     public void deleteUser(Long userId) {
         checkUserInDatabase(userId);
         userRepository.deleteById(userId);
@@ -58,7 +78,8 @@ public class UserServiceImpl implements UserService {
     }
 
     public User checkUserInDatabase(Long userId) {
-        Optional<User> userOptional = userRepository.findById(userId);
+        Optional<User> userOptional = entityCache.findUser(userId)
+                .map(EntityCache.UserSnapshot::toUser);
         if (userOptional.isEmpty()) {
             throw new EntityNotFoundException("Пользователь с id " + userId + " не найден в базе данных");
         }
@@ -0,0 +1,7 @@
+-- Выполняется вместе с schema.sql в режиме events.search.geo-mode=POSTGIS:
+-- spring.sql.init.schema-locations=classpath:schema.sql,classpath:postgis.sql
+-- Выражение индекса совпадает с выражением в функции event_location_within (см. EventSearchFunctions).
+-- Координаты всех локаций должны быть допустимыми: широта от -90 до 90, долгота от -180 до 180
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+CREATE INDEX IF NOT EXISTS ix_locations_geography ON locations USING GIST (geography(st_makepoint(lon, lat)));
@@ -45,6 +45,29 @@ CREATE TABLE IF NOT EXISTS events (
     CONSTRAINT fk_location_id FOREIGN KEY (location_id) REFERENCES locations(id)
 );
 
+-- Индексы подобраны по планам запросов поиска событий. Публичный поиск идёт только по опубликованным
+-- событиям, поэтому по дате события и по свободным местам построены частичные индексы
+CREATE INDEX IF NOT EXISTS ix_events_published_event_date ON events (event_date) WHERE state = 'PUBLISHED';
+
+CREATE INDEX IF NOT EXISTS ix_events_available_event_date ON events (event_date)
+    WHERE state = 'PUBLISHED' AND confirmed_requests < participant_limit;
+
+CREATE INDEX IF NOT EXISTS ix_events_category_event_date ON events (category_id, event_date);
+
+CREATE INDEX IF NOT EXISTS ix_events_initiator_id ON events (initiator_id);
+
+-- Отбор по точке в режиме BOUNDING_BOX: наибольший радиус по ix_locations_radius, прямоугольник широт и долгот
+-- по ix_locations_lat_lon, локации с координатами вне допустимых диапазонов по ix_locations_out_of_range,
+-- затем события найденных локаций по ix_events_location_id
+CREATE INDEX IF NOT EXISTS ix_locations_lat_lon ON locations (lat, lon);
+
+CREATE INDEX IF NOT EXISTS ix_locations_radius ON locations (radius);
+
+CREATE INDEX IF NOT EXISTS ix_locations_out_of_range ON locations (id)
+    WHERE NOT (lat BETWEEN -90 AND 90 AND lon BETWEEN -180 AND 180);
+
+CREATE INDEX IF NOT EXISTS ix_events_location_id ON events (location_id);
+
 
 
 CREATE TABLE IF NOT EXISTS participation_requests(
@@ -59,6 +82,28 @@ CREATE TABLE IF NOT EXISTS participation_requests(
     CONSTRAINT UQ_PARTICIPANT_PER_EVENT UNIQUE (requester, event)
 );
 
+-- Раньше статус заявки хранился номером значения перечисления Status
+UPDATE participation_requests SET status = (ARRAY['PENDING', 'REJECTED', 'CONFIRMED', 'CANCELED'])[status::INT + 1]
+    WHERE status IN ('0', '1', '2', '3');
+-- Постраничный вывод заявок события по id, всех и с отбором по статусу
+DROP INDEX IF EXISTS ix_participation_requests_event_status;
+CREATE INDEX IF NOT EXISTS ix_participation_requests_event_status_id ON participation_requests (event, status, id);
+CREATE INDEX IF NOT EXISTS ix_participation_requests_event_id ON participation_requests (event, id);
+
+-- Ключи идемпотентности создания заявок. Ключ занимается в транзакции создания заявки,
+-- поэтому у зафиксированного ключа всегда есть заявка
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    requester BIGINT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    event BIGINT NOT NULL,
+    request_id BIGINT,
+    created TIMESTAMP NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (requester, idempotency_key),
+    CONSTRAINT fk_idempotency_keys_request FOREIGN KEY (request_id)
+        REFERENCES participation_requests(id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS ix_idempotency_keys_created ON idempotency_keys (created);
+
 CREATE TABLE IF NOT EXISTS compilations(
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     pinned BOOLEAN NOT NULL,
@@ -72,6 +117,87 @@ CREATE TABLE IF NOT EXISTS events_compilations (
     PRIMARY KEY (event_id, compilation_id)
 );
 
+CREATE TABLE IF NOT EXISTS event_views (
+    event_id BIGINT NOT NULL,
+    views BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT pk_event_views PRIMARY KEY (event_id),
+    CONSTRAINT fk_event_views_event FOREIGN KEY (event_id) REFERENCES events(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS ix_event_views_views ON event_views (views DESC, event_id);
+
+CREATE TABLE IF NOT EXISTS views_sync_state (
+    name VARCHAR(64) NOT NULL,
+    high_water_mark TIMESTAMP WITHOUT TIME ZONE,
+    CONSTRAINT pk_views_sync_state PRIMARY KEY (name)
+);
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS search_vector TSVECTOR;
+
+-- Поисковый документ события: заголовок важнее краткого описания, краткое описание важнее полного.
+-- Текст разбирается и русским, и английским словарём, чтобы работал стемминг для обоих языков
+CREATE OR REPLACE FUNCTION event_search_vector(title VARCHAR, annotation VARCHAR, description VARCHAR)
+    RETURNS TSVECTOR
+AS
+'
+    SELECT setweight(to_tsvector(''russian'', coalesce(title, '''')), ''A'')
+        || setweight(to_tsvector(''english'', coalesce(title, '''')), ''A'')
+        || setweight(to_tsvector(''russian'', coalesce(annotation, '''')), ''B'')
+        || setweight(to_tsvector(''english'', coalesce(annotation, '''')), ''B'')
+        || setweight(to_tsvector(''russian'', coalesce(description, '''')), ''C'')
+        || setweight(to_tsvector(''english'', coalesce(description, '''')), ''C'')
+'
+LANGUAGE SQL IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION events_search_vector_update()
+    RETURNS TRIGGER
+AS
+'
+BEGIN
+    NEW.search_vector = event_search_vector(NEW.title, NEW.annotation, NEW.description);
+    RETURN NEW;
+END;
+'
+LANGUAGE PLPGSQL;
+
+DROP TRIGGER IF EXISTS events_search_vector_update ON events;
+
+CREATE TRIGGER events_search_vector_update
+    BEFORE INSERT OR UPDATE OF title, annotation, description ON events
+    FOR EACH ROW EXECUTE PROCEDURE events_search_vector_update();
+
+UPDATE events SET search_vector = event_search_vector(title, annotation, description) WHERE search_vector IS NULL;
+
+CREATE INDEX IF NOT EXISTS ix_events_search_vector ON events USING GIN (search_vector);
+
+CREATE INDEX IF NOT EXISTS ix_events_annotation_trgm ON events USING GIN (lower(annotation) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS ix_events_description_trgm ON events USING GIN (lower(description) gin_trgm_ops);
+
+CREATE OR REPLACE FUNCTION event_search_query(query TEXT)
+    RETURNS TSQUERY
+AS
+'
+    SELECT websearch_to_tsquery(''russian'', query) || websearch_to_tsquery(''english'', query)
+'
+LANGUAGE SQL IMMUTABLE;
+
+-- События, найденные полнотекстовым поиском, и события, в тексте которых встречается подстрока pattern.
+-- Каждая часть объединения выполняется по своему GIN-индексу
+CREATE OR REPLACE FUNCTION search_event_ids(query TEXT, pattern TEXT)
+    RETURNS SETOF BIGINT
+AS
+'
+    SELECT id FROM events WHERE search_vector @@ event_search_query(query)
+    UNION
+    SELECT id FROM events WHERE lower(annotation) LIKE pattern
+    UNION
+    SELECT id FROM events WHERE lower(description) LIKE pattern
+'
+LANGUAGE SQL STABLE;
+
 CREATE OR REPLACE FUNCTION distance(lat1 float, lon1 float, lat2 float, lon2 float)
     RETURNS float
 AS
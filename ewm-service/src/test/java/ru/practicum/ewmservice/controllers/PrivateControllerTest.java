@@ -15,6 +15,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.util.NestedServletException;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.event.dto.EventFullDto;
 import ru.practicum.ewmservice.models.event.dto.EventShortDto;
@@ -23,6 +24,8 @@ import ru.practicum.ewmservice.models.event.dto.UpdateEventRequest;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 import ru.practicum.ewmservice.models.participation_request.Status;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusResultDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusUpdateDto;
 import ru.practicum.ewmservice.models.user.dto.UserShortDto;
 import ru.practicum.ewmservice.services.EventService;
 import ru.practicum.ewmservice.services.ParticipationRequestService;
@@ -35,6 +38,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -340,7 +344,8 @@ class PrivateControllerTest {
         participationRequestDto.setStatus(Status.CONFIRMED);
         participationRequestDto.setEvent(1L);
 
-        when(requestService.addNewParticipationRequest(anyLong(), anyLong())).thenReturn(participationRequestDto);
+        when(requestService.addNewParticipationRequest(anyLong(), anyLong(), isNull()))
+                .thenReturn(participationRequestDto);
 
         mockMvc.perform(post("/users/1/requests?eventId=1")
                         .contentType(MediaType.APPLICATION_JSON))
@@ -349,6 +354,38 @@ class PrivateControllerTest {
 
     }
 
+    @Test
+    void addNewParticipationRequestWithIdempotencyKey() throws Exception {
+        ParticipationRequestDto participationRequestDto = new ParticipationRequestDto();
+        participationRequestDto.setRequester(1L);
+        participationRequestDto.setId(1L);
+        participationRequestDto.setStatus(Status.CONFIRMED);
+        participationRequestDto.setEvent(1L);
+
+        when(requestService.addNewParticipationRequest(1L, 1L, "retry-1")).thenReturn(participationRequestDto);
+
+        mockMvc.perform(post("/users/1/requests?eventId=1")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1L), Long.class));
+    }
+
+    @Test
+    void addNewParticipationRequestWhenIdempotencyKeyIsTooLongThenReturnBadRequest() {
+        NestedServletException thrown = Assertions
+                .assertThrows(NestedServletException.class, () ->
+                        mockMvc.perform(post("/users/1/requests?eventId=1")
+                                        .header("Idempotency-Key", "k".repeat(65))
+                                        .contentType(MediaType.APPLICATION_JSON))
+                                .andExpect(status().isBadRequest()));
+
+        assertEquals("Request processing failed; nested exception is " +
+                        "javax.validation.ConstraintViolationException: addNewParticipationRequest.idempotencyKey: " +
+                        "Ключ идемпотентности должен быть не длиннее 64 символов",
+                thrown.getMessage());
+    }
+
     @Test
     void patchEventWhenValidArguments() throws Exception {
         UpdateEventRequest updateEventRequest = new UpdateEventRequest();
@@ -515,6 +552,38 @@ class PrivateControllerTest {
                 .andExpect(jsonPath("$.id", is(1L), Long.class));
     }
 
+    @Test
+    void updateParticipationRequestsStatus() throws Exception {
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(List.of(1L, 2L));
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        when(requestService.updateParticipationRequestsStatus(anyLong(), anyLong(), any()))
+                .thenReturn(List.of(new ParticipationRequestStatusResultDto(1L, Status.CONFIRMED, null),
+                        new ParticipationRequestStatusResultDto(2L, Status.REJECTED,
+                                "Превышен лимит заявок на участие в событии")));
+
+        mockMvc.perform(patch("/users/1/events/1/requests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(statusUpdate)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is("CONFIRMED")))
+                .andExpect(jsonPath("$[1].requestId", is(2L), Long.class))
+                .andExpect(jsonPath("$[1].status", is("REJECTED")));
+    }
+
+    @Test
+    void updateParticipationRequestsStatusWhenRequestIdsIsEmptyThenReturnBadRequest() throws Exception {
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(List.of());
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        mockMvc.perform(patch("/users/1/events/1/requests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(statusUpdate)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getUserEventsWhenValidArguments() throws Exception {
         EventShortDto eventShortDto = new EventShortDto();
@@ -634,5 +703,44 @@ class PrivateControllerTest {
                 .andExpect(jsonPath("$[0].id", is(1L), Long.class));
     }
 
+    @Test
+    void getRequestsByUserEventWithStatusReturnsNextCursorHeader() throws Exception {
+        ParticipationRequestDto participationRequestDto = new ParticipationRequestDto();
+        participationRequestDto.setId(1L);
+        participationRequestDto.setCreated(LocalDateTime.now());
+        participationRequestDto.setEvent(1L);
+        participationRequestDto.setRequester(2L);
+        participationRequestDto.setStatus(Status.PENDING);
+
+        when(requestService.getUserEventParticipationRequests(1L, 1L, Status.PENDING, null, 1))
+                .thenReturn(new KeysetPage<>(List.of(participationRequestDto), "next"));
+
+        mockMvc.perform(get("/users/1/events/1/requests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("status", "PENDING")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].id", is(1L), Long.class));
+    }
+
+    @Test
+    void getParticipationRequestsByUserByCursor() throws Exception {
+        ParticipationRequestDto participationRequestDto = new ParticipationRequestDto();
+        participationRequestDto.setId(1L);
+        participationRequestDto.setCreated(LocalDateTime.now());
+        participationRequestDto.setEvent(1L);
+        participationRequestDto.setRequester(1L);
+        participationRequestDto.setStatus(Status.CONFIRMED);
+
+        when(requestService.getUserParticipationRequests(1L, null, "", 10))
+                .thenReturn(new KeysetPage<>(List.of(participationRequestDto), null));
 
-}
\ No newline at end of file
+        mockMvc.perform(get("/users/1/requests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("cursor", ""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].id", is(1L), Long.class));
+    }
+}
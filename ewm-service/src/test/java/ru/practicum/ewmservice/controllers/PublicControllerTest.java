@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.util.NestedServletException;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.compilation.dto.CompilationDto;
 import ru.practicum.ewmservice.models.event.dto.EventFullDto;
@@ -31,6 +32,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -341,6 +343,23 @@ class PublicControllerTest {
                 .andExpect(jsonPath("$[0].id", is(1L), Long.class));
     }
 
+    @Test
+    void getCategoriesByCursorReturnsNextCursorHeader() throws Exception {
+        CategoryDto categoryDto = new CategoryDto();
+        categoryDto.setId(1L);
+        categoryDto.setName("TestCategory");
+
+        when(categoryService.getCategories("", 1)).thenReturn(new KeysetPage<>(List.of(categoryDto), "next"));
+
+        mockMvc.perform(get("/categories")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("cursor", "")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].id", is(1L), Long.class));
+    }
+
     @Test
     void getCategoriesWhenFromIsNegativeThenReturnBadRequest() {
         NestedServletException thrown = Assertions
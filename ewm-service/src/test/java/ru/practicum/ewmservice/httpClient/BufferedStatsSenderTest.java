@@ -0,0 +1,241 @@
+package ru.practicum.ewmservice.httpClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+import ru.practicum.ewmservice.models.httpClientRequestEntity.EndpointHit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class BufferedStatsSenderTest {
+    private static final String URL = "http://stats-server";
+
+    private static final String HITS_URL = URL + "/hits";
+
+    // Интервал, который заведомо не истекает за время теста: отправка запускается из теста вызовом flush
+    private static final long NEVER_MS = 3_600_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @TempDir
+    Path spillDir;
+
+    private MockRestServiceServer server;
+
+    private BufferedStatsSender sender;
+
+    @BeforeEach
+    void setUp() {
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sender.shutdown();
+        server.verify();
+    }
+
+    @Test
+    void ringBufferDropsOldestHit() {
+        sender = sender(2, 3, 1, null);
+        sender.send(hit(1));
+        sender.send(hit(2));
+        sender.send(hit(3));
+        server.expect(requestTo(HITS_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(jsonPath("$[*].uri", contains("/events/2", "/events/3")))
+                .andRespond(withSuccess());
+
+        sender.flush();
+
+        assertEquals(1, meterRegistry.counter("stats.client.hits.dropped").count());
+        assertEquals(2, meterRegistry.counter("stats.client.hits.sent").count());
+    }
+
+    @Test
+    void flusherStartsOnlyAfterStart() throws InterruptedException {
+        sender = new BufferedStatsSender(restTemplate, objectMapper, meterRegistry, URL, 10, 100, 10,
+                1, 1, "");
+        sender.send(hit(1));
+        server.expect(requestTo(HITS_URL))
+                .andExpect(jsonPath("$[*].uri", contains("/events/1")))
+                .andRespond(withSuccess());
+
+        // Созданный, но не запущенный отправитель ничего не отправляет
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(0, meterRegistry.counter("stats.client.hits.sent").count());
+
+        sender.start();
+
+        server.verify(Duration.ofSeconds(5));
+        assertEquals(1, meterRegistry.counter("stats.client.hits.sent").count());
+    }
+
+    @Test
+    void failedBatchIsRetriedWithBackoff() {
+        sender = sender(10, 3, 50, null);
+        sender.send(hit(1));
+        server.expect(times(2), requestTo(HITS_URL)).andRespond(withServerError());
+        server.expect(requestTo(HITS_URL))
+                .andExpect(jsonPath("$[*].uri", contains("/events/1")))
+                .andRespond(withSuccess());
+
+        long started = System.nanoTime();
+        sender.flush();
+
+        // Между попытками выдерживаются задержки 50 и 100 мс
+        assertTrue(System.nanoTime() - started >= 150_000_000L);
+        assertEquals(1, meterRegistry.counter("stats.client.hits.sent").count());
+    }
+
+    @Test
+    void batchIsSpilledAfterRetriesAndReplayedAfterRecovery() throws IOException {
+        Path spillFile = spillDir.resolve("hits.ndjson");
+        sender = sender(10, 2, 1, spillFile);
+        sender.send(hit(1));
+        sender.send(hit(2));
+        server.expect(times(2), requestTo(HITS_URL)).andRespond(withServerError());
+
+        sender.flush();
+
+        server.verify();
+        List<String> spilled = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+        assertEquals(List.of(json(hit(1)), json(hit(2))), spilled);
+        assertEquals(2, meterRegistry.counter("stats.client.hits.spilled").count());
+
+        // После восстановления связи сначала отправляются новые хиты, затем досылается файл
+        server.reset();
+        sender.send(hit(3));
+        server.expect(requestTo(HITS_URL))
+                .andExpect(jsonPath("$[*].uri", contains("/events/3")))
+                .andRespond(withSuccess());
+        server.expect(requestTo(HITS_URL))
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(String.join(System.lineSeparator(), spilled) + System.lineSeparator()))
+                .andRespond(withSuccess());
+
+        sender.flush();
+
+        assertEquals(List.of(), files());
+    }
+
+    @Test
+    void replayIsRepeatedWhenServerIsOverloaded() throws IOException {
+        Path spillFile = spillDir.resolve("hits.ndjson");
+        spill(spillFile);
+        server.expect(requestTo(HITS_URL)).andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+
+        sender.flush();
+
+        // 429 - временная ошибка, файл остаётся и досылается при следующей отправке
+        server.verify();
+        assertEquals(List.of("hits.ndjson.replay"), files());
+        server.reset();
+        server.expect(requestTo(HITS_URL)).andRespond(withSuccess());
+
+        sender.flush();
+
+        assertEquals(List.of(), files());
+    }
+
+    @Test
+    void replayRejectedByServerIsQuarantined() throws IOException {
+        Path spillFile = spillDir.resolve("hits.ndjson");
+        List<String> spilled = spill(spillFile);
+        server.expect(requestTo(HITS_URL)).andRespond(withBadRequest());
+
+        sender.flush();
+
+        List<String> files = files();
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).matches("hits\\.ndjson\\.\\d+\\.rejected"), files.get(0));
+        assertEquals(spilled, Files.readAllLines(spillDir.resolve(files.get(0)), StandardCharsets.UTF_8));
+        assertEquals(1, meterRegistry.counter("stats.client.spill.rejected").count());
+
+        // Отклонённый файл больше не отправляется: лишний запрос провалил бы проверку заглушки
+        sender.flush();
+    }
+
+    @Test
+    void batchRejectedByServerIsNotRetried() throws IOException {
+        Path spillFile = spillDir.resolve("hits.ndjson");
+        sender = sender(10, 3, 1, spillFile);
+        sender.send(hit(1));
+        server.expect(requestTo(HITS_URL)).andRespond(withBadRequest());
+
+        sender.flush();
+
+        assertEquals(1, meterRegistry.counter("stats.client.hits.rejected").count());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    // Хиты, сохранённые в файл после исчерпания попыток отправки
+    private List<String> spill(Path spillFile) throws IOException {
+        sender = sender(10, 1, 1, spillFile);
+        sender.send(hit(1));
+        sender.send(hit(2));
+        server.expect(requestTo(HITS_URL)).andRespond(withServerError());
+        sender.flush();
+        server.verify();
+        server.reset();
+        return Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+    }
+
+    private BufferedStatsSender sender(int capacity, int maxAttempts, long initialBackoffMs, Path spillFile) {
+        return new BufferedStatsSender(restTemplate, objectMapper, meterRegistry, URL, capacity, 100, NEVER_MS,
+                maxAttempts, initialBackoffMs, spillFile == null ? "" : spillFile.toString());
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private String json(EndpointHit endpointHit) throws IOException {
+        return objectMapper.writeValueAsString(endpointHit);
+    }
+
+    private static EndpointHit hit(int i) {
+        EndpointHit endpointHit = new EndpointHit();
+        endpointHit.setApp("ewm-main-service");
+        endpointHit.setUri("/events/" + i);
+        endpointHit.setIp("127.0.0.1");
+        endpointHit.setTimesTamp("2025-01-01 10:00:00");
+        return endpointHit;
+    }
+}
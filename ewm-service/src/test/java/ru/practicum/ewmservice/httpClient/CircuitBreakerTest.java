@@ -0,0 +1,90 @@
+package ru.practicum.ewmservice.httpClient;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = new CircuitBreaker("test", 4, 50, 1000, 2, now::get);
+    }
+
+    private void call(boolean success) {
+        assertTrue(circuitBreaker.tryAcquire());
+        if (success) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        // Проверка размыкания только после заполнения окна и достижения порога ошибок
+        call(false);
+        call(false);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        call(true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void staysClosedWhenFailureRateIsBelowThreshold() {
+        // Проверка случая, когда старые ошибки вытесняются из окна успешными вызовами
+        call(false);
+        call(true);
+        call(true);
+        call(true);
+        call(true);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbes() {
+        // Проверка замыкания после успешных пробных вызовов
+        openCircuit();
+        now.addAndGet(1000);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void reopensWhenProbeFails() {
+        // Проверка повторного размыкания при ошибке пробного вызова
+        openCircuit();
+        now.addAndGet(1000);
+
+        call(false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        now.addAndGet(999);
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.ewmservice.httpClient;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение пропускной способности клиента статистики с транспортами SIMPLE и POOLED
+ * на локальной заглушке сервиса статистики. Запуск: mvn test -Dbenchmark=true -Dtest=StatsTransportBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StatsTransportBenchmarkTest {
+    private static final int THREADS = 16;
+
+    private static final long WARMUP_MS = 2_000;
+
+    private static final long MEASURE_MS = 10_000;
+
+    private HttpServer server;
+
+    private String statServiceUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Логирование каждого запроса в консоль заметно искажает замер
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        byte[] body = "[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":1}]"
+                .getBytes(StandardCharsets.UTF_8);
+        // Без TCP_NODELAY заглушка упирается в задержку Нейгла, а не в транспорт клиента
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/stats", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+        statServiceUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void compareTransports() throws Exception {
+        double simple = measure(StatsTransport.SIMPLE);
+        double pooled = measure(StatsTransport.POOLED);
+
+        System.out.printf("Транспорт SIMPLE: %.0f запросов/с%n", simple);
+        System.out.printf("Транспорт POOLED: %.0f запросов/с%n", pooled);
+        assertTrue(simple > 0 && pooled > 0);
+    }
+
+    private double measure(StatsTransport transport) throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ClientHttpRequestFactory requestFactory = new StatsClientConfig().statsRequestFactory(
+                meterRegistry, transport, THREADS, THREADS, 1000, 3000, 500);
+        HttpClient httpClient = new HttpClient(statServiceUrl, null, new RestTemplate(requestFactory),
+                new CircuitBreaker("benchmark", 20, 50, 10_000, 3), meterRegistry, 10_000);
+
+        run(httpClient, WARMUP_MS);
+        long requests = run(httpClient, MEASURE_MS);
+        if (requestFactory instanceof AutoCloseable) {
+            ((AutoCloseable) requestFactory).close();
+        }
+        return requests * 1000.0 / MEASURE_MS;
+    }
+
+    private long run(HttpClient httpClient, long durationMs) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        LocalDateTime end = LocalDateTime.now().plusYears(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    if (httpClient.getStat(start, end, new String[]{"/events/1"}, true) != null) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> future : futures) {
+            total += future.get();
+        }
+        executor.shutdown();
+        return total;
+    }
+}
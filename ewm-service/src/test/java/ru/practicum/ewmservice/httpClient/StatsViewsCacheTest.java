@@ -0,0 +1,129 @@
+package ru.practicum.ewmservice.httpClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import ru.practicum.ewmservice.models.httpClientRequestEntity.ViewStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatsViewsCacheTest {
+    private HttpClient httpClient;
+
+    private StatsViewsCache viewsCache;
+
+    @BeforeEach
+    void setUp() {
+        httpClient = mock(HttpClient.class);
+        viewsCache = new StatsViewsCache(httpClient, new SimpleMeterRegistry(), 60_000, 100, 2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        viewsCache.shutdown();
+    }
+
+    private static ViewStats viewStats(String uri, long hits) {
+        ViewStats viewStats = new ViewStats();
+        viewStats.setUri(uri);
+        viewStats.setHits(hits);
+        return viewStats;
+    }
+
+    @Test
+    void getViewsLoadsMissesInOneRequestAndCachesResult() {
+        // Проверка загрузки всех промахов одним запросом и повторного чтения из кэша
+        when(httpClient.fetchStatByUri(any(), any(), any(), anyBoolean()))
+                .thenReturn(Map.of("/event/1", viewStats("/event/1", 5)));
+
+        Map<String, Long> views = viewsCache.getViews(List.of("/event/1", "/event/2"));
+        assertEquals(Map.of("/event/1", 5L, "/event/2", 0L), views);
+
+        assertEquals(Map.of("/event/1", 5L), viewsCache.getViews(List.of("/event/1")));
+        verify(httpClient, times(1)).fetchStatByUri(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getViewsCoalescesConcurrentMisses() throws Exception {
+        // Проверка того, что одновременные промахи по одному uri приводят к одному запросу
+        CountDownLatch release = new CountDownLatch(1);
+        when(httpClient.fetchStatByUri(any(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            release.await();
+            return Map.of("/event/1", viewStats("/event/1", 7));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Map<String, Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> viewsCache.getViews(List.of("/event/1"))));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<Map<String, Long>> future : futures) {
+            assertEquals(Map.of("/event/1", 7L), future.get());
+        }
+        executor.shutdown();
+        verify(httpClient, times(1)).fetchStatByUri(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getViewsDoesNotCacheFallbackWhenStatsServerIsUnavailable() {
+        // Проверка того, что последние известные значения не кэшируются и после восстановления
+        // сервиса статистики просмотры загружаются заново
+        when(httpClient.fetchStatByUri(any(), any(), any(), anyBoolean()))
+                .thenThrow(new ResourceAccessException("Сервис статистики недоступен"))
+                .thenReturn(Map.of("/event/1", viewStats("/event/1", 9)));
+        when(httpClient.getLastKnownStats(any(), anyBoolean()))
+                .thenReturn(Map.of("/event/1", viewStats("/event/1", 3)));
+
+        assertEquals(Map.of("/event/1", 3L, "/event/2", 0L), viewsCache.getViews(List.of("/event/1", "/event/2")));
+
+        assertEquals(Map.of("/event/1", 9L, "/event/2", 0L), viewsCache.getViews(List.of("/event/1", "/event/2")));
+        assertEquals(Map.of("/event/2", 0L), viewsCache.getViews(List.of("/event/2")));
+        verify(httpClient, times(2)).fetchStatByUri(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getViewsUsesCachedValuesWhenStatsServerIsUnavailable() {
+        // Проверка того, что при недоступности сервиса статистики закэшированные значения не теряются
+        when(httpClient.fetchStatByUri(any(), any(), any(), anyBoolean()))
+                .thenReturn(Map.of("/event/1", viewStats("/event/1", 5)))
+                .thenThrow(new ResourceAccessException("Сервис статистики недоступен"));
+        viewsCache.getViews(List.of("/event/1"));
+
+        assertEquals(Map.of("/event/1", 5L, "/event/2", 0L), viewsCache.getViews(List.of("/event/1", "/event/2")));
+        verify(httpClient).getLastKnownStats(new String[]{"/event/2"}, true);
+    }
+
+    @Test
+    void getViewsLoadsOnDedicatedExecutor() {
+        // Проверка того, что блокирующая загрузка выполняется в отдельном пуле, а не в общем ForkJoinPool
+        List<String> threads = new ArrayList<>();
+        when(httpClient.fetchStatByUri(any(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return Map.of();
+        });
+
+        viewsCache.getViews(List.of("/event/1"));
+
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0).startsWith("stats-views-loader-"), threads.get(0));
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.ewmservice.repositories;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.event.State;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventSearchCriteriaTest {
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    private static final LocalDateTime END = START.plusDays(7);
+
+    private static String where(EventSearchCriteria criteria) {
+        String jpql = new JPAQuery<>()
+                .select(QEvent.event)
+                .from(QEvent.event)
+                .where(criteria.toPredicate(new LikeEventTextSearch(), new PostGisEventGeoSearch()))
+                .toString();
+        int where = jpql.indexOf("where ");
+        return where < 0 ? "" : jpql.substring(where + "where ".length());
+    }
+
+    @Test
+    void noFiltersProduceNoConditions() {
+        assertEquals("", where(EventSearchCriteria.builder().build()));
+    }
+
+    @Test
+    void emptyListsAndBlankTextAreIgnored() {
+        assertEquals("", where(EventSearchCriteria.builder()
+                .text(" ")
+                .users(new Long[0])
+                .categories(new Long[0])
+                .states(new State[0])
+                .build()));
+    }
+
+    @Test
+    void singleValuesAreComparedForEquality() {
+        assertEquals("event.state = ?1 and event.initiator.id = ?2 and event.category.id = ?3",
+                where(EventSearchCriteria.builder()
+                        .users(new Long[]{1L})
+                        .categories(new Long[]{3L})
+                        .states(new State[]{State.PUBLISHED})
+                        .build()));
+    }
+
+    @Test
+    void severalValuesAreComparedWithIn() {
+        assertEquals("event.state in ?1 and event.initiator.id in ?2 and event.category.id in ?3",
+                where(EventSearchCriteria.builder()
+                        .users(new Long[]{1L, 2L})
+                        .categories(new Long[]{3L, 4L})
+                        .states(new State[]{State.PENDING, State.PUBLISHED})
+                        .build()));
+    }
+
+    @Test
+    void textUsesTextSearch() {
+        assertEquals("lower(event.annotation) like ?1 escape '!' or lower(event.description) like ?2 escape '!'",
+                where(EventSearchCriteria.builder().text("концерт").build()));
+    }
+
+    @Test
+    void paidAndAvailable() {
+        assertEquals("event.paid = ?1", where(EventSearchCriteria.builder().paid(false).build()));
+        assertEquals("event.confirmedRequests < event.participantLimit",
+                where(EventSearchCriteria.builder().onlyAvailable(true).build()));
+    }
+
+    @Test
+    void rangeWithOneOrBothBounds() {
+        assertEquals("event.eventDate between ?1 and ?2",
+                where(EventSearchCriteria.builder().rangeStart(START).rangeEnd(END).build()));
+        assertEquals("event.eventDate >= ?1", where(EventSearchCriteria.builder().rangeStart(START).build()));
+        assertEquals("event.eventDate <= ?1", where(EventSearchCriteria.builder().rangeEnd(END).build()));
+    }
+
+    @Test
+    void pointNeedsBothCoordinates() {
+        assertEquals("", where(EventSearchCriteria.builder().lat(55.75).build()));
+        assertEquals("function('event_location_within', event.location.lat, event.location.lon, "
+                        + "event.location.radius, ?1, ?2) = true",
+                where(EventSearchCriteria.builder().lat(55.75).lon(37.62).build()));
+    }
+
+    @Test
+    void invertedRangeThrowsException() {
+        EventSearchCriteria criteria = EventSearchCriteria.builder().rangeStart(END).rangeEnd(START).build();
+
+        assertThrows(IllegalStateException.class, () -> criteria.toPredicate(new LikeEventTextSearch(), null));
+    }
+
+    @Test
+    void allFilters() {
+        assertEquals("event.state = ?1 and event.initiator.id in ?2 and event.category.id = ?3 "
+                        + "and (lower(event.annotation) like ?4 escape '!' or lower(event.description) like ?5 escape '!') "
+                        + "and event.paid = ?6 and event.confirmedRequests < event.participantLimit "
+                        + "and event.eventDate between ?7 and ?8",
+                where(EventSearchCriteria.builder()
+                        .text("концерт")
+                        .users(new Long[]{1L, 2L})
+                        .categories(new Long[]{3L})
+                        .states(new State[]{State.PUBLISHED})
+                        .paid(true)
+                        .onlyAvailable(true)
+                        .rangeStart(START)
+                        .rangeEnd(END)
+                        .build()));
+    }
+}
@@ -6,16 +6,27 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.EntityCache;
+import ru.practicum.ewmservice.EntityCacheConfig;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.DataConflictException;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.category.dto.NewCategoryDto;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @Transactional
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
@@ -25,6 +36,10 @@ class CategoryServiceImplTest {
 
     private final CategoryService categoryService;
 
+    private final CacheManager cacheManager;
+
+    private final TransactionTemplate transactionTemplate;
+
     @AfterEach
     void afterEach() {
         em.createNativeQuery("truncate table categories");
@@ -109,6 +124,35 @@ class CategoryServiceImplTest {
         assertEquals("Категория с именем Test Category уже существует", thrown.getMessage());
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void patchCategoryEvictsCachedCategoryAfterCommit() {
+        NewCategoryDto newCategoryDto = new NewCategoryDto();
+        newCategoryDto.setName("Test Category");
+        CategoryDto savedCategory = categoryService.addNewCategory(newCategoryDto);
+        Long id = savedCategory.getId();
+        Cache cache = cacheManager.getCache(EntityCacheConfig.CATEGORIES);
+        categoryService.getCategory(id);
+        // В кэше хранится неизменяемый снимок, а не сущность
+        assertEquals(new EntityCache.CategorySnapshot(id, "Test Category"), cache.get(id).get());
+
+        CategoryDto categoryDto = new CategoryDto();
+        categoryDto.setId(id);
+        categoryDto.setName("Patched Category");
+        transactionTemplate.executeWithoutResult(status -> {
+            categoryService.patchCategory(categoryDto);
+            // До фиксации транзакции запись остаётся в кэше
+            assertNotNull(cache.get(id));
+        });
+
+        assertNull(cache.get(id));
+        assertEquals(categoryDto, categoryService.getCategory(id));
+
+        categoryService.deleteCategory(id);
+
+        assertNull(cache.get(id));
+    }
+
     @Test
     void deleteCategoryWhenValidArguments() {
         // Проверяем корректный сценарий
@@ -140,6 +184,34 @@ class CategoryServiceImplTest {
         assertEquals(List.of(categoryDto), categories);
     }
 
+    @Test
+    void getCategoriesByCursor() {
+        // Проверка постраничного вывода по курсору: вторая страница начинается после последней категории первой
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            NewCategoryDto newCategoryDto = new NewCategoryDto();
+            newCategoryDto.setName("Test Category " + i);
+            ids.add(categoryService.addNewCategory(newCategoryDto).getId());
+        }
+
+        KeysetPage<CategoryDto> firstPage = categoryService.getCategories("", 2);
+        KeysetPage<CategoryDto> secondPage = categoryService.getCategories(firstPage.getNextCursor(), 2);
+
+        assertEquals(ids.subList(0, 2), firstPage.getContent().stream().map(CategoryDto::getId)
+                .collect(Collectors.toList()));
+        assertEquals(ids.subList(2, 3), secondPage.getContent().stream().map(CategoryDto::getId)
+                .collect(Collectors.toList()));
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void getCategoriesWhenCursorIsInvalidThenThrowException() {
+        IllegalStateException thrown = Assertions.assertThrows(IllegalStateException.class,
+                () -> categoryService.getCategories("не курсор", 2));
+
+        assertEquals("Некорректный курсор не курсор", thrown.getMessage());
+    }
+
     @Test
     void getCategoryWhenValidArguments() {
         NewCategoryDto newCategoryDto = new NewCategoryDto();
@@ -0,0 +1,64 @@
+package ru.practicum.ewmservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.repositories.EventRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ConfirmedRequestsReconcilerTest {
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EventRepository eventRepository;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @Test
+    void reconcileOnceRepairsDriftInBatches() {
+        // Счётчики двух из пяти событий расходятся с таблицей заявок
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'reconcile-' || g, 'reconcile-' || g || '@mail.ru' from generate_series(0, 5) g");
+        jdbcTemplate.update("insert into categories (name) values ('reconcile')");
+        jdbcTemplate.update("insert into events (annotation, category_id, confirmed_requests, created_on, "
+                + "description, event_date, initiator_id, paid, participant_limit, published_on, "
+                + "request_moderation, state, title) "
+                + "select 'annotation', c.id, stored, now(), 'description', now() + interval '1 day', u.id, false, "
+                + "10, now(), true, 'PUBLISHED', 'reconcile-' || g "
+                + "from (values (0, 2), (1, 0), (2, 5), (3, 1), (4, 0)) as v(g, stored), "
+                + "(select id from categories where name = 'reconcile') as c, "
+                + "(select id from users where email = 'reconcile-0@mail.ru') as u");
+        // Подтверждено заявок: 2, 1, 3, 1, 0; отклонённые и ожидающие заявки не учитываются
+        jdbcTemplate.update("insert into participation_requests (created, event, requester, status) "
+                + "select now(), e.id, u.id, case when r <= v.confirmed then 'CONFIRMED' else 'REJECTED' end "
+                + "from (values (0, 2), (1, 1), (2, 3), (3, 1), (4, 0)) as v(g, confirmed) "
+                + "join events as e on e.title = 'reconcile-' || v.g "
+                + "cross join generate_series(1, 4) as r "
+                + "join users as u on u.email = 'reconcile-' || r || '@mail.ru'");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConfirmedRequestsReconciler reconciler =
+                new ConfirmedRequestsReconciler(eventRepository, transactionManager, meterRegistry, true, 2);
+
+        long drift = reconciler.reconcileOnce();
+
+        assertEquals(List.of(2, 1, 3, 1, 0), jdbcTemplate.queryForList("select confirmed_requests from events "
+                + "where title like 'reconcile-%' order by title", Integer.class));
+        // Остальные события базы данных тоже сверяются, но их счётчики должны совпадать с заявками
+        assertEquals(1 + 2, drift);
+        assertEquals(3, meterRegistry.get("ewm.requests.reconcile.last-drift").gauge().value());
+        assertEquals(2, meterRegistry.get("ewm.requests.reconcile.repaired").counter().count());
+
+        assertEquals(0, reconciler.reconcileOnce());
+        assertEquals(0, meterRegistry.get("ewm.requests.reconcile.last-drift").gauge().value());
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.ewmservice.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Набор из миллиона событий для проверки планов запросов. Создаётся в текущей транзакции.
+ */
+final class EventDataSet {
+    static final int EVENTS = 1_000_000;
+
+    static final int USERS = 10_000;
+
+    static final int CATEGORIES = 100;
+
+    static final int LOCATIONS = 1_000;
+
+    private EventDataSet() {
+    }
+
+    static void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'plan-' || g, 'plan-' || g || '@mail.ru' from generate_series(1, ?) g", USERS);
+        jdbcTemplate.update("insert into categories (name) select 'plan-' || g from generate_series(1, ?) g",
+                CATEGORIES);
+        jdbcTemplate.update("insert into locations (name, radius, lat, lon) "
+                + "select 'plan-' || g, 10, 55 + random(), 37 + random() from generate_series(1, ?) g", LOCATIONS);
+        // События равномерно распределены на два года назад и год вперёд: 70% опубликованы,
+        // у 30% нет лимита участников, часть событий с лимитом заполнена
+        jdbcTemplate.update("insert into events (annotation, category_id, confirmed_requests, created_on, "
+                + "description, event_date, initiator_id, location_id, paid, participant_limit, published_on, "
+                + "request_moderation, state, title) "
+                + "select 'annotation ' || g, c.base + g % ?, (g % 7) * 3, now() - interval '1 year', "
+                + "'description ' || g, now() - interval '2 years' + g * interval '94 seconds', u.base + g * 7 % ?, "
+                + "l.base + g % ?, g % 2 = 0, case when g % 10 < 3 then 0 else 10 + g % 90 end, "
+                + "now() - interval '1 day', true, "
+                + "case when g % 10 < 7 then 'PUBLISHED' when g % 10 < 9 then 'PENDING' else 'CANCELED' end, "
+                + "'title ' || g "
+                + "from generate_series(1, ?) g, "
+                + "(select min(id) as base from categories where name like 'plan-%') c, "
+                + "(select min(id) as base from users where email like 'plan-%') u, "
+                + "(select min(id) as base from locations where name like 'plan-%') l",
+                CATEGORIES, USERS, LOCATIONS, EVENTS);
+        jdbcTemplate.update("insert into event_views (event_id, views) "
+                + "select id, id % 5000 from events on conflict do nothing");
+        jdbcTemplate.execute("analyze users, categories, locations, events, event_views");
+    }
+
+    static long firstUser(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("select min(id) from users where email like 'plan-%'", Long.class);
+    }
+
+    static long firstCategory(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("select min(id) from categories where name like 'plan-%'", Long.class);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.ewmservice.services;
+
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.models.event.Event;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.repositories.BoundingBoxEventGeoSearch;
+import ru.practicum.ewmservice.repositories.EventGeoSearch;
+import ru.practicum.ewmservice.repositories.EventRepository;
+import ru.practicum.ewmservice.repositories.LocationRepository;
+import ru.practicum.ewmservice.repositories.PostGisEventGeoSearch;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class EventGeoSearchTest {
+    private static final int LOCATIONS = 300;
+
+    private static final int POINTS = 300;
+
+    private final EntityManager em;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EventRepository eventRepository;
+
+    private final LocationRepository locationRepository;
+
+    @Test
+    void indexAndBoundingBoxMatchDistanceFunction() {
+        Random random = new Random(7);
+        jdbcTemplate.update("insert into users (name, email) values ('geo', 'geo@mail.ru')");
+        jdbcTemplate.update("insert into categories (name) values ('geo')");
+        for (int i = 0; i < LOCATIONS; i++) {
+            double radius = i % 50 == 0 ? random.nextDouble() * 5_000 : random.nextDouble() * 500;
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            if (i % 30 == 1) {
+                // Координаты вне допустимых диапазонов: широта за полюсом и долгота больше 180 по модулю
+                lat = Math.signum(lat) * (180 - Math.abs(lat));
+                lon = lon + (lon < 0 ? -360 : 360);
+            } else if (i % 30 == 2) {
+                lat = Math.signum(lat) * (180 - Math.abs(lat));
+            }
+            jdbcTemplate.update("insert into locations (name, radius, lat, lon) values (?, ?, ?, ?)",
+                    "geo-" + i, radius, lat, lon);
+        }
+        jdbcTemplate.update("insert into events (annotation, category_id, confirmed_requests, created_on, "
+                + "description, event_date, initiator_id, location_id, paid, participant_limit, published_on, "
+                + "request_moderation, state, title) "
+                + "select 'annotation', c.id, 0, now(), 'description', now() + interval '1 day', u.id, l.id, false, 0, "
+                + "now(), true, 'PUBLISHED', 'geo-' || l.id "
+                + "from locations as l, (select id from users where name = 'geo') as u, "
+                + "(select id from categories where name = 'geo') as c "
+                + "where l.name like 'geo-%'");
+        Map<String, EventGeoSearch> searches = Map.of(
+                "INDEX", new IndexEventGeoSearch(new LocationIndex(locationRepository, 0.5, 4096)),
+                "BOUNDING_BOX", new BoundingBoxEventGeoSearch(locationRepository));
+
+        for (int i = 0; i < POINTS; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            if (i % 10 == 1) {
+                // Рядом с линией перемены дат
+                lon = Math.signum(lon) * (180 - random.nextDouble() * 3);
+            } else if (i % 10 == 2) {
+                // Рядом с полюсом
+                lat = Math.signum(lat) * (90 - random.nextDouble() * 3);
+            } else if (i % 50 == 3) {
+                lat = Math.signum(lat) * (90 + random.nextDouble() * 10);
+            }
+            double pointLat = lat;
+            double pointLon = lon;
+            List<Long> expected = jdbcTemplate.queryForList("select e.id from events as e "
+                    + "join locations as l on e.location_id = l.id "
+                    + "where e.title like 'geo-%' and distance(l.lat, l.lon, ?, ?) <= l.radius order by e.id",
+                    Long.class, pointLat, pointLon);
+
+            searches.forEach((mode, search) -> {
+                List<Long> found = eventRepository.findAll(
+                                search.covers(pointLat, pointLon).and(QEvent.event.title.startsWith("geo-")), Pageable.unpaged())
+                        .stream()
+                        .map(Event::getId)
+                        .sorted()
+                        .collect(Collectors.toList());
+
+                assertEquals(expected, found, mode + ": точка " + pointLat + ", " + pointLon);
+            });
+        }
+    }
+
+    @Test
+    void postGisSearchUsesDWithinOnGeography() {
+        // PostGIS в тестовой базе данных не установлен, поэтому проверяется только перевод запроса в SQL
+        QEvent event = QEvent.event;
+        JPAQuery<Event> query = new JPAQuery<Event>(em)
+                .select(event)
+                .from(event)
+                .where(new PostGisEventGeoSearch().covers(55.75, 37.62));
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT, em);
+        serializer.serialize(query.getMetadata(), false, null);
+        QueryTranslator translator = new ASTQueryTranslatorFactory().createQueryTranslator(serializer.toString(),
+                serializer.toString(), Collections.emptyMap(),
+                em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class), null);
+        translator.compile(Collections.emptyMap(), false);
+        String sql = translator.getSQLString();
+
+        assertTrue(sql.matches("(?s).*st_dwithin\\(geography\\(st_makepoint\\((\\w+)\\.lon, \\1\\.lat\\)\\), "
+                + "geography\\(st_makepoint\\(\\?, \\?\\)\\).*"), sql);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.models.event.State;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка того, что число SQL-запросов при выводе списка событий не зависит от размера страницы:
+ * категория, инициатор и локация загружаются вместе с событиями.
+ */
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class EventListingStatementCountTest {
+    private static final String IP = "0:0:0:0:0:0:0:1";
+
+    private static final int EVENTS = 100;
+
+    private final EntityManager em;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EventService eventService;
+
+    private final CacheManager cacheManager;
+
+    private long owner;
+
+    @BeforeEach
+    void setUp() {
+        // У каждого события своя категория и локация, у половины событий свой инициатор
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'stat-' || g, 'stat-' || g || '@mail.ru' from generate_series(0, ?) g", EVENTS);
+        jdbcTemplate.update("insert into categories (name) select 'stat-' || g from generate_series(1, ?) g",
+                2 * EVENTS);
+        jdbcTemplate.update("insert into locations (name, radius, lat, lon) "
+                + "select 'stat-' || g, 10, 55 + g / 1000.0, 37 from generate_series(1, ?) g", 2 * EVENTS);
+        owner = jdbcTemplate.queryForObject("select id from users where email = 'stat-0@mail.ru'", Long.class);
+        jdbcTemplate.update("insert into events (annotation, category_id, confirmed_requests, created_on, "
+                        + "description, event_date, initiator_id, location_id, paid, participant_limit, "
+                        + "published_on, request_moderation, state, title) "
+                        + "select 'annotation ' || g, c.base + g, 0, now(), 'description ' || g, "
+                        + "now() + g * interval '1 hour', case when g % 2 = 0 then u.base + g / 2 else ? end, "
+                        + "l.base + g, g % 2 = 0, 0, now(), true, 'PUBLISHED', 'title ' || g "
+                        + "from generate_series(0, ? - 1) g, "
+                        + "(select min(id) as base from categories where name like 'stat-%') c, "
+                        + "(select min(id) + 1 as base from users where email like 'stat-%') u, "
+                        + "(select min(id) as base from locations where name like 'stat-%') l",
+                owner, 2 * EVENTS);
+        jdbcTemplate.update("insert into event_views (event_id, views) "
+                + "select id, id % 17 from events where title like 'title %' on conflict do nothing");
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void pageOfEventsCostsConstantNumberOfStatements() {
+        Map<String, IntConsumer> listings = new LinkedHashMap<>();
+        listings.put("публичный поиск по дате события", size -> eventService.searchEvents(null, null, null, null,
+                null, false, "EVENT_DATE", 0, size, IP, "/events", null, null));
+        listings.put("публичный поиск по просмотрам", size -> eventService.searchEvents(null, null, null, null,
+                null, false, "VIEWS", 0, size, IP, "/events", null, null));
+        listings.put("публичный поиск по курсору", size -> eventService.searchEvents(null, null, null, null,
+                null, false, "EVENT_DATE", (String) null, size, IP, "/events", null, null));
+        listings.put("публичный поиск по просмотрам по курсору", size -> eventService.searchEvents(null, null,
+                null, null, null, false, "VIEWS", (String) null, size, IP, "/events", null, null));
+        listings.put("поиск администратора", size -> eventService.searchEventByAdmin(null,
+                new State[]{State.PUBLISHED}, null, null, null, 0, size, null, null));
+        listings.put("поиск администратора по курсору", size -> eventService.searchEventByAdmin(null,
+                new State[]{State.PUBLISHED}, null, null, null, (String) null, size, null, null));
+        listings.put("события пользователя", size -> eventService.getUserEvents(0, size, owner));
+
+        listings.forEach((name, listing) -> assertEquals(statements(listing, 1), statements(listing, EVENTS), name));
+    }
+
+    private long statements(IntConsumer listing, int size) {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        em.clear();
+        // Кэш пользователей и категорий не должен влиять на сравнение
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        statistics.clear();
+        listing.accept(size);
+        return statistics.getPrepareStatementCount();
+    }
+}
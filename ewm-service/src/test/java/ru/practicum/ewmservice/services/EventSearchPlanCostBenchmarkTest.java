@@ -0,0 +1,168 @@
+package ru.practicum.ewmservice.services;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.models.event.Event;
+import ru.practicum.ewmservice.models.event.QEvent;
+import ru.practicum.ewmservice.models.event.State;
+import ru.practicum.ewmservice.repositories.EventSearchCriteria;
+import ru.practicum.ewmservice.repositories.EventTextSearch;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение оценок стоимости планов для предикатов поиска событий до и после EventSearchCriteria
+ * на наборе из миллиона событий. Запросы переводятся в SQL так же, как при выполнении через Hibernate,
+ * и оцениваются через EXPLAIN с теми же значениями параметров.
+ * Запуск: mvn test -Dbenchmark=true -Dtest=EventSearchPlanCostBenchmarkTest
+ */
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EventSearchPlanCostBenchmarkTest {
+    private static final Pattern TOTAL_COST = Pattern.compile("\"Total Cost\": ([0-9.]+)");
+
+    private static final int PAGE_SIZE = 10;
+
+    private final EntityManager em;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EventTextSearch eventTextSearch;
+
+    @Test
+    void comparePlanCosts() {
+        EventDataSet.seed(jdbcTemplate);
+        long category = EventDataSet.firstCategory(jdbcTemplate);
+        LocalDateTime now = LocalDateTime.now();
+        QEvent event = QEvent.event;
+
+        // Предикаты в том виде, в котором их строил сервис до появления EventSearchCriteria
+        Predicate publicBefore = event.state.eq(State.PUBLISHED)
+                .and(event.annotation.ne("").or(event.description.ne("")))
+                .and(event.category.id.ne(0L))
+                .and(event.paid.isTrue().or(event.paid.isFalse()))
+                .and(event.id.ne(0L))
+                .and(event.eventDate.between(now, now.plusYears(100)));
+        Predicate publicAfter = EventSearchCriteria.builder()
+                .states(new State[]{State.PUBLISHED})
+                .rangeStart(now)
+                .build()
+                .toPredicate(eventTextSearch, null);
+
+        Predicate publicByCategoryBefore = event.state.eq(State.PUBLISHED)
+                .and(event.annotation.ne("").or(event.description.ne("")))
+                .and(event.category.id.in(category + 5))
+                .and(event.paid.eq(true))
+                .and(event.confirmedRequests.lt(event.participantLimit))
+                .and(event.eventDate.between(now, now.plusYears(100)));
+        Predicate publicByCategoryAfter = EventSearchCriteria.builder()
+                .states(new State[]{State.PUBLISHED})
+                .categories(new Long[]{category + 5})
+                .paid(true)
+                .onlyAvailable(true)
+                .rangeStart(now)
+                .build()
+                .toPredicate(eventTextSearch, null);
+
+        Predicate adminBefore = event.category.id.ne(0L)
+                .and(event.initiator.id.ne(0L))
+                .and(event.state.isNotNull())
+                .and(event.eventDate.after(now.minusYears(100)));
+        Predicate adminAfter = EventSearchCriteria.builder().build().toPredicate(eventTextSearch, null);
+
+        Predicate adminPendingBefore = event.category.id.in(category + 5)
+                .and(event.initiator.id.ne(0L))
+                .and(event.state.in(State.PENDING))
+                .and(event.eventDate.after(now.minusYears(100)));
+        Predicate adminPendingAfter = EventSearchCriteria.builder()
+                .states(new State[]{State.PENDING})
+                .categories(new Long[]{category + 5})
+                .build()
+                .toPredicate(eventTextSearch, null);
+
+        List<String> regressions = new ArrayList<>();
+        compare("публичный поиск без фильтров", publicBefore, publicAfter, true, regressions);
+        compare("публичный поиск по категории", publicByCategoryBefore, publicByCategoryAfter, true, regressions);
+        compare("поиск администратора без фильтров", adminBefore, adminAfter, false, regressions);
+        compare("поиск администратора по категории и статусу", adminPendingBefore, adminPendingAfter, false,
+                regressions);
+
+        assertEquals(List.of(), regressions, "оценка стоимости выросла");
+    }
+
+    private void compare(String name, Predicate before, Predicate after, boolean byEventDate, List<String> regressions) {
+        double[] costBefore = costs(before, byEventDate);
+        double[] costAfter = costs(after, byEventDate);
+        System.out.printf("%s: страница %.2f -> %.2f, подсчёт %.2f -> %.2f%n",
+                name, costBefore[0], costAfter[0], costBefore[1], costAfter[1]);
+        if (costAfter[0] > costBefore[0] || costAfter[1] > costBefore[1]) {
+            regressions.add(name);
+        }
+    }
+
+    // Оценки стоимости первой страницы и запроса количества, который выполняет findAll(Predicate, Pageable)
+    private double[] costs(Predicate predicate, boolean byEventDate) {
+        QEvent event = QEvent.event;
+        JPAQuery<Event> page = new JPAQuery<Event>(em).select(event).from(event).where(predicate);
+        if (byEventDate) {
+            page.orderBy(event.eventDate.asc());
+        }
+        JPAQuery<Long> count = new JPAQuery<Long>(em).select(event.count()).from(event).where(predicate);
+        return new double[]{cost(page, " limit " + PAGE_SIZE), cost(count, "")};
+    }
+
+    private double cost(JPAQuery<?> query, String suffix) {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT, em);
+        serializer.serialize(query.getMetadata(), false, null);
+        SessionFactoryImplementor sessionFactory = em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class);
+        QueryTranslator translator = new ASTQueryTranslatorFactory().createQueryTranslator(serializer.toString(),
+                serializer.toString(), Collections.emptyMap(), sessionFactory, null);
+        translator.compile(Collections.emptyMap(), false);
+        String sql = translator.getSQLString();
+
+        List<Object> parameters = new ArrayList<>();
+        for (Object constant : serializer.getConstants()) {
+            // В сравнениях используются списки из одного значения, Hibernate переводит их в in (?)
+            Object value = constant instanceof Collection ? ((Collection<?>) constant).iterator().next() : constant;
+            if (value instanceof Enum) {
+                value = ((Enum<?>) value).name();
+            } else if (value instanceof LocalDateTime) {
+                value = Timestamp.valueOf((LocalDateTime) value);
+            }
+            parameters.add(value);
+        }
+        assertEquals(sql.chars().filter(c -> c == '?').count(), parameters.size(), sql);
+
+        String plan = jdbcTemplate.queryForObject("explain (format json) " + sql + suffix, String.class,
+                parameters.toArray());
+        Matcher matcher = TOTAL_COST.matcher(plan);
+        assertTrue(matcher.find(), plan);
+        return Double.parseDouble(matcher.group(1));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.models.event.State;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка того, что частые запросы поиска событий не переходят на последовательное чтение таблицы events
+ * на наборе из миллиона событий. Набор создаётся в транзакции теста и откатывается вместе с ней.
+ * Запуск: mvn test -Dplan-regression=true -Dtest=EventSearchQueryPlanTest
+ */
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@EnabledIfSystemProperty(named = "plan-regression", matches = "true")
+class EventSearchQueryPlanTest {
+    private static final String IP = "0:0:0:0:0:0:0:1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EventService eventService;
+
+    @Test
+    void hotSearchQueriesUseIndexes() {
+        EventDataSet.seed(jdbcTemplate);
+        long user = EventDataSet.firstUser(jdbcTemplate);
+        long category = EventDataSet.firstCategory(jdbcTemplate);
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("публичный поиск по дате события", () -> eventService.searchEvents(null, null, null, null,
+                null, false, "EVENT_DATE", 0, 10, IP, "/events", null, null));
+        queries.put("публичный поиск по категориям", () -> eventService.searchEvents(null,
+                new Long[]{category + 5, category + 6}, null, null, null, false, "EVENT_DATE", 0, 10, IP, "/events",
+                null, null));
+        queries.put("публичный поиск событий со свободными местами", () -> eventService.searchEvents(null, null,
+                null, null, null, true, "EVENT_DATE", 0, 10, IP, "/events", null, null));
+        queries.put("публичный поиск платных событий за неделю", () -> eventService.searchEvents(null, null, true,
+                now.plusDays(1), now.plusDays(8), false, null, 0, 10, IP, "/events", null, null));
+        queries.put("публичный поиск по просмотрам", () -> eventService.searchEvents(null, null, null, null, null,
+                false, "VIEWS", 20, 10, IP, "/events", null, null));
+        queries.put("публичный поиск по тексту", () -> eventService.searchEvents("фестиваль", null, null, null,
+                null, false, null, 0, 10, IP, "/events", null, null));
+        queries.put("события пользователя", () -> eventService.getUserEvents(0, 10, user + 42));
+        queries.put("поиск администратора по категории и статусу", () -> eventService.searchEventByAdmin(null,
+                new State[]{State.PUBLISHED}, new Long[]{category + 5}, now, now.plusMonths(1), 0, 10, null, null));
+
+        List<String> seqScans = new ArrayList<>();
+        queries.forEach((name, query) -> {
+            long before = seqScans();
+            query.run();
+            if (seqScans() != before) {
+                seqScans.add(name);
+            }
+        });
+
+        assertEquals(List.of(), seqScans, "запросы читают таблицу events последовательно");
+    }
+
+    private long seqScans() {
+        return jdbcTemplate.queryForObject(
+                "select seq_scan from pg_stat_xact_user_tables where relname = 'events'", Long.class);
+    }
+}
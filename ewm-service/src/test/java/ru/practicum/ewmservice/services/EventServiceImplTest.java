@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.category.dto.NewCategoryDto;
@@ -20,9 +21,12 @@ import ru.practicum.ewmservice.models.user.dto.UserDto;
 
 import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @Transactional
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
@@ -349,8 +353,9 @@ class EventServiceImplTest {
         anotherEventDto.setParticipantLimit(10);
         anotherEventDto.setPaid(true);
 
-        EventFullDto eventFullDto = eventService.addNewEvent(newEventDto, user.getId());
-        eventService.addNewEvent(anotherEventDto, user.getId());
+        EventFullDto eventFullDto = eventService.publishEvent(
+                eventService.addNewEvent(newEventDto, user.getId()).getId());
+        eventService.publishEvent(eventService.addNewEvent(anotherEventDto, user.getId()).getId());
 
         List<EventShortDto> result = eventService.searchEvents("1", new Long[]{categoryDto.getId()},
         false, null, null, false, null, 0, 10,
@@ -359,6 +364,180 @@ class EventServiceImplTest {
         assertEquals(eventMapper.toEventShortDtoFromEventFullDto(eventFullDto), result.get(0));
     }
 
+    @Test
+    void searchEventsReturnsOnlyPublishedEvents() {
+        // Черновики и отклонённые события в публичный поиск не попадают
+        Long[] ids = new Long[3];
+        for (int i = 0; i < ids.length; i++) {
+            NewEventDto newEventDto = setUpAddNewEvent();
+            newEventDto.setAnnotation("Событие для проверки статуса " + i);
+            ids[i] = eventService.addNewEvent(newEventDto, user.getId()).getId();
+        }
+        eventService.publishEvent(ids[1]);
+        eventService.rejectEvent(ids[2]);
+
+        List<EventShortDto> page = eventService.searchEvents("проверки статуса", null, null, null, null,
+                false, null, 0, 10, "0:0:0:0:0:0:0:1", "/events", null, null);
+        KeysetPage<EventShortDto> keysetPage = eventService.searchEvents("проверки статуса", null, null, null,
+                null, false, null, "", 10, "0:0:0:0:0:0:0:1", "/events", null, null);
+
+        assertEquals(List.of(ids[1]), page.stream().map(EventShortDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(ids[1]), keysetPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void searchEventsSortedByViews() {
+        // Проверка сортировки по просмотрам с постраничным выводом
+        long[] views = {5, 20, 10};
+        Long[] ids = new Long[views.length];
+        for (int i = 0; i < views.length; i++) {
+            NewEventDto newEventDto = setUpAddNewEvent();
+            newEventDto.setAnnotation("Событие для сортировки по просмотрам " + i);
+            ids[i] = eventService.addNewEvent(newEventDto, user.getId()).getId();
+            eventService.publishEvent(ids[i]);
+            em.createNativeQuery("update event_views set views = ?1 where event_id = ?2")
+                    .setParameter(1, views[i])
+                    .setParameter(2, ids[i])
+                    .executeUpdate();
+        }
+        // Просмотры обновлены в обход контекста персистентности
+        em.clear();
+
+        List<EventShortDto> firstPage = eventService.searchEvents("сортировки по просмотрам", null, null, null,
+                null, false, "VIEWS", 0, 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+        List<EventShortDto> secondPage = eventService.searchEvents("сортировки по просмотрам", null, null, null,
+                null, false, "VIEWS", 2, 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+
+        assertEquals(List.of(ids[1], ids[2]), firstPage.stream().map(EventShortDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(20, 10), firstPage.stream().map(EventShortDto::getViews).collect(Collectors.toList()));
+        assertEquals(List.of(ids[0]), secondPage.stream().map(EventShortDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void searchEventsByCursorSortedByEventDate() {
+        // Проверка курсора при совпадающих датах: события с одной датой упорядочены по id и не теряются между страницами
+        LocalDateTime eventDate = LocalDateTime.now().plusMonths(3).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime[] dates = {eventDate, eventDate.minusDays(1), eventDate};
+        Long[] ids = new Long[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            NewEventDto newEventDto = setUpAddNewEvent();
+            newEventDto.setAnnotation("Событие для проверки курсора " + i);
+            newEventDto.setEventDate(dates[i]);
+            ids[i] = eventService.publishEvent(eventService.addNewEvent(newEventDto, user.getId()).getId()).getId();
+        }
+
+        KeysetPage<EventShortDto> firstPage = eventService.searchEvents("проверки курсора", null, null, null, null,
+                false, "EVENT_DATE", "", 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+        KeysetPage<EventShortDto> secondPage = eventService.searchEvents("проверки курсора", null, null, null, null,
+                false, "EVENT_DATE", firstPage.getNextCursor(), 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+
+        assertEquals(List.of(ids[1], ids[0]), firstPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(ids[2]), secondPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void searchEventsByPointFiltersBeforePagination() {
+        // Ближайшие по дате события находятся в другой локации, но страница всё равно заполняется
+        LocalDateTime eventDate = LocalDateTime.now().plusMonths(3).truncatedTo(ChronoUnit.SECONDS);
+        Long[] ids = new Long[5];
+        for (int i = 0; i < ids.length; i++) {
+            NewEventDto newEventDto = setUpAddNewEvent();
+            newEventDto.setAnnotation("Событие для проверки отбора по точке " + i);
+            newEventDto.setEventDate(eventDate.plusDays(i));
+            if (i < 3) {
+                LocationDto farLocation = new LocationDto();
+                farLocation.setLat(10.0);
+                farLocation.setLon(10.0);
+                newEventDto.setLocation(farLocation);
+            }
+            ids[i] = eventService.publishEvent(eventService.addNewEvent(newEventDto, user.getId()).getId()).getId();
+        }
+
+        List<EventShortDto> page = eventService.searchEvents("отбора по точке", null, null, null, null, false,
+                "EVENT_DATE", 0, 2, "0:0:0:0:0:0:0:1", "/events", 44.0, 55.0);
+        KeysetPage<EventShortDto> keysetPage = eventService.searchEvents("отбора по точке", null, null, null, null,
+                false, "EVENT_DATE", "", 2, "0:0:0:0:0:0:0:1", "/events", 44.0, 55.0);
+
+        assertEquals(List.of(ids[3], ids[4]), page.stream().map(EventShortDto::getId).collect(Collectors.toList()));
+        assertEquals(List.of(ids[3], ids[4]), keysetPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void searchEventsByCursorSortedByViews() {
+        // Проверка курсора при сортировке по просмотрам
+        long[] views = {5, 20, 5};
+        Long[] ids = new Long[views.length];
+        for (int i = 0; i < views.length; i++) {
+            NewEventDto newEventDto = setUpAddNewEvent();
+            newEventDto.setAnnotation("Событие для проверки курсора " + i);
+            ids[i] = eventService.addNewEvent(newEventDto, user.getId()).getId();
+            eventService.publishEvent(ids[i]);
+            em.createNativeQuery("update event_views set views = ?1 where event_id = ?2")
+                    .setParameter(1, views[i])
+                    .setParameter(2, ids[i])
+                    .executeUpdate();
+        }
+        // Просмотры обновлены в обход контекста персистентности
+        em.clear();
+
+        KeysetPage<EventShortDto> firstPage = eventService.searchEvents("проверки курсора", null, null, null, null,
+                false, "VIEWS", "", 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+        KeysetPage<EventShortDto> secondPage = eventService.searchEvents("проверки курсора", null, null, null, null,
+                false, "VIEWS", firstPage.getNextCursor(), 2, "0:0:0:0:0:0:0:1", "/events", null, null);
+
+        assertEquals(List.of(ids[1], ids[0]), firstPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(ids[2]), secondPage.getContent().stream().map(EventShortDto::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void searchEventsWhenCursorIsForAnotherSortThenThrowException() {
+        NewEventDto newEventDto = setUpAddNewEvent();
+        newEventDto.setAnnotation("Событие для проверки курсора");
+        eventService.publishEvent(eventService.addNewEvent(newEventDto, user.getId()).getId());
+        String cursor = eventService.searchEvents("проверки курсора", null, null, null, null, false, "VIEWS", "",
+                1, "0:0:0:0:0:0:0:1", "/events", null, null).getNextCursor();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> eventService.searchEvents("проверки курсора",
+                null, null, null, null, false, "EVENT_DATE", cursor, 1, "0:0:0:0:0:0:0:1", "/events", null, null));
+    }
+
+    @Test
+    void searchEventsByFullTextUsesStemmingAndRanking() {
+        // Проверка поиска по словоформам на русском и английском языках и сортировки по релевантности
+        Long concertInDescription = addEventWithText("Вечер живой музыки",
+                "Приглашаем всех на вечер живой музыки в парке", "Будут играть уличные концерты и джем-сейшн");
+        Long concertInTitle = addEventWithText("Концерт органной музыки",
+                "Органная музыка в старинном соборе города", "Программа из произведений Баха и Генделя");
+        Long running = addEventWithText("Morning runs", "Join our friendly morning runs in the park",
+                "Every Saturday we are running five kilometers together");
+
+        List<Long> concerts = searchIds("концертов");
+        List<Long> runners = searchIds("runner run");
+        List<Long> runs = searchIds("running");
+
+        assertEquals(List.of(concertInTitle, concertInDescription), concerts);
+        assertEquals(List.of(), runners);
+        assertEquals(List.of(running), runs);
+    }
+
+    @Test
+    void searchEventsByFullTextFindsSubstrings() {
+        // Проверка поиска по части слова, которую полнотекстовый поиск не находит
+        Long event = addEventWithText("Фестиваль уличной еды", "Гастрофестиваль на набережной этим летом",
+                "Лучшие повара города и 100% натуральные продукты");
+
+        assertEquals(List.of(event), searchIds("астрофест"));
+        assertEquals(List.of(event), searchIds("100%"));
+        assertEquals(List.of(), searchIds("ул%еды"));
+    }
+
     @Test
     void getEventFullInfoByIdWhenValidArguments() {
         // Проверка корректного сценария
@@ -562,6 +741,21 @@ class EventServiceImplTest {
         assertEquals(eventFullDto, result.get(0));
     }
 
+    @Test
+    void searchEventByAdminByCursor() {
+        // Проверка курсора в поиске администратора: события идут по возрастанию id
+        Long first = eventService.addNewEvent(setUpAddNewEvent(), user.getId()).getId();
+        Long second = eventService.addNewEvent(setUpAddNewEvent(), user.getId()).getId();
+
+        KeysetPage<EventFullDto> firstPage = eventService.searchEventByAdmin(new Long[]{user.getId()}, null, null,
+                null, null, "", 1, null, null);
+        KeysetPage<EventFullDto> secondPage = eventService.searchEventByAdmin(new Long[]{user.getId()}, null, null,
+                null, null, firstPage.getNextCursor(), 1, null, null);
+
+        assertEquals(first, firstPage.getContent().get(0).getId());
+        assertEquals(second, secondPage.getContent().get(0).getId());
+    }
+
     @Test
     void searchEventInLocationWhenValidArguments() {
         // Проверка корректного сценария
@@ -575,6 +769,21 @@ class EventServiceImplTest {
     }
 
 
+    private Long addEventWithText(String title, String annotation, String description) {
+        NewEventDto newEventDto = setUpAddNewEvent();
+        newEventDto.setTitle(title);
+        newEventDto.setAnnotation(annotation);
+        newEventDto.setDescription(description);
+        return eventService.publishEvent(eventService.addNewEvent(newEventDto, user.getId()).getId()).getId();
+    }
+
+    private List<Long> searchIds(String text) {
+        return eventService.searchEvents(text, null, null, null, null, false, null, 0, 10,
+                        "0:0:0:0:0:0:0:1", "/events", null, null).stream()
+                .map(EventShortDto::getId)
+                .collect(Collectors.toList());
+    }
+
     private NewEventDto setUpAddNewEvent() {
         NewEventDto newEventDto = new NewEventDto();
         newEventDto.setAnnotation("01234567890123456789");
@@ -0,0 +1,108 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.models.location.Location;
+import ru.practicum.ewmservice.repositories.LocationRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LocationIndexTest {
+    private static final int LOCATIONS = 2_000;
+
+    private static final int POINTS = 2_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LocationRepository locationRepository;
+
+    @Test
+    void findCoveringMatchesDistanceFunction() {
+        Random random = new Random(42);
+        List<double[]> seeded = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            double[] location = randomPoint(random);
+            // В основном небольшие радиусы, но есть и круги на полмира
+            double radius = i % 100 == 0 ? random.nextDouble() * 15_000 : random.nextDouble() * 300;
+            jdbcTemplate.update("insert into locations (name, radius, lat, lon) values (?, ?, ?, ?)",
+                    "index-" + i, radius, location[0], location[1]);
+            seeded.add(location);
+        }
+        Set<Long> seededIds = new HashSet<>(jdbcTemplate.queryForList(
+                "select id from locations where name like 'index-%'", Long.class));
+        LocationIndex index = new LocationIndex(locationRepository, 0.5, 4096);
+
+        for (int i = 0; i < POINTS; i++) {
+            // Часть точек совпадает с центрами локаций, остальные случайны
+            double[] point = i % 4 == 0 ? seeded.get(random.nextInt(seeded.size())) : randomPoint(random);
+            List<Long> expected = jdbcTemplate.queryForList("select id from locations "
+                    + "where name like 'index-%' and distance(lat, lon, ?, ?) <= radius order by id",
+                    Long.class, point[0], point[1]);
+            List<Long> found = index.findCovering(point[0], point[1]).stream()
+                    .filter(seededIds::contains)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, found, "точка " + point[0] + ", " + point[1]);
+        }
+    }
+
+    @Test
+    void removedLocationIsNotFound() {
+        jdbcTemplate.update("insert into locations (name, radius, lat, lon) values ('index', 10, 55.75, 37.62)");
+        Long id = jdbcTemplate.queryForObject("select id from locations where name = 'index'", Long.class);
+        LocationIndex index = new LocationIndex(locationRepository, 0.5, 4096);
+        assertEquals(List.of(id), index.findCovering(55.76, 37.63).stream()
+                .filter(id::equals)
+                .collect(Collectors.toList()));
+
+        Location moved = new Location(id, "index", 10.0, -33.86, 151.2);
+        index.add(moved);
+
+        assertEquals(List.of(), index.findCovering(55.76, 37.63).stream()
+                .filter(id::equals)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(id), index.findCovering(-33.87, 151.21).stream()
+                .filter(id::equals)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void cellSizeMustDivideHalfCircle() {
+        assertThrows(IllegalStateException.class, () -> new LocationIndex(locationRepository, 0.7, 4096));
+    }
+
+    // Точки у полюсов и у линии перемены дат встречаются чаще, чем при равномерном распределении
+    private static double[] randomPoint(Random random) {
+        double lat;
+        double lon;
+        switch (random.nextInt(4)) {
+            case 0:
+                lat = (random.nextBoolean() ? 1 : -1) * (85 + random.nextDouble() * 5);
+                lon = random.nextDouble() * 360 - 180;
+                break;
+            case 1:
+                lat = random.nextDouble() * 180 - 90;
+                lon = (random.nextBoolean() ? 1 : -1) * (178 + random.nextDouble() * 2);
+                break;
+            default:
+                lat = random.nextDouble() * 180 - 90;
+                lon = random.nextDouble() * 360 - 180;
+        }
+        return new double[]{lat, lon};
+    }
+}
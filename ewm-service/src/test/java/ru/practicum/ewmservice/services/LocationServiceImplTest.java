@@ -6,7 +6,9 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.EntityCacheConfig;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 
@@ -14,6 +16,7 @@ import javax.persistence.EntityManager;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @Transactional
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
@@ -23,6 +26,8 @@ class LocationServiceImplTest {
 
     private final LocationService locationService;
 
+    private final CacheManager cacheManager;
+
     @AfterEach
     void afterEach() {
         em.createNativeQuery("truncate table locations");
@@ -105,6 +110,7 @@ class LocationServiceImplTest {
         List<LocationDto> result = locationService.getAllLocations(0, 10);
 
         assertEquals(0, result.size());
+        assertNull(cacheManager.getCache(EntityCacheConfig.LOCATIONS).get(location.getId()));
     }
 
     @Test
@@ -0,0 +1,178 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Параллельные заявки на участие не должны превышать лимит события, а параллельные повторы одной заявки
+ * не должны создавать несколько заявок. Заявки подаются из разных потоков в отдельных транзакциях,
+ * поэтому тест не транзакционный и удаляет свои данные сам.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ParticipantLimitStressTest {
+    private static final int REQUESTS_PER_EVENT = 1_000;
+
+    private static final int PARTICIPANT_LIMIT = 100;
+
+    private static final int THREADS = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ParticipationRequestService participationRequestService;
+
+    private final List<Long> events = new ArrayList<>();
+
+    private final List<Long> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'stress-' || g, 'stress-' || g || '@mail.ru' from generate_series(0, ?) g",
+                REQUESTS_PER_EVENT);
+        jdbcTemplate.update("insert into categories (name) values ('stress')");
+        users.addAll(jdbcTemplate.queryForList("select id from users where email like 'stress-%' order by id",
+                Long.class));
+        for (int i = 0; i < 2; i++) {
+            events.add(jdbcTemplate.queryForObject("insert into events (annotation, category_id, "
+                    + "confirmed_requests, created_on, description, event_date, initiator_id, paid, "
+                    + "participant_limit, published_on, request_moderation, state, title) "
+                    + "select 'annotation', c.id, 0, now(), 'description', now() + interval '1 day', ?, false, ?, "
+                    + "now(), false, 'PUBLISHED', 'stress' from categories as c where c.name = 'stress' "
+                    + "returning id", Long.class, users.get(0), PARTICIPANT_LIMIT));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Long event : events) {
+            jdbcTemplate.update("delete from idempotency_keys where event = ?", event);
+            jdbcTemplate.update("delete from participation_requests where event = ?", event);
+            jdbcTemplate.update("delete from events where id = ?", event);
+        }
+        jdbcTemplate.update("delete from users where email like 'stress-%'");
+        jdbcTemplate.update("delete from categories where name = 'stress'");
+    }
+
+    @Test
+    void concurrentRequestsDoNotExceedParticipantLimit() throws Exception {
+        // Заявки на оба события перемешаны, чтобы обновления строк событий шли одновременно
+        List<long[]> requests = new ArrayList<>();
+        for (Long event : events) {
+            for (Long user : users.subList(1, users.size())) {
+                requests.add(new long[]{user, event});
+            }
+        }
+        Collections.shuffle(requests);
+
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (long[] request : requests) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        participationRequestService.addNewParticipationRequest(request[0], request[1]);
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        errors.add(e);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(errors.isEmpty(), () -> "Непредвиденные ошибки: " + errors);
+        assertEquals(2 * (REQUESTS_PER_EVENT - PARTICIPANT_LIMIT), rejected.get());
+        for (Long event : events) {
+            assertEquals(PARTICIPANT_LIMIT, jdbcTemplate.queryForObject(
+                    "select confirmed_requests from events where id = ?", Integer.class, event));
+            assertEquals(PARTICIPANT_LIMIT, jdbcTemplate.queryForObject(
+                    "select count(*) from participation_requests where event = ?", Integer.class, event));
+        }
+    }
+
+    @Test
+    void concurrentRetriesCreateOneRequest() throws Exception {
+        // Каждый пользователь отправляет заявку четыре раза одновременно: дважды с ключом и дважды без ключа.
+        // Мест хватает всем, чтобы повторы не отклонялись из-за лимита
+        List<Long> requesters = users.subList(1, PARTICIPANT_LIMIT / 2 + 1);
+        List<Object[]> attempts = new ArrayList<>();
+        for (Long user : requesters) {
+            attempts.add(new Object[]{user, "retry-" + user});
+            attempts.add(new Object[]{user, "retry-" + user});
+            attempts.add(new Object[]{user, null});
+            attempts.add(new Object[]{user, null});
+        }
+        Collections.shuffle(attempts);
+
+        ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Object[] attempt : attempts) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        created.add(participationRequestService.addNewParticipationRequest((Long) attempt[0],
+                                events.get(0), (String) attempt[1]).getId());
+                    } catch (IllegalStateException e) {
+                        if (!"Запрос уже существует".equals(e.getMessage())) {
+                            errors.add(e);
+                        }
+                        duplicates.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        errors.add(e);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(errors.isEmpty(), () -> "Непредвиденные ошибки: " + errors);
+        assertEquals(requesters.size(), jdbcTemplate.queryForObject(
+                "select count(*) from participation_requests where event = ?", Integer.class, events.get(0)));
+        assertEquals(requesters.size(), jdbcTemplate.queryForObject(
+                "select confirmed_requests from events where id = ?", Integer.class, events.get(0)));
+        // Ответ каждой успешной попытки ссылается на единственную заявку пользователя
+        assertEquals(requesters.size(), created.stream().distinct().count());
+        assertEquals(attempts.size(), created.size() + duplicates.get());
+    }
+}
@@ -0,0 +1,180 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewmservice.models.participation_request.ParticipationRequest;
+import ru.practicum.ewmservice.models.participation_request.Status;
+import ru.practicum.ewmservice.repositories.ParticipationRequestRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение пропускной способности создания заявок на участие до и после перехода на вставку
+ * с ON CONFLICT DO NOTHING. Каждая пара пользователь-событие отправляется дважды одновременно.
+ * Прежний путь повторяет старую реализацию: поиск существующей заявки и сохранение через save,
+ * поэтому часть повторов доходит до уникального ограничения и завершается исключением базы данных.
+ * Запуск: mvn test -Dbenchmark=true -Dtest=ParticipationRequestInsertBenchmarkTest
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ParticipationRequestInsertBenchmarkTest {
+    private static final int USERS = 2_000;
+
+    private static final int EVENTS_PER_PATH = 2;
+
+    private static final int THREADS = 16;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserServiceImpl userService;
+
+    private final EventServiceImpl eventService;
+
+    private final ParticipationRequestService participationRequestService;
+
+    private final ParticipationRequestRepository participationRequestRepository;
+
+    private final List<Long> events = new ArrayList<>();
+
+    private final List<Long> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'insert-' || g, 'insert-' || g || '@mail.ru' from generate_series(0, ?) g", USERS);
+        jdbcTemplate.update("insert into categories (name) values ('insert')");
+        users.addAll(jdbcTemplate.queryForList("select id from users where email like 'insert-%' order by id",
+                Long.class));
+        for (int i = 0; i < 2 * EVENTS_PER_PATH; i++) {
+            events.add(jdbcTemplate.queryForObject("insert into events (annotation, category_id, "
+                    + "confirmed_requests, created_on, description, event_date, initiator_id, paid, "
+                    + "participant_limit, published_on, request_moderation, state, title) "
+                    + "select 'annotation', c.id, 0, now(), 'description', now() + interval '1 day', ?, false, ?, "
+                    + "now(), true, 'PUBLISHED', 'insert' from categories as c where c.name = 'insert' "
+                    + "returning id", Long.class, users.get(0), USERS));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Long event : events) {
+            jdbcTemplate.update("delete from participation_requests where event = ?", event);
+            jdbcTemplate.update("delete from events where id = ?", event);
+        }
+        jdbcTemplate.update("delete from users where email like 'insert-%'");
+        jdbcTemplate.update("delete from categories where name = 'insert'");
+    }
+
+    @Test
+    void compareThroughputUnderDuplicateContention() throws Exception {
+        AtomicInteger checkedBefore = new AtomicInteger();
+        AtomicInteger violatedBefore = new AtomicInteger();
+        AtomicInteger rejectedAfter = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        double before = run(events.subList(0, EVENTS_PER_PATH), (user, event) -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    userService.checkUserInDatabase(user);
+                    eventService.checkEventInDatabase(event);
+                    if (participationRequestRepository.findByEventAndRequester(event, user).isPresent()) {
+                        throw new IllegalStateException("Запрос уже существует");
+                    }
+                    participationRequestRepository.save(new ParticipationRequest(null,
+                            LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS), event, user, Status.PENDING));
+                });
+            } catch (IllegalStateException e) {
+                checkedBefore.incrementAndGet();
+            } catch (DataIntegrityViolationException e) {
+                violatedBefore.incrementAndGet();
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        });
+        double after = run(events.subList(EVENTS_PER_PATH, events.size()), (user, event) -> {
+            try {
+                participationRequestService.addNewParticipationRequest(user, event);
+            } catch (IllegalStateException e) {
+                rejectedAfter.incrementAndGet();
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        });
+
+        System.out.printf("Прежний путь: %.0f заявок/с, повторов отсечено проверкой %d, уникальным ограничением %d%n",
+                before, checkedBefore.get(), violatedBefore.get());
+        System.out.printf("Вставка с ON CONFLICT: %.0f заявок/с, повторов отсечено %d%n", after, rejectedAfter.get());
+
+        assertTrue(errors.isEmpty(), () -> "Непредвиденные ошибки: " + errors);
+        int pairs = (users.size() - 1) * EVENTS_PER_PATH;
+        assertEquals(pairs, checkedBefore.get() + violatedBefore.get());
+        assertEquals(pairs, rejectedAfter.get());
+        for (Long event : events) {
+            assertEquals(users.size() - 1, jdbcTemplate.queryForObject(
+                    "select count(*) from participation_requests where event = ?", Integer.class, event));
+        }
+    }
+
+    // Число попыток в секунду
+    private double run(List<Long> events, Attempt attempt) throws Exception {
+        List<long[]> attempts = new ArrayList<>();
+        for (Long event : events) {
+            for (Long user : users.subList(1, users.size())) {
+                attempts.add(new long[]{user, event});
+                attempts.add(new long[]{user, event});
+            }
+        }
+        Collections.shuffle(attempts);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long elapsed;
+        try {
+            for (long[] pair : attempts) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    attempt.accept(pair[0], pair[1]);
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            elapsed = System.nanoTime() - started;
+        } finally {
+            executor.shutdownNow();
+        }
+        return attempts.size() * 1e9 / elapsed;
+    }
+
+    private interface Attempt {
+        void accept(long user, long event);
+    }
+}
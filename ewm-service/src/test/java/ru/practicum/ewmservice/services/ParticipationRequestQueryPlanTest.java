@@ -0,0 +1,92 @@
+package ru.practicum.ewmservice.services;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.KeysetPage;
+import ru.practicum.ewmservice.models.participation_request.Status;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка того, что постраничный вывод заявок события на 50 000 участников не читает таблицу
+ * participation_requests последовательно. Набор создаётся в транзакции теста и откатывается вместе с ней.
+ * Запуск: mvn test -Dplan-regression=true -Dtest=ParticipationRequestQueryPlanTest
+ */
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@EnabledIfSystemProperty(named = "plan-regression", matches = "true")
+class ParticipationRequestQueryPlanTest {
+    private static final int PARTICIPANTS = 50_000;
+
+    private static final int EVENTS = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ParticipationRequestService participationRequestService;
+
+    @Test
+    void requestPagesUseIndexes() {
+        jdbcTemplate.update("insert into users (name, email) "
+                + "select 'plan-' || g, 'plan-' || g || '@mail.ru' from generate_series(0, ?) g", PARTICIPANTS);
+        jdbcTemplate.update("insert into categories (name) values ('plan')");
+        jdbcTemplate.update("insert into events (annotation, category_id, confirmed_requests, created_on, "
+                        + "description, event_date, initiator_id, paid, participant_limit, published_on, "
+                        + "request_moderation, state, title) "
+                        + "select 'annotation', c.id, 0, now(), 'description', now() + interval '1 day', u.id, false, "
+                        + "0, now(), true, 'PUBLISHED', 'plan-' || g "
+                        + "from generate_series(1, ?) g, (select id from categories where name = 'plan') as c, "
+                        + "(select id from users where email = 'plan-0@mail.ru') as u", EVENTS);
+        // Каждый участник подаёт заявку на первое событие и на одно из остальных
+        jdbcTemplate.update("insert into participation_requests (created, event, requester, status) "
+                + "select now(), e.id, u.id, (array['PENDING', 'REJECTED', 'CONFIRMED', 'CANCELED'])[u.id % 4 + 1] "
+                + "from users as u join events as e on e.title = 'plan-1' "
+                + "or e.title = 'plan-' || (2 + u.id % (? - 1)) "
+                + "where u.email like 'plan-%' and u.email <> 'plan-0@mail.ru'", EVENTS);
+        jdbcTemplate.execute("analyze participation_requests");
+        long initiator = jdbcTemplate.queryForObject("select id from users where email = 'plan-0@mail.ru'",
+                Long.class);
+        long event = jdbcTemplate.queryForObject("select id from events where title = 'plan-1'", Long.class);
+        long requester = jdbcTemplate.queryForObject("select id from users where email = 'plan-42@mail.ru'",
+                Long.class);
+
+        Map<String, Function<String, KeysetPage<ParticipationRequestDto>>> queries = new LinkedHashMap<>();
+        queries.put("заявки события", cursor -> participationRequestService
+                .getUserEventParticipationRequests(initiator, event, null, cursor, 20));
+        queries.put("ожидающие заявки события", cursor -> participationRequestService
+                .getUserEventParticipationRequests(initiator, event, Status.PENDING, cursor, 20));
+        queries.put("заявки пользователя", cursor -> participationRequestService
+                .getUserParticipationRequests(requester, null, cursor, 20));
+        queries.put("подтверждённые заявки пользователя", cursor -> participationRequestService
+                .getUserParticipationRequests(requester, Status.CONFIRMED, cursor, 20));
+
+        List<String> seqScans = new ArrayList<>();
+        queries.forEach((name, query) -> {
+            long before = seqScans();
+            // Первая и следующая страницы
+            query.apply(query.apply("").getNextCursor());
+            if (seqScans() != before) {
+                seqScans.add(name);
+            }
+        });
+
+        assertEquals(List.of(), seqScans, "запросы читают таблицу participation_requests последовательно");
+    }
+
+    private long seqScans() {
+        return jdbcTemplate.queryForObject(
+                "select seq_scan from pg_stat_xact_user_tables where relname = 'participation_requests'", Long.class);
+    }
+}
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.KeysetPage;
+import ru.practicum.ewmservice.exceptions.DataConflictException;
 import ru.practicum.ewmservice.exceptions.EntityNotFoundException;
 import ru.practicum.ewmservice.models.category.dto.CategoryDto;
 import ru.practicum.ewmservice.models.category.dto.NewCategoryDto;
@@ -17,14 +19,19 @@ import ru.practicum.ewmservice.models.event.dto.UpdateEventRequest;
 import ru.practicum.ewmservice.models.location.dto.LocationDto;
 import ru.practicum.ewmservice.models.participation_request.Status;
 import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusResultDto;
+import ru.practicum.ewmservice.models.participation_request.dto.ParticipationRequestStatusUpdateDto;
 import ru.practicum.ewmservice.models.user.dto.NewUserRequest;
 import ru.practicum.ewmservice.models.user.dto.UserDto;
 
 import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 
 @Transactional
@@ -156,6 +163,45 @@ class ParticipationRequestServiceImplTest {
         assertEquals("Запрос уже существует", thrown.getMessage());
     }
 
+    @Test
+    void addNewParticipationRequestWithSameIdempotencyKeyReturnsCreatedRequest() {
+        // Проверка повтора запроса с тем же ключом идемпотентности
+        ParticipationRequestDto created = participationRequestService
+                .addNewParticipationRequest(user.getId(), event.getId(), "retry-1");
+
+        ParticipationRequestDto repeated = participationRequestService
+                .addNewParticipationRequest(user.getId(), event.getId(), "retry-1");
+
+        assertEquals(created, repeated);
+        assertEquals(1, participationRequestService.getUserParticipationRequests(user.getId()).size());
+        assertEquals(1, eventService.getEventFullInfoById(event.getId(), null, null).getConfirmedRequests());
+    }
+
+    @Test
+    void addNewParticipationRequestWithNewIdempotencyKeyWhenRequestIsAlreadyExistThenThrowException() {
+        // Проверка случая, когда заявка уже создана запросом с другим ключом
+        participationRequestService.addNewParticipationRequest(user.getId(), event.getId(), "retry-1");
+
+        IllegalStateException thrown = Assertions
+                .assertThrows(IllegalStateException.class, () -> participationRequestService
+                        .addNewParticipationRequest(user.getId(), event.getId(), "retry-2"));
+
+        assertEquals("Запрос уже существует", thrown.getMessage());
+    }
+
+    @Test
+    void addNewParticipationRequestWhenIdempotencyKeyIsUsedForAnotherEventThenThrowException() {
+        // Проверка случая, когда ключ идемпотентности уже использован для заявки на другое событие
+        EventFullDto moderated = addModeratedEvent(10);
+        participationRequestService.addNewParticipationRequest(user.getId(), event.getId(), "retry-1");
+
+        DataConflictException thrown = Assertions
+                .assertThrows(DataConflictException.class, () -> participationRequestService
+                        .addNewParticipationRequest(user.getId(), moderated.getId(), "retry-1"));
+
+        assertEquals("Ключ идемпотентности retry-1 уже использован для другого события", thrown.getMessage());
+    }
+
     @Test
     void getUserParticipationRequestsWhenValidData() {
         // Проверка корректного сценария
@@ -370,4 +416,235 @@ class ParticipationRequestServiceImplTest {
         assertEquals("Заявка на участие с id 0 не найдена в базе данных", thrown.getMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    void updateParticipationRequestsStatusConfirmsUpToLimitAndRejectsOverflow() {
+        // Проверка случая, когда мест меньше, чем подтверждаемых заявок
+        EventFullDto moderated = addModeratedEvent(2);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 3);
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(List.of(requestIds.get(2), requestIds.get(0), requestIds.get(1), 0L));
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        List<ParticipationRequestStatusResultDto> result = participationRequestService
+                .updateParticipationRequestsStatus(initiator.getId(), moderated.getId(), statusUpdate);
+
+        assertEquals(List.of(
+                new ParticipationRequestStatusResultDto(requestIds.get(2), Status.CONFIRMED, null),
+                new ParticipationRequestStatusResultDto(requestIds.get(0), Status.CONFIRMED, null),
+                new ParticipationRequestStatusResultDto(requestIds.get(1), Status.REJECTED,
+                        "Превышен лимит заявок на участие в событии"),
+                new ParticipationRequestStatusResultDto(0L, null,
+                        "Заявка на участие с id 0 не найдена в событии")), result);
+        assertEquals(2, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+        List<ParticipationRequestDto> stored = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId());
+        assertEquals(List.of(Status.CONFIRMED, Status.REJECTED, Status.CONFIRMED),
+                List.of(stored.get(0).getStatus(), stored.get(1).getStatus(), stored.get(2).getStatus()));
+    }
+
+    @Test
+    void updateParticipationRequestsStatusWhenLimitIsFilledThenRejectsOtherPendingRequests() {
+        // Проверка случая, когда подтверждение исчерпывает лимит: заявки вне запроса тоже отклоняются
+        EventFullDto moderated = addModeratedEvent(2);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 4);
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(List.of(requestIds.get(0), requestIds.get(1)));
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        List<ParticipationRequestStatusResultDto> result = participationRequestService
+                .updateParticipationRequestsStatus(initiator.getId(), moderated.getId(), statusUpdate);
+
+        assertEquals(List.of(
+                new ParticipationRequestStatusResultDto(requestIds.get(0), Status.CONFIRMED, null),
+                new ParticipationRequestStatusResultDto(requestIds.get(1), Status.CONFIRMED, null)), result);
+        assertEquals(2, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+        List<ParticipationRequestDto> stored = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId());
+        assertEquals(List.of(Status.CONFIRMED, Status.CONFIRMED, Status.REJECTED, Status.REJECTED),
+                stored.stream().map(ParticipationRequestDto::getStatus).collect(Collectors.toList()));
+    }
+
+    @Test
+    void updateParticipationRequestsStatusWhenLimitIsNotFilledThenOtherRequestsStayPending() {
+        EventFullDto moderated = addModeratedEvent(3);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 3);
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(List.of(requestIds.get(0), requestIds.get(1)));
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        participationRequestService
+                .updateParticipationRequestsStatus(initiator.getId(), moderated.getId(), statusUpdate);
+
+        List<ParticipationRequestDto> stored = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId());
+        assertEquals(List.of(Status.CONFIRMED, Status.CONFIRMED, Status.PENDING),
+                stored.stream().map(ParticipationRequestDto::getStatus).collect(Collectors.toList()));
+    }
+
+    @Test
+    void updateParticipationRequestsStatusSkipsRequestsThatAreNotPending() {
+        // Проверка случая, когда часть заявок уже рассмотрена
+        EventFullDto moderated = addModeratedEvent(10);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 2);
+        participationRequestService.rejectParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(0));
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(requestIds);
+        statusUpdate.setStatus(Status.REJECTED);
+
+        List<ParticipationRequestStatusResultDto> result = participationRequestService
+                .updateParticipationRequestsStatus(initiator.getId(), moderated.getId(), statusUpdate);
+
+        assertEquals(List.of(
+                new ParticipationRequestStatusResultDto(requestIds.get(0), Status.REJECTED,
+                        "Заявка не ожидает рассмотрения"),
+                new ParticipationRequestStatusResultDto(requestIds.get(1), Status.REJECTED, null)), result);
+        assertEquals(0, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+    }
+
+    @Test
+    void updateParticipationRequestsStatusWhenUserIsNotInitiatorThenThrowException() {
+        // Проверка случая, когда заявки рассматривает не инициатор события
+        EventFullDto moderated = addModeratedEvent(10);
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(addPendingRequests(moderated.getId(), 1));
+        statusUpdate.setStatus(Status.CONFIRMED);
+
+        IllegalStateException thrown = Assertions
+                .assertThrows(IllegalStateException.class, () -> participationRequestService
+                        .updateParticipationRequestsStatus(user.getId(), moderated.getId(), statusUpdate));
+
+        assertEquals("Пользователь не является инициатором события", thrown.getMessage());
+    }
+
+    @Test
+    void updateParticipationRequestsStatusWhenStatusIsPendingThenThrowException() {
+        // Проверка случая, когда запрошен статус, отличный от подтверждения и отклонения
+        EventFullDto moderated = addModeratedEvent(10);
+        ParticipationRequestStatusUpdateDto statusUpdate = new ParticipationRequestStatusUpdateDto();
+        statusUpdate.setRequestIds(addPendingRequests(moderated.getId(), 1));
+        statusUpdate.setStatus(Status.PENDING);
+
+        IllegalStateException thrown = Assertions
+                .assertThrows(IllegalStateException.class, () -> participationRequestService
+                        .updateParticipationRequestsStatus(initiator.getId(), moderated.getId(), statusUpdate));
+
+        assertEquals("Заявку можно только подтвердить или отклонить", thrown.getMessage());
+    }
+
+    @Test
+    void statusTransitionsKeepConfirmedRequestsCounter() {
+        // Проверка изменения счётчика подтверждённых заявок при каждом переходе статуса
+        EventFullDto moderated = addModeratedEvent(1);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 2);
+
+        participationRequestService.confirmParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(0));
+        assertEquals(1, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+
+        IllegalStateException thrown = Assertions
+                .assertThrows(IllegalStateException.class, () -> participationRequestService
+                        .confirmParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(1)));
+        assertEquals("Превышен лимит заявок на участие в событии", thrown.getMessage());
+
+        participationRequestService.rejectParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(0));
+        assertEquals(0, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+
+        participationRequestService.confirmParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(0));
+        assertEquals(1, eventService.getEventFullInfoById(moderated.getId(), null, null).getConfirmedRequests());
+    }
+
+    @Test
+    void cancelConfirmedRequestDecrementsConfirmedRequests() {
+        // Проверка случая, когда пользователь отменяет подтверждённую заявку
+        ParticipationRequestDto participationRequestDto = participationRequestService
+                .addNewParticipationRequest(user.getId(), event.getId());
+
+        participationRequestService.cancelParticipationRequestByUser(user.getId(), participationRequestDto.getId());
+
+        assertEquals(0, eventService.getEventFullInfoById(event.getId(), null, null).getConfirmedRequests());
+        assertEquals(Status.CANCELED,
+                participationRequestService.getUserParticipationRequests(user.getId()).get(0).getStatus());
+    }
+
+    @Test
+    void getUserEventParticipationRequestsByCursorFiltersByStatus() {
+        // Проверка постраничного вывода заявок события с отбором по статусу
+        EventFullDto moderated = addModeratedEvent(10);
+        List<Long> requestIds = addPendingRequests(moderated.getId(), 5);
+        participationRequestService.rejectParticipationRequest(initiator.getId(), moderated.getId(), requestIds.get(1));
+
+        KeysetPage<ParticipationRequestDto> first = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId(), Status.PENDING, "", 2);
+        KeysetPage<ParticipationRequestDto> second = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId(), Status.PENDING,
+                        first.getNextCursor(), 2);
+        KeysetPage<ParticipationRequestDto> all = participationRequestService
+                .getUserEventParticipationRequests(initiator.getId(), moderated.getId(), null, "", 10);
+
+        assertEquals(List.of(requestIds.get(0), requestIds.get(2)), ids(first));
+        assertEquals(List.of(requestIds.get(3), requestIds.get(4)), ids(second));
+        assertEquals(requestIds, ids(all));
+        assertNull(all.getNextCursor());
+    }
+
+    @Test
+    void getUserParticipationRequestsByCursorFiltersByStatus() {
+        // Проверка постраничного вывода заявок пользователя с отбором по статусу
+        ParticipationRequestDto confirmed = participationRequestService
+                .addNewParticipationRequest(user.getId(), event.getId());
+        EventFullDto moderated = addModeratedEvent(10);
+        ParticipationRequestDto pending = participationRequestService
+                .addNewParticipationRequest(user.getId(), moderated.getId());
+
+        KeysetPage<ParticipationRequestDto> first = participationRequestService
+                .getUserParticipationRequests(user.getId(), null, "", 1);
+        KeysetPage<ParticipationRequestDto> second = participationRequestService
+                .getUserParticipationRequests(user.getId(), null, first.getNextCursor(), 1);
+        KeysetPage<ParticipationRequestDto> byStatus = participationRequestService
+                .getUserParticipationRequests(user.getId(), Status.PENDING, "", 10);
+
+        assertEquals(List.of(confirmed.getId()), ids(first));
+        assertEquals(List.of(pending.getId()), ids(second));
+        assertEquals(List.of(pending.getId()), ids(byStatus));
+    }
+
+    private static List<Long> ids(KeysetPage<ParticipationRequestDto> page) {
+        List<Long> ids = new ArrayList<>();
+        page.getContent().forEach(request -> ids.add(request.getId()));
+        return ids;
+    }
+
+    private EventFullDto addModeratedEvent(int participantLimit) {
+        NewCategoryDto newCategoryDto = new NewCategoryDto();
+        newCategoryDto.setName("Moderated Category");
+        CategoryDto categoryDto = categoryService.addNewCategory(newCategoryDto);
+
+        LocationDto locationDto = new LocationDto();
+        locationDto.setName("Moderated Location");
+        locationDto.setLat(10.0);
+        locationDto.setLon(10.0);
+        locationDto.setRadius(10.0);
+
+        NewEventDto newEventDto = new NewEventDto();
+        newEventDto.setAnnotation("01234567890123456789");
+        newEventDto.setDescription("01234567890123456789");
+        newEventDto.setCategory(categoryDto.getId());
+        newEventDto.setEventDate(LocalDateTime.now().plusMonths(2));
+        newEventDto.setLocation(locationDto);
+        newEventDto.setTitle("moderated");
+        newEventDto.setParticipantLimit(participantLimit);
+        newEventDto.setRequestModeration(true);
+        return eventService.addNewEvent(newEventDto, initiator.getId());
+    }
+
+    private List<Long> addPendingRequests(Long eventId, int count) {
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            NewUserRequest newUser = new NewUserRequest();
+            newUser.setName("Requester " + i);
+            newUser.setEmail("requester" + i + "@gmail.com");
+            UserDto requester = userService.addNewUser(newUser);
+            requestIds.add(participationRequestService.addNewParticipationRequest(requester.getId(), eventId).getId());
+        }
+        return requestIds;
+    }
+}
@@ -6,8 +6,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewmservice.EntityCacheConfig;
+import ru.practicum.ewmservice.KeysetPage;
 import ru.practicum.ewmservice.exceptions.DataConflictException;
+import ru.practicum.ewmservice.models.user.User;
 import ru.practicum.ewmservice.models.user.dto.NewUserRequest;
 import ru.practicum.ewmservice.models.user.dto.UserDto;
 
@@ -16,6 +21,8 @@ import javax.persistence.EntityManager;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @Transactional
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
@@ -25,6 +32,10 @@ class UserServiceImplTest {
 
     private final UserService userService;
 
+    private final UserServiceImpl userServiceImpl;
+
+    private final CacheManager cacheManager;
+
     @AfterEach
     void afterEach() {
         em.createNativeQuery("truncate table users");
@@ -75,6 +86,27 @@ class UserServiceImplTest {
         assertEquals(userDto, result.get(0));
     }
 
+    @Test
+    void getUsersByCursor() {
+        // Проверка постраничного вывода по курсору среди запрошенных id
+        Long[] ids = new Long[3];
+        for (int i = 0; i < ids.length; i++) {
+            NewUserRequest newUserRequest = new NewUserRequest();
+            newUserRequest.setName("Test User " + i);
+            newUserRequest.setEmail("Test" + i + "@gmail.com");
+            ids[i] = userService.addNewUser(newUserRequest).getId();
+        }
+
+        KeysetPage<UserDto> firstPage = userService.getUsers("", 1, new Long[]{ids[0], ids[2]});
+        KeysetPage<UserDto> secondPage = userService.getUsers(firstPage.getNextCursor(), 1, new Long[]{ids[0], ids[2]});
+        KeysetPage<UserDto> lastPage = userService.getUsers(secondPage.getNextCursor(), 1, new Long[]{ids[0], ids[2]});
+
+        assertEquals(ids[0], firstPage.getContent().get(0).getId());
+        assertEquals(ids[2], secondPage.getContent().get(0).getId());
+        assertEquals(0, lastPage.getContent().size());
+        assertNull(lastPage.getNextCursor());
+    }
+
     @Test
     void deleteUser() {
         NewUserRequest newUserRequest = new NewUserRequest();
@@ -87,7 +119,26 @@ class UserServiceImplTest {
         List<UserDto> result = userService.getUsers(0, 10, new Long[]{userDto.getId()});
 
         assertEquals(0, result.size());
+        assertNull(cacheManager.getCache(EntityCacheConfig.USERS).get(userDto.getId()));
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void checkUserInDatabaseReturnsOwnInstanceForEachCall() {
+        NewUserRequest newUserRequest = new NewUserRequest();
+        newUserRequest.setName("Test User");
+        newUserRequest.setEmail("Test@gmail.com");
+        UserDto userDto = userService.addNewUser(newUserRequest);
+
+        // Сущности создаются из снимка в кэше, поэтому изменения одного вызова не видны другим
+        User first = userServiceImpl.checkUserInDatabase(userDto.getId());
+        first.setName("Changed User");
+        User second = userServiceImpl.checkUserInDatabase(userDto.getId());
 
-}
\ No newline at end of file
+        assertNotSame(first, second);
+        assertEquals("Test User", second.getName());
+
+        userService.deleteUser(userDto.getId());
+        assertNull(cacheManager.getCache(EntityCacheConfig.USERS).get(userDto.getId()));
+    }
+}
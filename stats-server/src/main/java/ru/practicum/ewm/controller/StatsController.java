@@ -1,14 +1,30 @@
 package ru.practicum.ewm.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.ewm.exception.InvalidStatsQueryException;
+import ru.practicum.ewm.exception.MalformedHitsException;
 import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitsBatchResult;
+import ru.practicum.ewm.model.StatsQuery;
+import ru.practicum.ewm.model.TopWindow;
 import ru.practicum.ewm.model.ViewStats;
 import ru.practicum.ewm.service.StatsService;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 
 @RestController
@@ -16,25 +32,95 @@ import java.util.List;
 @Slf4j
 public class StatsController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final StatsService service;
 
+    private final ObjectMapper objectMapper;
+
     @PostMapping("/hit")
     public void saveStatsHit(@RequestBody EndpointHit endpointHit) {
         log.info("Получен запрос на сохранение статистики: {}", endpointHit);
         service.saveStatsHit(endpointHit);
     }
 
+    @PostMapping("/hits")
+    public HitsBatchResult saveStatsHits(HttpServletRequest request) throws IOException {
+        log.info("Получен запрос на пакетное сохранение статистики, Content-Type: {}", request.getContentType());
+        return service.saveStatsHits(request.getInputStream());
+    }
+
+    // Пачки до ошибки разбора уже сохранены, поэтому в ответе 400 сообщается, сколько записей принято
+    @ExceptionHandler(MalformedHitsException.class)
+    public ResponseEntity<HitsBatchResult> handleMalformedHits(MalformedHitsException e) {
+        return ResponseEntity.badRequest().body(e.getResult());
+    }
+
     @GetMapping("stats")
-    List<ViewStats> getStats(@RequestParam(name = "start") @DateTimeFormat (pattern = "yyyy-MM-dd HH:mm:ss")
-                             LocalDateTime start,
-                             @RequestParam(name = "end") @DateTimeFormat (pattern = "yyyy-MM-dd HH:mm:ss")
-                             LocalDateTime end,
-                             @RequestParam(name = "uris", required = false) String[] uris,
-                             @RequestParam(name = "unique", defaultValue = "false") boolean unique
-                             ) {
-        log.info("Получен запрос на получение статистики с параметрами: start: {}, end: {}, uris: {}, unique: {}",
-                start, end, uris, unique);
-        return service.getStats(start, end, uris, unique);
+    ResponseEntity<StreamingResponseBody> getStats(@RequestParam(name = "start") @DateTimeFormat
+                                                           (pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                                   @RequestParam(name = "end") @DateTimeFormat
+                                                           (pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                                   @RequestParam(name = "uris", required = false) String[] uris,
+                                                   @RequestParam(name = "unique", defaultValue = "false") boolean unique,
+                                                   @RequestParam(name = "approx", defaultValue = "false") boolean approx,
+                                                   @RequestParam(name = "limit", required = false) Integer limit,
+                                                   @RequestParam(name = "orderBy", required = false) String orderBy,
+                                                   @RequestHeader(name = HttpHeaders.ACCEPT, required = false)
+                                                   String accept) {
+        log.info("Получен запрос на получение статистики с параметрами: start: {}, end: {}, uris: {}, unique: {}, " +
+                "approx: {}, limit: {}, orderBy: {}", start, end, uris, unique, approx, limit, orderBy);
+        if (limit != null && limit <= 0) {
+            throw new InvalidStatsQueryException("Параметр limit должен быть положительным: " + limit);
+        }
+        if (orderBy != null && !"hits".equals(orderBy)) {
+            throw new InvalidStatsQueryException("Поддерживается только сортировка orderBy=hits: " + orderBy);
+        }
+        StatsQuery query = StatsQuery.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .approx(approx)
+                .limit(limit)
+                .orderByHits(orderBy != null)
+                .build();
+
+        // Записи отдаются клиенту по мере чтения из базы: JSON-массивом или NDJSON, если его просит клиент
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(NDJSON::equalsTypeAndSubtype);
+        ObjectWriter writer = objectMapper.writerFor(ViewStats.class);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter sequence = ndjson ? writer.withRootValueSeparator("\n").writeValues(out)
+                    : writer.writeValuesAsArray(out)) {
+                service.streamStats(query, viewStats -> {
+                    try {
+                        sequence.write(viewStats);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
+    @GetMapping("stats/top")
+    public List<ViewStats> getTop(@RequestParam(name = "window", defaultValue = "hour") String window,
+                                  @RequestParam(name = "n", defaultValue = "10") int n) {
+        log.info("Получен запрос на получение самых просматриваемых uri: window: {}, n: {}", window, n);
+        if (n <= 0) {
+            throw new InvalidStatsQueryException("Параметр n должен быть положительным: " + n);
+        }
+        TopWindow topWindow;
+        try {
+            topWindow = TopWindow.valueOf(window.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidStatsQueryException("Неизвестное окно " + window + ", допустимые значения: " +
+                    Arrays.toString(TopWindow.values()).toLowerCase());
+        }
+        return service.getTop(topWindow, n);
+    }
 }
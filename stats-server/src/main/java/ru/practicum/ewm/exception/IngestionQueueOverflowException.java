@@ -0,0 +1,11 @@
+package ru.practicum.ewm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class IngestionQueueOverflowException extends RuntimeException {
+    public IngestionQueueOverflowException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.ewm.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidStatsQueryException extends RuntimeException {
+    public InvalidStatsQueryException(String message) {
+        super(message);
+    }
+}
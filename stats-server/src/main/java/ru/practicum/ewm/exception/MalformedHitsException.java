@@ -0,0 +1,18 @@
+package ru.practicum.ewm.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import ru.practicum.ewm.model.HitsBatchResult;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+@Getter
+public class MalformedHitsException extends RuntimeException {
+    // Что было сохранено до ошибки разбора
+    private final HitsBatchResult result;
+
+    public MalformedHitsException(String message, Throwable cause, HitsBatchResult result) {
+        super(message, cause);
+        this.result = result;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.ewm.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отрезок [from, to), покрытый целыми корзинами одной гранулярности.
+ */
+@Data
+public class BucketRange {
+    private final RollupGranularity granularity;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+}
@@ -0,0 +1,21 @@
+package ru.practicum.ewm.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HitsBatchResult {
+    private long accepted;
+    private long rejected;
+    // Причина, по которой разбор пакета прерван; accepted - число записей, сохранённых до ошибки
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public HitsBatchResult(long accepted, long rejected) {
+        this(accepted, rejected, null);
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ChronoUnit unit;
+
+    RollupGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    public LocalDateTime minus(LocalDateTime time, long amount) {
+        return time.minus(amount, unit);
+    }
+
+    /**
+     * Порядковый номер корзины, в которую попадает time, начиная с 1970-01-01.
+     */
+    public long index(LocalDateTime time) {
+        return unit.between(EPOCH, floor(time));
+    }
+
+    /**
+     * Делит [from, to) на отрезки из целых корзин гранулярности от текущей до finest: самые крупные
+     * корзины в середине, более мелкие по краям. Границы должны быть выровнены по finest.
+     */
+    public List<BucketRange> split(LocalDateTime from, LocalDateTime to, RollupGranularity finest) {
+        List<BucketRange> ranges = new ArrayList<>();
+        split(ranges, from, to, this, finest);
+        return ranges;
+    }
+
+    private static void split(List<BucketRange> ranges, LocalDateTime from, LocalDateTime to,
+                              RollupGranularity granularity, RollupGranularity finest) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (granularity == finest) {
+            ranges.add(new BucketRange(granularity, from, to));
+            return;
+        }
+        RollupGranularity finer = values()[granularity.ordinal() - 1];
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (alignedFrom.isBefore(alignedTo)) {
+            ranges.add(new BucketRange(granularity, alignedFrom, alignedTo));
+            split(ranges, from, alignedFrom, finer, finest);
+            split(ranges, alignedTo, to, finer, finest);
+        } else {
+            split(ranges, from, to, finer, finest);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.ewm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class StatsQuery {
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private String[] uris;
+    private boolean unique;
+    private boolean approx;
+    // Не больше limit записей, null - без ограничения
+    private Integer limit;
+    // Сортировка по убыванию количества хитов
+    private boolean orderByHits;
+}
@@ -0,0 +1,37 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Скользящее окно для самых просматриваемых uri: последние slices корзин гранулярности granularity,
+ * включая текущую (ещё не закончившуюся) корзину.
+ */
+public enum TopWindow {
+    HOUR(RollupGranularity.MINUTE, 60),
+    DAY(RollupGranularity.HOUR, 24),
+    WEEK(RollupGranularity.HOUR, 24 * 7);
+
+    private final RollupGranularity granularity;
+
+    private final int slices;
+
+    TopWindow(RollupGranularity granularity, int slices) {
+        this.granularity = granularity;
+        this.slices = slices;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    /**
+     * Первая корзина окна, заканчивающегося текущей корзиной момента now.
+     */
+    public LocalDateTime from(LocalDateTime now) {
+        return granularity.minus(granularity.floor(now), slices - 1);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.model.Stat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class StatsBatchRepository {
+    private static final String INSERT_STAT = "insert into stats (Identification_record, app, uri, ip, timestamp) " +
+            "values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final StatsRollupRepository rollupRepository;
+
+    private final StatsSketchRepository sketchRepository;
+
+    private final TopUrisRepository topUrisRepository;
+
+    @Transactional
+    public void saveAll(List<Stat> stats) {
+        jdbcTemplate.batchUpdate(INSERT_STAT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Stat stat = stats.get(i);
+                ps.setObject(1, stat.getIdentificationRecord(), Types.BIGINT);
+                ps.setString(2, stat.getApp());
+                ps.setString(3, stat.getUri());
+                ps.setString(4, stat.getIp());
+                ps.setTimestamp(5, Timestamp.valueOf(stat.getTimesTamp()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return stats.size();
+            }
+        });
+        rollupRepository.addAll(stats);
+        sketchRepository.addAll(stats);
+        topUrisRepository.addAll(stats);
+    }
+}
@@ -1,39 +1,59 @@
 package ru.practicum.ewm.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.practicum.ewm.model.Stat;
 import ru.practicum.ewm.model.ViewStats;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Запросы статистики возвращают поток и читаются курсором порциями по FETCH_SIZE строк,
+ * поэтому должны выполняться в транзакции, а поток - закрываться после чтения.
+ */
 public interface StatsRepository extends JpaRepository<Stat, Long> {
+    String FETCH_SIZE = "1000";
+
+    String HITS = "count(s.ip)";
+
+    String UNIQUE_HITS = "count(distinct s.ip)";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
     @Query("select new ru.practicum.ewm.model.ViewStats(s.app, s.uri, count (distinct s.ip)) from Stat as s " +
             "where s.timesTamp > ?1 " +
             "and s.timesTamp < ?2 " +
             "and s.uri in ?3 " +
             "group by s.app, s.uri")
-    List<ViewStats> findStatsByUrisUniqueIp(LocalDateTime start, LocalDateTime end, String[] uris);
+    Stream<ViewStats> findStatsByUrisUniqueIp(LocalDateTime start, LocalDateTime end, String[] uris,
+                                              Pageable pageable);
 
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
     @Query("select new ru.practicum.ewm.model.ViewStats(s.app, s.uri, count (distinct s.ip)) from Stat as s " +
             "where s.timesTamp > ?1 " +
             "and s.timesTamp < ?2 " +
             "group by s.app, s.uri")
-    List<ViewStats> findStatsUniqueIp(LocalDateTime start, LocalDateTime end);
+    Stream<ViewStats> findStatsUniqueIp(LocalDateTime start, LocalDateTime end, Pageable pageable);
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
     @Query("select new ru.practicum.ewm.model.ViewStats(s.app, s.uri, count (s.ip)) from Stat as s " +
             "where s.timesTamp > ?1 " +
             "and s.timesTamp < ?2 " +
             "and s.uri in ?3 " +
             "group by s.app, s.uri")
-    List<ViewStats> findStatsByUris(LocalDateTime start, LocalDateTime end, String[] uris);
+    Stream<ViewStats> findStatsByUris(LocalDateTime start, LocalDateTime end, String[] uris, Pageable pageable);
 
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = FETCH_SIZE))
     @Query("select new ru.practicum.ewm.model.ViewStats(s.app, s.uri, count (s.ip)) from Stat as s " +
             "where s.timesTamp > ?1 " +
             "and s.timesTamp < ?2 " +
             "group by s.app, s.uri")
-    List<ViewStats> findStats(LocalDateTime start, LocalDateTime end);
+    Stream<ViewStats> findStats(LocalDateTime start, LocalDateTime end, Pageable pageable);
 
 }
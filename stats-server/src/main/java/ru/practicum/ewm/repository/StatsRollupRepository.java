@@ -0,0 +1,232 @@
+package ru.practicum.ewm.repository;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.model.BucketRange;
+import ru.practicum.ewm.model.RollupGranularity;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.ViewStats;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Предагрегированные счётчики хитов по app/uri за минуту, час и сутки (таблица stats_rollups).
+ * Счётчики увеличиваются в той же транзакции, что и запись самих хитов. Запрос статистики
+ * собирается из счётчиков самых крупных корзин, целиком попадающих в период,
+ * а неровные края периода (меньше минуты) досчитываются по исходной таблице stats.
+ */
+@Repository
+@Slf4j
+public class StatsRollupRepository {
+    private static final String UPSERT_ROLLUP = "insert into stats_rollups (granularity, bucket, app, uri, hits) " +
+            "values (?, ?, ?, ?, ?) " +
+            "on conflict (granularity, uri, bucket, app) do update set hits = stats_rollups.hits + excluded.hits";
+
+    private static final String BACKFILL_MINUTES = "insert into stats_rollups (granularity, bucket, app, uri, hits) " +
+            "select 'MINUTE', date_trunc('minute', timestamp), app, uri, count(ip) from stats " +
+            "where app is not null and uri is not null and timestamp is not null " +
+            "group by date_trunc('minute', timestamp), app, uri";
+
+    private static final String BACKFILL_HOURS = "insert into stats_rollups (granularity, bucket, app, uri, hits) " +
+            "select 'HOUR', date_trunc('hour', bucket), app, uri, sum(hits) from stats_rollups " +
+            "where granularity = 'MINUTE' group by date_trunc('hour', bucket), app, uri";
+
+    private static final String BACKFILL_DAYS = "insert into stats_rollups (granularity, bucket, app, uri, hits) " +
+            "select 'DAY', date_trunc('day', bucket), app, uri, sum(hits) from stats_rollups " +
+            "where granularity = 'HOUR' group by date_trunc('day', bucket), app, uri";
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::getGranularity)
+            .thenComparing(RollupKey::getBucket)
+            .thenComparing(RollupKey::getApp)
+            .thenComparing(RollupKey::getUri);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    private final boolean enabled;
+
+    public StatsRollupRepository(JdbcTemplate jdbcTemplate,
+                                 @Value("${stats.rollups.enabled}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.parseInt(StatsRepository.FETCH_SIZE));
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Transactional
+    public void addAll(List<Stat> stats) {
+        if (!enabled) {
+            return;
+        }
+        // Ключи упорядочены, чтобы параллельные транзакции блокировали строки в одном порядке
+        Map<RollupKey, Long> increments = new TreeMap<>(KEY_ORDER);
+        for (Stat stat : stats) {
+            if (stat.getApp() == null || stat.getUri() == null || stat.getIp() == null) {
+                continue;
+            }
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                RollupKey key = new RollupKey(granularity, granularity.floor(stat.getTimesTamp()),
+                        stat.getApp(), stat.getUri());
+                increments.merge(key, 1L, Long::sum);
+            }
+        }
+        List<Object[]> args = new ArrayList<>(increments.size());
+        increments.forEach((key, hits) -> args.add(new Object[]{key.getGranularity().name(),
+                Timestamp.valueOf(key.getBucket()), key.getApp(), key.getUri(), hits}));
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP, args);
+    }
+
+    /**
+     * Можно ли собрать период (start, end) из счётчиков: периоды короче двух минут
+     * выгоднее посчитать по исходной таблице.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return rollupStart(start).isBefore(rollupEnd(end));
+    }
+
+    /**
+     * Передаёт consumer количество хитов за период (start, end) по мере чтения строк из базы.
+     * Должен вызываться в транзакции, иначе драйвер PostgreSQL прочитает весь результат сразу.
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, String[] uris, Integer limit,
+                            boolean orderByHits, Consumer<ViewStats> consumer) {
+        if (uris != null && uris.length == 0) {
+            return;
+        }
+        // Хиты ровно в момент start в период не входят, поэтому первая минута всегда берётся из stats
+        LocalDateTime rollupStart = rollupStart(start);
+        LocalDateTime rollupEnd = rollupEnd(end);
+        if (!rollupStart.isBefore(rollupEnd)) {
+            // Короткий период без целых минут считается только по stats, иначе края пересекутся
+            rollupStart = end;
+            rollupEnd = end;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriFilter = "";
+        if (uris != null) {
+            params.addValue("uris", Arrays.asList(uris));
+            uriFilter = " and uri in (:uris)";
+        }
+        params.addValue("start", Timestamp.valueOf(start));
+        params.addValue("rollupStart", Timestamp.valueOf(rollupStart));
+        params.addValue("rollupEnd", Timestamp.valueOf(rollupEnd));
+        params.addValue("end", Timestamp.valueOf(end));
+
+        StringBuilder sql = new StringBuilder("select app, uri, sum(hits) as hits from (")
+                .append("select app, uri, count(ip) as hits from stats ")
+                .append("where timestamp > :start and timestamp < :rollupStart").append(uriFilter)
+                .append(" group by app, uri")
+                .append(" union all select app, uri, count(ip) as hits from stats ")
+                .append("where timestamp >= :rollupEnd and timestamp < :end").append(uriFilter)
+                .append(" group by app, uri");
+        List<BucketRange> segments = RollupGranularity.DAY.split(rollupStart, rollupEnd, RollupGranularity.MINUTE);
+        for (int i = 0; i < segments.size(); i++) {
+            BucketRange segment = segments.get(i);
+            params.addValue("granularity" + i, segment.getGranularity().name());
+            params.addValue("from" + i, Timestamp.valueOf(segment.getFrom()));
+            params.addValue("to" + i, Timestamp.valueOf(segment.getTo()));
+            sql.append(" union all select app, uri, sum(hits) as hits from stats_rollups ")
+                    .append("where granularity = :granularity").append(i)
+                    .append(" and bucket >= :from").append(i)
+                    .append(" and bucket < :to").append(i).append(uriFilter)
+                    .append(" group by app, uri");
+        }
+        sql.append(") as parts group by app, uri");
+        if (orderByHits) {
+            sql.append(" order by hits desc");
+        }
+        if (limit != null) {
+            params.addValue("limit", limit);
+            sql.append(" limit :limit");
+        }
+
+        streamingJdbcTemplate.query(sql.toString(), params, rs -> {
+            consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        });
+    }
+
+    /**
+     * Передаёт consumer количество хитов по app/uri в корзинах гранулярности granularity, начиная с from.
+     * Если счётчики не ведутся, корзины собираются по исходной таблице stats.
+     */
+    public void streamBuckets(RollupGranularity granularity, LocalDateTime from, BucketConsumer consumer) {
+        if (enabled) {
+            streamingJdbcTemplate.query("select bucket, app, uri, hits from stats_rollups " +
+                            "where granularity = :granularity and bucket >= :from",
+                    new MapSqlParameterSource()
+                            .addValue("granularity", granularity.name())
+                            .addValue("from", Timestamp.valueOf(from)),
+                    rs -> {
+                        consumer.accept(rs.getTimestamp("bucket").toLocalDateTime(), rs.getString("app"),
+                                rs.getString("uri"), rs.getLong("hits"));
+                    });
+            return;
+        }
+        streamingJdbcTemplate.query("select timestamp, app, uri from stats " +
+                        "where timestamp >= :from and app is not null and uri is not null and ip is not null",
+                new MapSqlParameterSource("from", Timestamp.valueOf(from)),
+                rs -> {
+                    consumer.accept(granularity.floor(rs.getTimestamp("timestamp").toLocalDateTime()),
+                            rs.getString("app"), rs.getString("uri"), 1);
+                });
+    }
+
+    @PostConstruct
+    void backfillIfEmpty() {
+        // Выполняется до запуска потока записи хитов, поэтому параллельных вставок в stats нет
+        if (!enabled || exists("select 1 from stats_rollups limit 1") || !exists("select 1 from stats limit 1")) {
+            return;
+        }
+        log.info("Заполнение таблицы stats_rollups по имеющейся статистике");
+        jdbcTemplate.update(BACKFILL_MINUTES);
+        jdbcTemplate.update(BACKFILL_HOURS);
+        jdbcTemplate.update(BACKFILL_DAYS);
+        log.info("Таблица stats_rollups заполнена");
+    }
+
+    private static LocalDateTime rollupStart(LocalDateTime start) {
+        return RollupGranularity.MINUTE.floor(start).plusMinutes(1);
+    }
+
+    private static LocalDateTime rollupEnd(LocalDateTime end) {
+        return RollupGranularity.MINUTE.floor(end);
+    }
+
+    private boolean exists(String sql) {
+        return !jdbcTemplate.queryForList(sql).isEmpty();
+    }
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(LocalDateTime bucket, String app, String uri, long hits);
+    }
+
+    @Data
+    private static class RollupKey {
+        private final RollupGranularity granularity;
+        private final LocalDateTime bucket;
+        private final String app;
+        private final String uri;
+    }
+}
@@ -0,0 +1,294 @@
+package ru.practicum.ewm.repository;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.BucketRange;
+import ru.practicum.ewm.model.RollupGranularity;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.ViewStats;
+import ru.practicum.ewm.sketch.HyperLogLog;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Скетчи HyperLogLog уникальных ip по app/uri за час и сутки (таблица stats_sketches).
+ * Используются для приближённого ответа на запросы статистики с unique=true: скетчи целых корзин
+ * объединяются, а ip с неровных краёв периода (меньше часа) добавляются из исходной таблицы stats.
+ */
+@Repository
+@Slf4j
+public class StatsSketchRepository {
+    private static final RollupGranularity[] GRANULARITIES = {RollupGranularity.HOUR, RollupGranularity.DAY};
+
+    // Ограничение на число ключей в одном запросе, чтобы не упереться в лимит параметров
+    private static final int KEYS_PER_QUERY = 1000;
+
+    private static final String INSERT_SKETCH = "insert into stats_sketches (granularity, uri, bucket, app, sketch) " +
+            "values (?, ?, ?, ?, ?) on conflict do nothing";
+
+    private static final String SELECT_FOR_UPDATE = "select granularity, uri, bucket, app, sketch from stats_sketches " +
+            "where (granularity, uri, bucket, app) in (:keys) order by granularity, uri, bucket, app for update";
+
+    private static final String UPDATE_SKETCH = "update stats_sketches set sketch = ? " +
+            "where granularity = ? and uri = ? and bucket = ? and app = ?";
+
+    private static final String SELECT_FOR_BACKFILL = "select app, uri, date_trunc('hour', timestamp) as bucket, ip " +
+            "from stats where app is not null and uri is not null and ip is not null and timestamp is not null " +
+            "order by app, uri, bucket";
+
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator.comparing(SketchKey::getGranularity)
+            .thenComparing(SketchKey::getUri)
+            .thenComparing(SketchKey::getBucket)
+            .thenComparing(SketchKey::getApp);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int precision;
+
+    public StatsSketchRepository(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${stats.sketches.enabled}") boolean enabled,
+                                 @Value("${stats.sketches.relative-error}") double relativeError) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.precision = HyperLogLog.precisionForError(relativeError);
+        log.info("Скетчи HyperLogLog: точность {}, стандартная ошибка {}, до {} байт на скетч",
+                precision, HyperLogLog.standardError(precision), (1 << precision) + 2);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Transactional
+    public void addAll(List<Stat> stats) {
+        if (!enabled) {
+            return;
+        }
+        Map<SketchKey, HyperLogLog> increments = new TreeMap<>(KEY_ORDER);
+        for (Stat stat : stats) {
+            if (stat.getApp() == null || stat.getUri() == null || stat.getIp() == null) {
+                continue;
+            }
+            for (RollupGranularity granularity : GRANULARITIES) {
+                SketchKey key = new SketchKey(granularity, stat.getUri(), granularity.floor(stat.getTimesTamp()),
+                        stat.getApp());
+                increments.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(stat.getIp());
+            }
+        }
+        List<SketchKey> keys = new ArrayList<>(increments.keySet());
+        for (int from = 0; from < keys.size(); from += KEYS_PER_QUERY) {
+            merge(keys.subList(from, Math.min(keys.size(), from + KEYS_PER_QUERY)), increments);
+        }
+    }
+
+    /**
+     * Возвращает приближённое количество уникальных ip за период (start, end) или null,
+     * если период короче двух часов и выгоднее посчитать его точно.
+     */
+    public List<ViewStats> findUniqueStats(LocalDateTime start, LocalDateTime end, String[] uris) {
+        // Хиты ровно в момент start в период не входят, поэтому первый час всегда берётся из stats
+        LocalDateTime sketchStart = RollupGranularity.HOUR.floor(start).plusHours(1);
+        LocalDateTime sketchEnd = RollupGranularity.HOUR.floor(end);
+        if (!sketchStart.isBefore(sketchEnd)) {
+            return null;
+        }
+        if (uris != null && uris.length == 0) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriFilter = "";
+        if (uris != null) {
+            params.addValue("uris", Arrays.asList(uris));
+            uriFilter = " and uri in (:uris)";
+        }
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+
+        List<BucketRange> ranges = RollupGranularity.DAY.split(sketchStart, sketchEnd, RollupGranularity.HOUR);
+        List<String> parts = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            BucketRange range = ranges.get(i);
+            params.addValue("granularity" + i, range.getGranularity().name());
+            params.addValue("from" + i, Timestamp.valueOf(range.getFrom()));
+            params.addValue("to" + i, Timestamp.valueOf(range.getTo()));
+            parts.add("select app, uri, sketch from stats_sketches where granularity = :granularity" + i +
+                    " and bucket >= :from" + i + " and bucket < :to" + i + uriFilter);
+        }
+        namedJdbcTemplate.query(String.join(" union all ", parts), params, rs -> {
+            sketches.merge(new AppUri(rs.getString("app"), rs.getString("uri")),
+                    HyperLogLog.fromBytes(rs.getBytes("sketch")), HyperLogLog::merge);
+        });
+
+        params.addValue("start", Timestamp.valueOf(start));
+        params.addValue("sketchStart", Timestamp.valueOf(sketchStart));
+        params.addValue("sketchEnd", Timestamp.valueOf(sketchEnd));
+        params.addValue("end", Timestamp.valueOf(end));
+        namedJdbcTemplate.query("select distinct app, uri, ip from stats where ip is not null " +
+                "and ((timestamp > :start and timestamp < :sketchStart) " +
+                "or (timestamp >= :sketchEnd and timestamp < :end))" + uriFilter, params, rs -> {
+            sketches.computeIfAbsent(new AppUri(rs.getString("app"), rs.getString("uri")),
+                    k -> new HyperLogLog(precision)).add(rs.getString("ip"));
+        });
+
+        return sketches.entrySet().stream()
+                .map(e -> new ViewStats(e.getKey().getApp(), e.getKey().getUri(), e.getValue().estimate()))
+                .collect(Collectors.toList());
+    }
+
+    @PostConstruct
+    void backfillIfEmpty() {
+        // Выполняется до запуска потока записи хитов, поэтому параллельных вставок в stats нет
+        if (!enabled || exists("select 1 from stats_sketches limit 1") || !exists("select 1 from stats limit 1")) {
+            return;
+        }
+        log.info("Заполнение таблицы stats_sketches по имеющейся статистике");
+        transactionTemplate.executeWithoutResult(status -> {
+            SketchBackfill backfill = new SketchBackfill();
+            jdbcTemplate.query(con -> {
+                // Построчное чтение вместо загрузки всей таблицы в память
+                PreparedStatement statement = con.prepareStatement(SELECT_FOR_BACKFILL);
+                statement.setFetchSize(10_000);
+                return statement;
+            }, rs -> {
+                backfill.add(rs.getString("app"), rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime(), rs.getString("ip"));
+            });
+            backfill.finish();
+        });
+        log.info("Таблица stats_sketches заполнена");
+    }
+
+    private void merge(List<SketchKey> keys, Map<SketchKey, HyperLogLog> increments) {
+        HyperLogLog empty = new HyperLogLog(precision);
+        jdbcTemplate.batchUpdate(INSERT_SKETCH, keys.stream()
+                .map(key -> new Object[]{key.getGranularity().name(), key.getUri(), Timestamp.valueOf(key.getBucket()),
+                        key.getApp(), empty.toBytes()})
+                .collect(Collectors.toList()));
+
+        // Строки блокируются до конца транзакции, поэтому параллельные пачки не затирают изменения друг друга
+        Map<SketchKey, HyperLogLog> merged = new TreeMap<>(KEY_ORDER);
+        MapSqlParameterSource params = new MapSqlParameterSource("keys", keys.stream()
+                .map(key -> new Object[]{key.getGranularity().name(), key.getUri(), Timestamp.valueOf(key.getBucket()),
+                        key.getApp()})
+                .collect(Collectors.toList()));
+        namedJdbcTemplate.query(SELECT_FOR_UPDATE, params, rs -> {
+            SketchKey key = new SketchKey(RollupGranularity.valueOf(rs.getString("granularity")), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime(), rs.getString("app"));
+            merged.put(key, HyperLogLog.fromBytes(rs.getBytes("sketch")).merge(increments.get(key)));
+        });
+
+        List<Object[]> args = new ArrayList<>(merged.size());
+        merged.forEach((key, sketch) -> args.add(new Object[]{sketch.toBytes(), key.getGranularity().name(),
+                key.getUri(), Timestamp.valueOf(key.getBucket()), key.getApp()}));
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH, args);
+    }
+
+    private boolean exists(String sql) {
+        return !jdbcTemplate.queryForList(sql).isEmpty();
+    }
+
+    /**
+     * Строки приходят упорядоченными по app, uri и часу, поэтому в памяти держатся только
+     * текущие часовой и суточный скетчи.
+     */
+    private class SketchBackfill {
+        private final List<Object[]> batch = new ArrayList<>();
+
+        private SketchKey hourKey;
+
+        private HyperLogLog hourSketch;
+
+        private SketchKey dayKey;
+
+        private HyperLogLog daySketch;
+
+        void add(String app, String uri, LocalDateTime hour, String ip) {
+            SketchKey key = new SketchKey(RollupGranularity.HOUR, uri, hour, app);
+            if (!key.equals(hourKey)) {
+                flushHour();
+                hourKey = key;
+                hourSketch = new HyperLogLog(precision);
+                SketchKey day = new SketchKey(RollupGranularity.DAY, uri, RollupGranularity.DAY.floor(hour), app);
+                if (!day.equals(dayKey)) {
+                    flushDay();
+                    dayKey = day;
+                    daySketch = new HyperLogLog(precision);
+                }
+            }
+            hourSketch.add(ip);
+            daySketch.add(ip);
+        }
+
+        void finish() {
+            flushHour();
+            flushDay();
+            write();
+        }
+
+        private void flushHour() {
+            if (hourKey != null) {
+                append(hourKey, hourSketch);
+            }
+        }
+
+        private void flushDay() {
+            if (dayKey != null) {
+                append(dayKey, daySketch);
+            }
+        }
+
+        private void append(SketchKey key, HyperLogLog sketch) {
+            batch.add(new Object[]{key.getGranularity().name(), key.getUri(), Timestamp.valueOf(key.getBucket()),
+                    key.getApp(), sketch.toBytes()});
+            if (batch.size() >= KEYS_PER_QUERY) {
+                write();
+            }
+        }
+
+        private void write() {
+            jdbcTemplate.batchUpdate(INSERT_SKETCH, batch);
+            batch.clear();
+        }
+    }
+
+    @Data
+    private static class SketchKey {
+        private final RollupGranularity granularity;
+        private final String uri;
+        private final LocalDateTime bucket;
+        private final String app;
+    }
+
+    @Data
+    private static class AppUri {
+        private final String app;
+        private final String uri;
+    }
+}
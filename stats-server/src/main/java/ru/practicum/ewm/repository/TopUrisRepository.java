@@ -0,0 +1,244 @@
+package ru.practicum.ewm.repository;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.RollupGranularity;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.TopWindow;
+import ru.practicum.ewm.model.ViewStats;
+import ru.practicum.ewm.sketch.SpaceSaving;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Самые просматриваемые uri в скользящих окнах, хранятся только в памяти. Для каждой гранулярности
+ * ведётся кольцо сводок Space-Saving по корзинам, запрос окна объединяет сводки его корзин.
+ * Объединение закончившихся корзин кэшируется до смены текущей корзины или записи в закончившуюся,
+ * поэтому обычный запрос объединяет всего две сводки. При запуске кольца заполняются
+ * из счётчиков stats_rollups (или из таблицы stats, если счётчики не ведутся).
+ */
+@Repository
+@Slf4j
+public class TopUrisRepository {
+    private final StatsRollupRepository rollupRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int capacity;
+
+    private final Map<RollupGranularity, SlidingSummary> rings = new EnumMap<>(RollupGranularity.class);
+
+    // Корзины этой гранулярности вкладываются в корзины всех колец
+    private final RollupGranularity finest;
+
+    public TopUrisRepository(StatsRollupRepository rollupRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${stats.top.capacity}") int capacity) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.capacity = capacity;
+        Map<RollupGranularity, Integer> slices = new EnumMap<>(RollupGranularity.class);
+        for (TopWindow window : TopWindow.values()) {
+            slices.merge(window.getGranularity(), window.getSlices(), Math::max);
+        }
+        slices.forEach((granularity, size) -> rings.put(granularity, new SlidingSummary(granularity, size, capacity)));
+        this.finest = rings.keySet().iterator().next();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Учитывает хиты в окнах. Внутри транзакции хиты учитываются только после её фиксации.
+     */
+    public void addAll(List<Stat> stats) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (SlidingSummary ring : rings.values()) {
+                synchronized (ring) {
+                    for (Stat stat : stats) {
+                        if (isValid(stat)) {
+                            ring.add(ring.granularity.floor(stat.getTimesTamp()), toKey(stat), 1);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        // Все пачки транзакции сворачиваются в одну сводку, сами записи до фиксации не удерживаются
+        PendingHits pending = (PendingHits) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingHits();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(stats);
+    }
+
+    public List<ViewStats> findTop(TopWindow window, int n) {
+        return rings.get(window.getGranularity()).top(window, n).stream()
+                .map(entry -> new ViewStats(entry.getItem().getApp(), entry.getItem().getUri(), entry.getCount()))
+                .collect(Collectors.toList());
+    }
+
+    @PostConstruct
+    void rebuild() {
+        rings.values().forEach(ring -> transactionTemplate.executeWithoutResult(status ->
+                rollupRepository.streamBuckets(ring.granularity, ring.oldest(LocalDateTime.now()),
+                        (bucket, app, uri, hits) -> ring.add(bucket, new UriKey(app, uri), hits))));
+        log.info("Сводки самых просматриваемых uri восстановлены по имеющейся статистике");
+    }
+
+    private static boolean isValid(Stat stat) {
+        return stat.getApp() != null && stat.getUri() != null && stat.getIp() != null;
+    }
+
+    private static UriKey toKey(Stat stat) {
+        return new UriKey(stat.getApp(), stat.getUri());
+    }
+
+    /**
+     * Хиты незафиксированной транзакции, сведённые по корзинам самой мелкой гранулярности колец.
+     * Память ограничена capacity счётчиков: пока различных пар корзина-uri не больше capacity,
+     * счёт точный, иначе оценки Space-Saving завышены не больше чем на N / capacity.
+     */
+    class PendingHits implements TransactionSynchronization {
+        private final SpaceSaving<BucketKey> summary = new SpaceSaving<>(capacity);
+
+        void add(List<Stat> stats) {
+            for (Stat stat : stats) {
+                if (isValid(stat)) {
+                    summary.add(new BucketKey(finest.floor(stat.getTimesTamp()), toKey(stat)));
+                }
+            }
+        }
+
+        int size() {
+            return summary.size();
+        }
+
+        @Override
+        public void afterCommit() {
+            List<SpaceSaving.Entry<BucketKey>> entries = summary.top(summary.size());
+            for (SlidingSummary ring : rings.values()) {
+                synchronized (ring) {
+                    for (SpaceSaving.Entry<BucketKey> entry : entries) {
+                        BucketKey key = entry.getItem();
+                        ring.add(ring.granularity.floor(key.getBucket()), key.getUri(), entry.getCount());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TopUrisRepository.this);
+        }
+    }
+
+    @Data
+    private static class UriKey {
+        private final String app;
+        private final String uri;
+    }
+
+    @Data
+    private static class BucketKey {
+        private final LocalDateTime bucket;
+        private final UriKey uri;
+    }
+
+    private static class SlidingSummary {
+        private final RollupGranularity granularity;
+
+        private final int capacity;
+
+        private final LocalDateTime[] buckets;
+
+        private final List<SpaceSaving<UriKey>> summaries;
+
+        private final Map<TopWindow, CompletedBuckets> completed = new EnumMap<>(TopWindow.class);
+
+        // Меняется при каждой записи в уже закончившуюся корзину
+        private long version;
+
+        SlidingSummary(RollupGranularity granularity, int size, int capacity) {
+            this.granularity = granularity;
+            this.capacity = capacity;
+            this.buckets = new LocalDateTime[size];
+            this.summaries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                summaries.add(null);
+            }
+        }
+
+        LocalDateTime oldest(LocalDateTime now) {
+            return granularity.minus(granularity.floor(now), buckets.length - 1);
+        }
+
+        synchronized void add(LocalDateTime bucket, UriKey key, long hits) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime current = granularity.floor(now);
+            // Хиты старше кольца и хиты из будущего в окна не попадают
+            if (bucket.isBefore(oldest(now)) || bucket.isAfter(current)) {
+                return;
+            }
+            int slot = slot(bucket);
+            if (!bucket.equals(buckets[slot])) {
+                if (buckets[slot] != null && buckets[slot].isAfter(bucket)) {
+                    return;
+                }
+                buckets[slot] = bucket;
+                summaries.set(slot, new SpaceSaving<>(capacity));
+            }
+            summaries.get(slot).add(key, hits);
+            if (bucket.isBefore(current)) {
+                version++;
+            }
+        }
+
+        synchronized List<SpaceSaving.Entry<UriKey>> top(TopWindow window, int n) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime current = granularity.floor(now);
+            CompletedBuckets cached = completed.get(window);
+            if (cached == null || !cached.current.equals(current) || cached.version != version) {
+                LocalDateTime from = window.from(now);
+                SpaceSaving<UriKey> merged = new SpaceSaving<>(capacity);
+                for (int i = 0; i < buckets.length; i++) {
+                    if (buckets[i] != null && !buckets[i].isBefore(from) && buckets[i].isBefore(current)) {
+                        merged = merged.merge(summaries.get(i));
+                    }
+                }
+                cached = new CompletedBuckets(current, version, merged);
+                completed.put(window, cached);
+            }
+            int slot = slot(current);
+            SpaceSaving<UriKey> result = current.equals(buckets[slot])
+                    ? cached.summary.merge(summaries.get(slot)) : cached.summary;
+            return result.top(n);
+        }
+
+        private int slot(LocalDateTime bucket) {
+            return (int) Math.floorMod(granularity.index(bucket), (long) buckets.length);
+        }
+    }
+
+    @Data
+    private static class CompletedBuckets {
+        private final LocalDateTime current;
+        private final long version;
+        private final SpaceSaving<UriKey> summary;
+    }
+}
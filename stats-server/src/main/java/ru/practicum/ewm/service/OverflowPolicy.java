@@ -0,0 +1,7 @@
+package ru.practicum.ewm.service;
+
+public enum OverflowPolicy {
+    BLOCK,
+    DROP_OLDEST,
+    REJECT
+}
@@ -0,0 +1,167 @@
+package ru.practicum.ewm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.exception.IngestionQueueOverflowException;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.repository.StatsBatchRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очередь приёма статистики. Хиты складываются в ограниченную очередь, а отдельный поток
+ * записывает их в базу данных пачками: как только набралось batchSize записей
+ * или прошло flushIntervalMs с момента поступления первой записи пачки.
+ */
+@Component
+@Slf4j
+// Поток записи запускается только после перевода таблицы stats в секционированную
+@DependsOn("statsPartitionMaintenance")
+public class StatsIngestionQueue {
+    // Поток записи просыпается не реже этого интервала, чтобы быстро реагировать на остановку
+    private static final long MAX_POLL_TIMEOUT_MS = 50;
+
+    private final BlockingQueue<Stat> queue;
+
+    private final StatsBatchRepository batchRepository;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final Thread writer;
+
+    private final Counter writtenCounter;
+
+    private final Counter droppedCounter;
+
+    private final Counter rejectedCounter;
+
+    private final Counter failedCounter;
+
+    private volatile boolean running = true;
+
+    public StatsIngestionQueue(StatsBatchRepository batchRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${stats.ingestion.queue-capacity}") int queueCapacity,
+                               @Value("${stats.ingestion.batch-size}") int batchSize,
+                               @Value("${stats.ingestion.flush-interval-ms}") long flushIntervalMs,
+                               @Value("${stats.ingestion.overflow-policy}") OverflowPolicy overflowPolicy) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchRepository = batchRepository;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+
+        Gauge.builder("stats.ingestion.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.writtenCounter = meterRegistry.counter("stats.ingestion.written");
+        this.droppedCounter = meterRegistry.counter("stats.ingestion.dropped");
+        this.rejectedCounter = meterRegistry.counter("stats.ingestion.rejected");
+        this.failedCounter = meterRegistry.counter("stats.ingestion.failed");
+
+        this.writer = new Thread(this::runWriter, "stats-ingestion-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+        log.info("Очередь записи статистики запущена, политика переполнения: {}", overflowPolicy);
+    }
+
+    public void submit(Stat stat) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(stat);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejectedCounter.increment();
+                    throw new IngestionQueueOverflowException("Запись статистики прервана");
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(stat)) {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+                break;
+            case REJECT:
+                if (!queue.offer(stat)) {
+                    rejectedCounter.increment();
+                    throw new IngestionQueueOverflowException("Очередь записи статистики переполнена");
+                }
+                break;
+            default:
+                throw new IllegalStateException("Неизвестная политика переполнения очереди: " + overflowPolicy);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join();
+        // Дописываем всё, что осталось в очереди после остановки потока записи
+        List<Stat> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+        }
+        log.info("Очередь записи статистики остановлена");
+    }
+
+    private void runWriter() {
+        List<Stat> batch = new ArrayList<>(batchSize);
+        long pollTimeoutMs = Math.min(flushIntervalMs, MAX_POLL_TIMEOUT_MS);
+        long deadline = 0;
+        while (running) {
+            try {
+                Stat stat = queue.poll(pollTimeoutMs, TimeUnit.MILLISECONDS);
+                if (stat != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                    }
+                    batch.add(stat);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (batch.size() >= batchSize || (!batch.isEmpty() && System.nanoTime() - deadline >= 0)) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                write(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        write(batch);
+    }
+
+    private void write(List<Stat> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchRepository.saveAll(batch);
+            writtenCounter.increment(batch.size());
+            log.debug("Сохранена пачка статистики в базе данных, записей: {}", batch.size());
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("Не удалось сохранить пачку статистики, записей: {}", batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+}
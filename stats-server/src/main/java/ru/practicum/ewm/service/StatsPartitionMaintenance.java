@@ -0,0 +1,206 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячное секционирование таблицы stats в PostgreSQL (включается stats.partitioning.enabled).
+ * При запуске обычная таблица stats переводится в секционированную с переносом данных,
+ * затем по расписанию заранее создаются секции на premake-months месяцев вперёд,
+ * а секции старше retention-months удаляются целиком вместо DELETE по строкам.
+ * Предагрегированные счётчики и скетчи при удалении секций сохраняются.
+ * Строки без timestamp не попадают ни в одну секцию и при переводе сохраняются в таблице stats_without_timestamp.
+ * Хиты с датами вне созданных секций попадают в stats_default и переносятся в секцию месяца при её создании.
+ */
+@Component
+@Slf4j
+public class StatsPartitionMaintenance {
+    private static final Pattern PARTITION_NAME = Pattern.compile("stats_(\\d{4})_(\\d{2})");
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String WITHOUT_TIMESTAMP_TABLE = "stats_without_timestamp";
+
+    private static final String SELECT_PARTITIONS = "select c.relname from pg_inherits i " +
+            "join pg_class c on c.oid = i.inhrelid join pg_class p on p.oid = i.inhparent " +
+            "where p.relname = 'stats' and p.relnamespace = to_regnamespace(current_schema())";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int premakeMonths;
+
+    private final int retentionMonths;
+
+    public StatsPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${stats.partitioning.enabled}") boolean enabled,
+                                     @Value("${stats.partitioning.premake-months}") int premakeMonths,
+                                     @Value("${stats.partitioning.retention-months}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled && isPostgres(jdbcTemplate);
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        if (enabled && !this.enabled) {
+            log.warn("Секционирование таблицы stats поддерживается только в PostgreSQL и будет отключено");
+        }
+    }
+
+    @PostConstruct
+    void migrate() {
+        // Выполняется до запуска потока записи хитов (см. StatsIngestionQueue)
+        if (!enabled) {
+            return;
+        }
+        String kind = jdbcTemplate.queryForObject("select c.relkind from pg_class c " +
+                "where c.relname = 'stats' and c.relnamespace = to_regnamespace(current_schema())", String.class);
+        if ("r".equals(kind)) {
+            transactionTemplate.executeWithoutResult(status -> convertToPartitioned());
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partitioning.maintenance-cron}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!partitionExists(month)) {
+                createPartition(month);
+            }
+        }
+        if (retentionMonths > 0) {
+            dropExpiredPartitions(current.minusMonths(retentionMonths));
+        }
+    }
+
+    private void convertToPartitioned() {
+        log.info("Перевод таблицы stats в секционированную по месяцам");
+        jdbcTemplate.execute("lock table stats in access exclusive mode");
+        jdbcTemplate.execute("alter table stats rename to stats_flat");
+        jdbcTemplate.execute("alter table stats_flat rename constraint pk_stat to pk_stat_flat");
+        jdbcTemplate.execute("alter index if exists ix_stats_uri_timestamp rename to ix_stats_flat_uri_timestamp");
+        jdbcTemplate.execute("alter index if exists brin_stats_timestamp rename to brin_stats_flat_timestamp");
+        // Ключ секционирования должен входить в первичный ключ
+        jdbcTemplate.execute("create table stats (" +
+                "id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL, " +
+                "Identification_record BIGINT, " +
+                "app VARCHAR(255), " +
+                "uri VARCHAR(512), " +
+                "ip VARCHAR(512), " +
+                "timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL, " +
+                "CONSTRAINT pk_stat PRIMARY KEY (id, timestamp)" +
+                ") partition by range (timestamp)");
+        jdbcTemplate.execute("create index ix_stats_uri_timestamp on stats (uri, timestamp)");
+        jdbcTemplate.execute("create index brin_stats_timestamp on stats using brin (timestamp) " +
+                "with (pages_per_range = 32)");
+        jdbcTemplate.execute("create table stats_default partition of stats default");
+
+        LocalDateTime first = jdbcTemplate.queryForObject("select min(timestamp) from stats_flat",
+                LocalDateTime.class);
+        YearMonth month = first == null ? YearMonth.now() : YearMonth.from(first);
+        YearMonth last = YearMonth.now().plusMonths(premakeMonths);
+        for (; !month.isAfter(last); month = month.plusMonths(1)) {
+            createPartition(month);
+        }
+
+        Integer withoutTimestamp = jdbcTemplate.queryForObject("select count(*) from stats_flat " +
+                "where timestamp is null", Integer.class);
+        if (withoutTimestamp != null && withoutTimestamp > 0) {
+            jdbcTemplate.execute("create table " + WITHOUT_TIMESTAMP_TABLE + " as " +
+                    "select * from stats_flat where timestamp is null");
+            log.warn("Строки без timestamp не переносятся в секционированную таблицу и сохранены в {}: {}",
+                    WITHOUT_TIMESTAMP_TABLE, withoutTimestamp);
+        }
+        int moved = jdbcTemplate.update("insert into stats (id, Identification_record, app, uri, ip, timestamp) " +
+                "select id, Identification_record, app, uri, ip, timestamp from stats_flat " +
+                "where timestamp is not null");
+        jdbcTemplate.execute("select setval(pg_get_serial_sequence('stats', 'id'), " +
+                "coalesce((select max(id) from stats), 0) + 1, false)");
+        jdbcTemplate.execute("drop table stats_flat");
+        log.info("Таблица stats переведена в секционированную, перенесено строк: {}", moved);
+    }
+
+    // Ошибки не перехватываются: при переводе таблицы они должны откатить транзакцию с исходной причиной
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        transactionTemplate.executeWithoutResult(status -> {
+            // Хиты с датой без своей секции лежат в stats_default, и PostgreSQL не создаст секцию,
+            // пока там есть строки её диапазона. Такие строки переносятся в новую секцию до подключения
+            jdbcTemplate.execute("lock table stats_default in exclusive mode");
+            Boolean hasRows = jdbcTemplate.queryForObject("select exists (select 1 from stats_default " +
+                    "where timestamp >= ? and timestamp < ?)", Boolean.class, from, to);
+            if (!Boolean.TRUE.equals(hasRows)) {
+                jdbcTemplate.execute(String.format("create table %s partition of stats " +
+                        "for values from ('%s') to ('%s')", partition, from, to));
+                return;
+            }
+            jdbcTemplate.execute(String.format("create table %s (like stats including defaults)", partition));
+            int moved = jdbcTemplate.update(String.format("with moved as (delete from stats_default " +
+                    "where timestamp >= ? and timestamp < ? returning *) insert into %s select * from moved",
+                    partition), from, to);
+            jdbcTemplate.execute(String.format("alter table stats attach partition %s " +
+                    "for values from ('%s') to ('%s')", partition, from, to));
+            log.info("В секцию {} перенесено строк из stats_default: {}", partition, moved);
+        });
+        log.info("Создана секция таблицы stats: {}", partition);
+    }
+
+    private boolean partitionExists(YearMonth month) {
+        return jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, partitionName(month));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "stats_" + month.format(PARTITION_SUFFIX);
+    }
+
+    private void dropExpiredPartitions(YearMonth oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                jdbcTemplate.execute("drop table " + partition);
+                log.info("Удалена устаревшая секция таблицы stats: {}", partition);
+            }
+        }
+        // Строки за месяцы без своих секций хранятся в stats_default и устаревают так же
+        int deleted = jdbcTemplate.update("delete from stats_default where timestamp < ?", oldestKept.atDay(1));
+        if (deleted > 0) {
+            log.info("Удалены устаревшие строки из stats_default: {}", deleted);
+        }
+    }
+
+    private static boolean isPostgres(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                con.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product);
+    }
+}
@@ -1,13 +1,21 @@
 package ru.practicum.ewm.service;
 
 import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitsBatchResult;
+import ru.practicum.ewm.model.StatsQuery;
+import ru.practicum.ewm.model.TopWindow;
 import ru.practicum.ewm.model.ViewStats;
 
-import java.time.LocalDateTime;
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveStatsHit(EndpointHit endpointHit);
 
-    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique);
+    HitsBatchResult saveStatsHits(InputStream hits);
+
+    void streamStats(StatsQuery query, Consumer<ViewStats> consumer);
+
+    List<ViewStats> getTop(TopWindow window, int n);
 }
@@ -1,16 +1,43 @@
 package ru.practicum.ewm.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.exception.InvalidStatsQueryException;
+import ru.practicum.ewm.exception.MalformedHitsException;
 import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.HitsBatchResult;
 import ru.practicum.ewm.model.Mapper;
 import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.StatsQuery;
+import ru.practicum.ewm.model.TopWindow;
 import ru.practicum.ewm.model.ViewStats;
+import ru.practicum.ewm.repository.StatsBatchRepository;
 import ru.practicum.ewm.repository.StatsRepository;
+import ru.practicum.ewm.repository.StatsRollupRepository;
+import ru.practicum.ewm.repository.StatsSketchRepository;
+import ru.practicum.ewm.repository.TopUrisRepository;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -19,32 +46,164 @@ public class StatsServiceImpl implements StatsService {
 
     private final StatsRepository statsRepository;
 
+    private final StatsIngestionQueue ingestionQueue;
+
+    private final StatsBatchRepository batchRepository;
+
+    private final StatsRollupRepository rollupRepository;
+
+    private final StatsSketchRepository sketchRepository;
+
+    private final TopUrisRepository topUrisRepository;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${stats.ingestion.batch-size}")
+    private int batchSize;
+
     @Override
     public void saveStatsHit(EndpointHit endpointHit) {
         Stat stat = Mapper.toStatFromEndpointHit(endpointHit);
         stat.setTimesTamp(LocalDateTime.now());
-        statsRepository.save(stat);
-        log.debug("Статистика сохранена в базе данных: {}", stat);
+        ingestionQueue.submit(stat);
+        log.debug("Статистика поставлена в очередь на сохранение: {}", stat);
     }
 
     @Override
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, String[] uris, Boolean unique) {
+    public HitsBatchResult saveStatsHits(InputStream hits) {
+        // Тело разбирается потоково: JSON-массив или NDJSON (последовательность объектов верхнего уровня).
+        // В памяти одновременно держится не больше одной пачки записей. Каждая пачка сохраняется
+        // в своей транзакции, поэтому долгая загрузка не держит соединение и блокировки счётчиков,
+        // а ошибка разбора не отменяет уже сохранённые записи
+        long accepted = 0;
+        long rejected = 0;
+        List<Stat> batch = new ArrayList<>(batchSize);
+        try (JsonParser parser = objectMapper.getFactory().createParser(hits)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                Stat stat = token == JsonToken.START_OBJECT ? toStat(parser.readValueAsTree()) : null;
+                if (stat == null) {
+                    parser.skipChildren();
+                    rejected++;
+                } else {
+                    batch.add(stat);
+                    accepted++;
+                    if (batch.size() >= batchSize) {
+                        saveBatch(batch);
+                    }
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // Записи, разобранные до ошибки, сохраняются, и клиент узнаёт, сколько их
+            saveBatch(batch);
+            String message = "Некорректный JSON в пакете статистики: " + e.getOriginalMessage();
+            log.warn("{}, сохранено записей до ошибки: {}", message, accepted);
+            throw new MalformedHitsException(message, e, new HitsBatchResult(accepted, rejected, message));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        saveBatch(batch);
+        log.debug("Пакет статистики сохранён в базе данных: принято {}, отклонено {}", accepted, rejected);
+        return new HitsBatchResult(accepted, rejected);
+    }
 
-        List<ViewStats> result;
-        if (unique) {
-            if (uris == null) {
-                result = statsRepository.findStatsUniqueIp(start, end);
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(StatsQuery query, Consumer<ViewStats> consumer) {
+        LocalDateTime start = query.getStart();
+        LocalDateTime end = query.getEnd();
+        String[] uris = query.getUris();
+        long[] count = {0};
+        Consumer<ViewStats> counting = viewStats -> {
+            consumer.accept(viewStats);
+            count[0]++;
+        };
+        if (query.isUnique()) {
+            // Приближённый подсчёт уникальных ip по скетчам HyperLogLog - только по явному запросу
+            List<ViewStats> approx = query.isApprox() && sketchRepository.isEnabled()
+                    ? sketchRepository.findUniqueStats(start, end, uris) : null;
+            if (approx != null) {
+                Stream<ViewStats> stream = approx.stream();
+                if (query.isOrderByHits()) {
+                    stream = stream.sorted(Comparator.comparing(ViewStats::getHits).reversed());
+                }
+                if (query.getLimit() != null) {
+                    stream = stream.limit(query.getLimit());
+                }
+                stream.forEach(counting);
             } else {
-                result = statsRepository.findStatsByUrisUniqueIp(start, end, uris);
+                Pageable pageable = toPageable(query, StatsRepository.UNIQUE_HITS);
+                try (Stream<ViewStats> stream = uris == null
+                        ? statsRepository.findStatsUniqueIp(start, end, pageable)
+                        : statsRepository.findStatsByUrisUniqueIp(start, end, uris, pageable)) {
+                    stream.forEach(counting);
+                }
             }
+        } else if (rollupRepository.isEnabled() && rollupRepository.covers(start, end)) {
+            // Без учёта уникальности ip статистика собирается из предагрегированных счётчиков
+            rollupRepository.streamStats(start, end, uris, query.getLimit(), query.isOrderByHits(), counting);
         } else {
-            if (uris == null) {
-                result = statsRepository.findStats(start, end);
-            } else {
-                result = statsRepository.findStatsByUris(start, end, uris);
+            Pageable pageable = toPageable(query, StatsRepository.HITS);
+            try (Stream<ViewStats> stream = uris == null
+                    ? statsRepository.findStats(start, end, pageable)
+                    : statsRepository.findStatsByUris(start, end, uris, pageable)) {
+                stream.forEach(counting);
             }
         }
-        log.debug("Получена статистика из базы данных: {}", result);
-        return result;
+        log.debug("Получена статистика из базы данных, записей: {}", count[0]);
+    }
+
+    @Override
+    public List<ViewStats> getTop(TopWindow window, int n) {
+        if (n > topUrisRepository.getCapacity()) {
+            throw new InvalidStatsQueryException("Параметр n не может быть больше " + topUrisRepository.getCapacity() +
+                    ": " + n);
+        }
+        List<ViewStats> top = topUrisRepository.findTop(window, n);
+        log.debug("Получены самые просматриваемые uri за окно {}: {}", window, top);
+        return top;
+    }
+
+    // Пачка записывается отдельной транзакцией StatsBatchRepository.saveAll
+    private void saveBatch(List<Stat> batch) {
+        if (!batch.isEmpty()) {
+            batchRepository.saveAll(batch);
+            batch.clear();
+        }
+    }
+
+    private static Pageable toPageable(StatsQuery query, String hits) {
+        Sort sort = query.isOrderByHits() ? JpaSort.unsafe(Sort.Direction.DESC, hits) : Sort.unsorted();
+        if (query.getLimit() != null) {
+            return PageRequest.of(0, query.getLimit(), sort);
+        }
+        return sort.isSorted() ? PageRequest.of(0, Integer.MAX_VALUE, sort) : Pageable.unpaged();
+    }
+
+    private Stat toStat(JsonNode node) {
+        EndpointHit endpointHit;
+        try {
+            endpointHit = objectMapper.treeToValue(node, EndpointHit.class);
+        } catch (JsonProcessingException e) {
+            log.debug("Отклонена запись статистики {}: {}", node, e.getOriginalMessage());
+            return null;
+        }
+        if (isBlank(endpointHit.getApp()) || isBlank(endpointHit.getUri()) || isBlank(endpointHit.getIp())) {
+            log.debug("Отклонена неполная запись статистики {}", endpointHit);
+            return null;
+        }
+        Stat stat = Mapper.toStatFromEndpointHit(endpointHit);
+        if (stat.getTimesTamp() == null) {
+            stat.setTimesTamp(LocalDateTime.now());
+        }
+        return stat;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 }
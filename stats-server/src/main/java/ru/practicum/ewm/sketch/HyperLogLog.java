@@ -0,0 +1,213 @@
+package ru.practicum.ewm.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Скетч HyperLogLog для приближённого подсчёта количества уникальных значений.
+ * Точность p задаёт число регистров m = 2^p и стандартную ошибку 1.04 / sqrt(m).
+ * Скетчи с разной точностью объединяются с понижением точности до меньшей из двух.
+ * В сериализованном виде скетч с небольшим числом заполненных регистров хранится разреженно.
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 16;
+
+    private static final byte DENSE = 0;
+
+    private static final byte SPARSE = 1;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от " + MIN_PRECISION +
+                    " до " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Минимальная точность, при которой стандартная ошибка не превышает relativeError.
+     */
+    public static int precisionForError(double relativeError) {
+        int precision = (int) Math.ceil(2 * Math.log(1.04 / relativeError) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        long hash = hash64(value.getBytes(StandardCharsets.UTF_8));
+        int index = (int) (hash >>> (64 - precision));
+        // Установленный бит ограничивает ранг значением 64 - p + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // На малых мощностях точнее линейный подсчёт по пустым регистрам
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Объединение скетчей. Результат имеет меньшую из двух точностей, исходные скетчи не меняются.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        int targetPrecision = Math.min(precision, other.precision);
+        HyperLogLog result = foldTo(targetPrecision);
+        HyperLogLog folded = other.foldTo(targetPrecision);
+        for (int i = 0; i < result.registers.length; i++) {
+            if (folded.registers[i] > result.registers[i]) {
+                result.registers[i] = folded.registers[i];
+            }
+        }
+        return result;
+    }
+
+    public byte[] toBytes() {
+        int filled = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                filled++;
+            }
+        }
+        if (3 * filled < registers.length) {
+            // Разреженный формат: пары (номер регистра, значение)
+            ByteBuffer buffer = ByteBuffer.allocate(2 + 3 * filled).order(ByteOrder.BIG_ENDIAN);
+            buffer.put(SPARSE).put((byte) precision);
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i).put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+        byte[] bytes = new byte[2 + registers.length];
+        bytes[0] = DENSE;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        if (bytes[0] == SPARSE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, bytes.length - 2).order(ByteOrder.BIG_ENDIAN);
+            while (buffer.hasRemaining()) {
+                int index = Short.toUnsignedInt(buffer.getShort());
+                sketch.registers[index] = buffer.get();
+            }
+        } else if (bytes[0] == DENSE) {
+            System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registers.length);
+        } else {
+            throw new IllegalArgumentException("Неизвестный формат скетча HyperLogLog: " + bytes[0]);
+        }
+        return sketch;
+    }
+
+    private HyperLogLog foldTo(int targetPrecision) {
+        HyperLogLog result = new HyperLogLog(targetPrecision);
+        int shift = precision - targetPrecision;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0) {
+                continue;
+            }
+            // Отброшенные младшие биты номера регистра становятся старшими битами остатка хэша
+            int droppedBits = i & ((1 << shift) - 1);
+            int rank = droppedBits == 0 ? shift + registers[i]
+                    : Integer.numberOfLeadingZeros(droppedBits) - (32 - shift) + 1;
+            int index = i >>> shift;
+            if (rank > result.registers[index]) {
+                result.registers[index] = (byte) rank;
+            }
+        }
+        return result;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // MurmurHash64A
+    private static long hash64(byte[] data) {
+        final long multiplier = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long hash = 0x9747b28cL ^ (data.length * multiplier);
+        int blocks = data.length / 8;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < blocks; i++) {
+            long k = buffer.getLong();
+            k *= multiplier;
+            k ^= k >>> r;
+            k *= multiplier;
+            hash ^= k;
+            hash *= multiplier;
+        }
+        int tail = blocks * 8;
+        int remaining = data.length - tail;
+        if (remaining > 0) {
+            for (int i = remaining - 1; i >= 0; i--) {
+                hash ^= (long) (data[tail + i] & 0xff) << (8 * i);
+            }
+            hash *= multiplier;
+        }
+        hash ^= hash >>> r;
+        hash *= multiplier;
+        hash ^= hash >>> r;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HyperLogLog)) {
+            return false;
+        }
+        HyperLogLog that = (HyperLogLog) o;
+        return precision == that.precision && Arrays.equals(registers, that.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.ewm.sketch;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Сводка Space-Saving для поиска самых частых элементов потока в памяти O(capacity).
+ * Оценка счётчика не меньше истинного значения и превышает его не больше чем на error,
+ * а error не больше N / capacity, где N - сумма всех добавленных весов.
+ * Сводки объединяются без потери этих гарантий.
+ */
+public class SpaceSaving<T> {
+    private static final Comparator<Counter<?>> COUNTER_ORDER = Comparator.<Counter<?>>comparingLong(c -> c.count)
+            .thenComparingLong(c -> c.sequence);
+
+    private final int capacity;
+
+    private final Map<T, Counter<T>> counters = new HashMap<>();
+
+    // Счётчики по возрастанию: первым вытесняется самый маленький
+    private final TreeSet<Counter<T>> order = new TreeSet<>(COUNTER_ORDER);
+
+    private long sequence;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер сводки Space-Saving должен быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    public void add(T item) {
+        add(item, 1);
+    }
+
+    public void add(T item, long weight) {
+        Counter<T> counter = counters.get(item);
+        if (counter != null) {
+            order.remove(counter);
+            counter.count += weight;
+            order.add(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            put(item, weight, 0);
+            return;
+        }
+        // Новый элемент занимает место самого редкого и наследует его счётчик как ошибку
+        Counter<T> min = order.pollFirst();
+        counters.remove(min.item);
+        put(item, min.count + weight, min.count);
+    }
+
+    /**
+     * Объединение сводок. Элементу, которого нет в заполненной сводке, засчитывается её минимальный
+     * счётчик, поэтому оценки остаются верхними. Исходные сводки не меняются.
+     */
+    public SpaceSaving<T> merge(SpaceSaving<T> other) {
+        long minThis = minCount();
+        long minOther = other.minCount();
+        List<Entry<T>> merged = new ArrayList<>(counters.size() + other.counters.size());
+        Set<T> items = new HashSet<>(counters.keySet());
+        items.addAll(other.counters.keySet());
+        for (T item : items) {
+            Counter<T> left = counters.get(item);
+            Counter<T> right = other.counters.get(item);
+            long count = (left != null ? left.count : minThis) + (right != null ? right.count : minOther);
+            long error = (left != null ? left.error : minThis) + (right != null ? right.error : minOther);
+            merged.add(new Entry<>(item, count, error));
+        }
+        merged.sort(Comparator.<Entry<T>>comparingLong(Entry::getCount).reversed());
+
+        SpaceSaving<T> result = new SpaceSaving<>(Math.max(capacity, other.capacity));
+        for (Entry<T> entry : merged.subList(0, Math.min(result.capacity, merged.size()))) {
+            result.put(entry.getItem(), entry.getCount(), entry.getError());
+        }
+        return result;
+    }
+
+    /**
+     * Не больше n элементов с наибольшими счётчиками по убыванию.
+     */
+    public List<Entry<T>> top(int n) {
+        List<Entry<T>> result = new ArrayList<>(Math.min(n, counters.size()));
+        Iterator<Counter<T>> iterator = order.descendingIterator();
+        while (iterator.hasNext() && result.size() < n) {
+            Counter<T> counter = iterator.next();
+            result.add(new Entry<>(counter.item, counter.count, counter.error));
+        }
+        return result;
+    }
+
+    private long minCount() {
+        return counters.size() < capacity ? 0 : order.first().count;
+    }
+
+    private void put(T item, long count, long error) {
+        Counter<T> counter = new Counter<>(item, count, error, sequence++);
+        counters.put(item, counter);
+        order.add(counter);
+    }
+
+    @Value
+    public static class Entry<T> {
+        T item;
+        long count;
+        long error;
+    }
+
+    private static class Counter<T> {
+        private final T item;
+        private long count;
+        private final long error;
+        private final long sequence;
+
+        Counter(T item, long count, long error, long sequence) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,3 @@
+-- Хиты пишутся почти в порядке времени, поэтому по timestamp достаточно компактного BRIN-индекса
+DROP INDEX IF EXISTS ix_stats_timestamp;
+CREATE INDEX IF NOT EXISTS brin_stats_timestamp ON stats USING brin (timestamp) WITH (pages_per_range = 32);
@@ -6,4 +6,28 @@ CREATE TABLE IF NOT EXISTS stats (
     ip VARCHAR(512),
     timestamp TIMESTAMP WITHOUT TIME ZONE,
     CONSTRAINT pk_stat PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS ix_stats_uri_timestamp ON stats (uri, timestamp);
+
+CREATE TABLE IF NOT EXISTS stats_rollups (
+    granularity VARCHAR(8) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_stats_rollups PRIMARY KEY (granularity, uri, bucket, app)
+);
+
+CREATE INDEX IF NOT EXISTS ix_stats_rollups_bucket ON stats_rollups (granularity, bucket);
+
+CREATE TABLE IF NOT EXISTS stats_sketches (
+    granularity VARCHAR(8) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    sketch BYTEA NOT NULL,
+    CONSTRAINT pk_stats_sketches PRIMARY KEY (granularity, uri, bucket, app)
+);
+
+CREATE INDEX IF NOT EXISTS ix_stats_sketches_bucket ON stats_sketches (granularity, bucket);
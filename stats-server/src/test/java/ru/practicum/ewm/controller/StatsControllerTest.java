@@ -0,0 +1,212 @@
+package ru.practicum.ewm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.repository.StatsBatchRepository;
+import ru.practicum.ewm.repository.StatsRepository;
+import ru.practicum.ewm.repository.StatsRollupRepository;
+import ru.practicum.ewm.repository.StatsSketchRepository;
+import ru.practicum.ewm.repository.TopUrisRepository;
+import ru.practicum.ewm.service.OverflowPolicy;
+import ru.practicum.ewm.service.StatsIngestionQueue;
+import ru.practicum.ewm.service.StatsServiceImpl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StatsControllerTest {
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .build();
+
+    private final StatsBatchRepository batchRepository = mock(StatsBatchRepository.class);
+
+    // Копии сохранённых пачек: сервис очищает переданный список после записи
+    private final List<List<Stat>> batches = new CopyOnWriteArrayList<>();
+
+    private StatsIngestionQueue ingestionQueue;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            List<Stat> batch = invocation.getArgument(0);
+            batches.add(List.copyOf(batch));
+            return null;
+        }).when(batchRepository).saveAll(anyList());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ingestionQueue.shutdown();
+    }
+
+    @Test
+    void saveStatsHitWhenQueueIsFullThenReturnTooManyRequests() throws Exception {
+        // Поток записи не запущен, поэтому очередь из одного места заполняется первым хитом
+        setUpController(1, OverflowPolicy.REJECT);
+
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(hit("/events/1")))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(hit("/events/1")))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void saveStatsHitsWhenJsonArray() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + hit("/events/1") + "," + hit("/events/2") + "," + hit("/events/3") + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(3)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+
+        // Записи сохраняются пачками по batch-size
+        assertEquals(List.of(2, 1), batches.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(List.of("/events/1", "/events/2", "/events/3"), savedUris());
+    }
+
+    @Test
+    void saveStatsHitsWhenNdjson() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content(hit("/events/1") + "\n" + hit("/events/2") + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(2)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+
+        assertEquals(List.of("/events/1", "/events/2"), savedUris());
+    }
+
+    @Test
+    void saveStatsHitsWhenBatchContainsInvalidRecords() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        // Неполная запись, не объект, вложенный массив и запись с некорректной датой отклоняются,
+        // остальные записи пакета сохраняются
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + hit("/events/1") + ","
+                                + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/2\"},"
+                                + "42,"
+                                + "[" + hit("/events/3") + "],"
+                                + "{\"app\":\"ewm-main-service\",\"uri\":\"/events/4\",\"ip\":\"127.0.0.1\","
+                                + "\"timesTamp\":\"вчера\"},"
+                                + hit("/events/5") + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(2)))
+                .andExpect(jsonPath("$.rejected", is(4)));
+
+        assertEquals(List.of("/events/1", "/events/5"), savedUris());
+    }
+
+    @Test
+    void saveStatsHitsWhenRecordWithoutTimestampThenCurrentTimeIsUsed() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"127.0.0.1\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(1)));
+
+        assertEquals(1, savedUris().size());
+        assertNotNull(batches.get(0).get(0).getTimesTamp());
+    }
+
+    @Test
+    void saveStatsHitsWhenJsonIsTruncatedThenReturnBadRequest() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + hit("/events/1") + ", {\"app\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted", is(1)))
+                .andExpect(jsonPath("$.error", startsWith("Некорректный JSON в пакете статистики")));
+
+        // Запись до ошибки разбора сохранена, и ответ сообщает об этом
+        assertEquals(List.of("/events/1"), savedUris());
+    }
+
+    @Test
+    void saveStatsHitsWhenBodyBreaksAfterSeveralBatchesThenEarlierBatchesStaySaved() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content(hit("/events/1") + "\n" + hit("/events/2") + "\n42\n" + hit("/events/3") + "\n{"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted", is(3)))
+                .andExpect(jsonPath("$.rejected", is(1)));
+
+        // Каждая пачка сохраняется отдельно, ошибка в конце тела не отменяет записанное
+        assertEquals(List.of(2, 1), batches.stream().map(List::size).collect(Collectors.toList()));
+    }
+
+    @Test
+    void saveStatsHitsWhenBodyIsNotJsonThenReturnBadRequest() throws Exception {
+        setUpController(10, OverflowPolicy.BLOCK);
+
+        mockMvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content(hit("/events/1") + "\nnot json\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.accepted", is(1)));
+    }
+
+    private void setUpController(int queueCapacity, OverflowPolicy overflowPolicy) {
+        ingestionQueue = new StatsIngestionQueue(batchRepository, new SimpleMeterRegistry(), queueCapacity, 2, 60_000,
+                overflowPolicy);
+        StatsServiceImpl service = new StatsServiceImpl(mock(StatsRepository.class), ingestionQueue, batchRepository,
+                mock(StatsRollupRepository.class), mock(StatsSketchRepository.class), mock(TopUrisRepository.class),
+                objectMapper);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new StatsController(service, objectMapper))
+                .build();
+    }
+
+    private List<String> savedUris() {
+        return batches.stream()
+                .flatMap(List::stream)
+                .map(Stat::getUri)
+                .collect(Collectors.toList());
+    }
+
+    private static String hit(String uri) {
+        return "{\"app\":\"ewm-main-service\",\"uri\":\"" + uri + "\",\"ip\":\"127.0.0.1\"," +
+                "\"timesTamp\":\"2025-01-01 10:00:00\"}";
+    }
+}
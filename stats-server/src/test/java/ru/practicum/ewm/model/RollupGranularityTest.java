@@ -0,0 +1,94 @@
+package ru.practicum.ewm.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.practicum.ewm.model.RollupGranularity.DAY;
+import static ru.practicum.ewm.model.RollupGranularity.HOUR;
+import static ru.practicum.ewm.model.RollupGranularity.MINUTE;
+
+class RollupGranularityTest {
+    private static final LocalDateTime MIDNIGHT = LocalDateTime.of(2025, 3, 10, 0, 0);
+
+    @Test
+    void splitAlignedRangeIntoWholeDays() {
+        List<BucketRange> ranges = DAY.split(MIDNIGHT, MIDNIGHT.plusDays(3), MINUTE);
+
+        assertEquals(List.of(new BucketRange(DAY, MIDNIGHT, MIDNIGHT.plusDays(3))), ranges);
+    }
+
+    @Test
+    void splitUnalignedRangeIntoCoarsestBucketsInTheMiddle() {
+        LocalDateTime from = MIDNIGHT.plusHours(22).plusMinutes(17);
+        LocalDateTime to = MIDNIGHT.plusDays(2).plusHours(1).plusMinutes(5);
+
+        List<BucketRange> ranges = DAY.split(from, to, MINUTE);
+
+        assertEquals(List.of(
+                new BucketRange(DAY, MIDNIGHT.plusDays(1), MIDNIGHT.plusDays(2)),
+                new BucketRange(HOUR, MIDNIGHT.plusHours(23), MIDNIGHT.plusDays(1)),
+                new BucketRange(MINUTE, from, MIDNIGHT.plusHours(23)),
+                new BucketRange(HOUR, MIDNIGHT.plusDays(2), MIDNIGHT.plusDays(2).plusHours(1)),
+                new BucketRange(MINUTE, MIDNIGHT.plusDays(2).plusHours(1), to)), ranges);
+        assertPartition(from, to, ranges);
+    }
+
+    @Test
+    void splitRangeCrossingMidnightWithoutWholeDay() {
+        LocalDateTime from = MIDNIGHT.plusHours(21).plusMinutes(30);
+        LocalDateTime to = MIDNIGHT.plusDays(1).plusHours(2);
+
+        List<BucketRange> ranges = DAY.split(from, to, MINUTE);
+
+        assertEquals(List.of(
+                new BucketRange(HOUR, MIDNIGHT.plusHours(22), MIDNIGHT.plusDays(1).plusHours(2)),
+                new BucketRange(MINUTE, from, MIDNIGHT.plusHours(22))), ranges);
+        assertPartition(from, to, ranges);
+    }
+
+    @Test
+    void splitSingleMinuteAndEmptyRanges() {
+        LocalDateTime from = MIDNIGHT.plusHours(5).plusMinutes(10);
+
+        assertEquals(List.of(new BucketRange(MINUTE, from, from.plusMinutes(1))),
+                DAY.split(from, from.plusMinutes(1), MINUTE));
+        // Пустой или перевёрнутый период не даёт отрезков
+        assertEquals(List.of(), DAY.split(from, from, MINUTE));
+        assertEquals(List.of(), DAY.split(from.plusMinutes(1), from, MINUTE));
+    }
+
+    @Test
+    void splitRandomRangesIntoAlignedContiguousSegments() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000; i++) {
+            LocalDateTime from = MIDNIGHT.plusMinutes(random.nextInt(5 * 24 * 60));
+            LocalDateTime to = from.plusMinutes(random.nextInt(4 * 24 * 60));
+
+            assertPartition(from, to, DAY.split(from, to, MINUTE));
+        }
+    }
+
+    /**
+     * Отрезки без пропусков и пересечений покрывают [from, to), и каждый выровнен по своей гранулярности.
+     */
+    private static void assertPartition(LocalDateTime from, LocalDateTime to, List<BucketRange> ranges) {
+        List<BucketRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparing(BucketRange::getFrom));
+        LocalDateTime next = from;
+        for (BucketRange range : sorted) {
+            assertEquals(next, range.getFrom(), "разрыв или пересечение в " + ranges);
+            assertTrue(range.getFrom().isBefore(range.getTo()), "пустой отрезок в " + ranges);
+            assertEquals(range.getFrom(), range.getGranularity().floor(range.getFrom()));
+            assertEquals(range.getTo(), range.getGranularity().floor(range.getTo()));
+            next = range.getTo();
+        }
+        assertEquals(from.isBefore(to) ? to : from, next);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.practicum.ewm.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.DockerClientFactory;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Статистика из счётчиков stats_rollups совпадает с подсчётом по исходной таблице stats.
+ * Счётчики пишутся через on conflict, поэтому нужен PostgreSQL: база поднимается в Testcontainers,
+ * без Docker можно указать пустую базу через -Dstats.test.datasource.url.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@EnabledIf("isDatabaseAvailable")
+class StatsRollupRepositoryTest {
+    private static final String DATASOURCE_URL = "stats.test.datasource.url";
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 5, 6, 21, 40, 17);
+
+    private static final int SPAN_SECONDS = 3 * 24 * 60 * 60;
+
+    @Autowired
+    private StatsBatchRepository batchRepository;
+
+    @Autowired
+    private StatsRollupRepository rollupRepository;
+
+    @Autowired
+    private StatsRepository statsRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        String url = System.getProperty(DATASOURCE_URL);
+        if (url == null) {
+            registry.add("spring.datasource.driverClassName", () -> "org.testcontainers.jdbc.ContainerDatabaseDriver");
+            registry.add("spring.datasource.url", () -> "jdbc:tc:postgresql:11.1:///stats");
+        } else {
+            registry.add("spring.datasource.driverClassName", () -> "org.postgresql.Driver");
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getProperty(DATASOURCE_URL + "-username", "user"));
+            registry.add("spring.datasource.password", () -> System.getProperty(DATASOURCE_URL + "-password", ""));
+        }
+        registry.add("spring.sql.init.platform", () -> "postgresql");
+        registry.add("stats.rollups.enabled", () -> "true");
+    }
+
+    static boolean isDatabaseAvailable() {
+        return System.getProperty(DATASOURCE_URL) != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @Test
+    void rollupStatsMatchRawStatsForRandomRanges() {
+        Random random = new Random(42);
+        // Свои uri, чтобы не зависеть от строк, оставшихся в базе от других тестов
+        String prefix = "/rollup-test/" + UUID.randomUUID() + "/";
+        String[] uris = IntStream.range(0, 5).mapToObj(i -> prefix + i).toArray(String[]::new);
+        List<Stat> stats = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            LocalDateTime timestamp = FROM.plusSeconds(random.nextInt(SPAN_SECONDS));
+            if (i % 10 == 0) {
+                // Хиты ровно на границах минут и часов
+                timestamp = timestamp.withSecond(0);
+                if (i % 20 == 0) {
+                    timestamp = timestamp.withMinute(0);
+                }
+            }
+            stats.add(Stat.builder()
+                    .app(i % 7 == 0 ? "other-service" : "ewm-main-service")
+                    .uri(uris[random.nextInt(uris.length)])
+                    .ip("10.0.0." + random.nextInt(5))
+                    .timesTamp(timestamp)
+                    .build());
+        }
+        batchRepository.saveAll(stats);
+
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime start = FROM.minusHours(1).plusSeconds(random.nextInt(SPAN_SECONDS));
+            LocalDateTime end;
+            switch (i % 4) {
+                case 0:
+                    // Короче минуты
+                    end = start.plusSeconds(random.nextInt(60));
+                    break;
+                case 1:
+                    // Границы ровно на минутах
+                    start = start.withSecond(0);
+                    end = start.plusMinutes(random.nextInt(3 * 60));
+                    break;
+                case 2:
+                    // Через полночь
+                    end = start.plusHours(24).plusSeconds(random.nextInt(60 * 60));
+                    break;
+                default:
+                    end = start.plusSeconds(random.nextInt(SPAN_SECONDS));
+            }
+            LocalDateTime rangeStart = start;
+            LocalDateTime rangeEnd = end;
+            String[] rangeUris = random.nextBoolean() ? uris : new String[]{uris[0], uris[3]};
+
+            List<ViewStats> raw = transactionTemplate.execute(status -> {
+                try (Stream<ViewStats> rows = statsRepository.findStatsByUris(rangeStart, rangeEnd, rangeUris,
+                        Pageable.unpaged())) {
+                    return rows.collect(Collectors.toList());
+                }
+            });
+            List<ViewStats> rollups = new ArrayList<>();
+            transactionTemplate.executeWithoutResult(status ->
+                    rollupRepository.streamStats(rangeStart, rangeEnd, rangeUris, null, false, rollups::add));
+
+            assertEquals(sorted(raw), sorted(rollups), "период (" + rangeStart + ", " + rangeEnd + ")");
+        }
+    }
+
+    private static List<ViewStats> sorted(List<ViewStats> stats) {
+        List<ViewStats> result = new ArrayList<>(stats);
+        result.sort(Comparator.comparing(ViewStats::getApp).thenComparing(ViewStats::getUri));
+        return result;
+    }
+}
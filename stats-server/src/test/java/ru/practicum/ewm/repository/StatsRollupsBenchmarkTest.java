@@ -0,0 +1,105 @@
+package ru.practicum.ewm.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.practicum.ewm.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение времени запроса статистики по исходной таблице и по предагрегированным счётчикам.
+ * Нужна отдельная база PostgreSQL, таблицы в ней пересоздаются. Запуск:
+ * mvn test -Dbenchmark=true -Dtest=StatsRollupsBenchmarkTest -Dbenchmark.url=jdbc:postgresql://localhost:5432/stats_benchmark
+ * -Dbenchmark.rows=10000000,50000000,100000000
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StatsRollupsBenchmarkTest {
+    private static final int URIS = 1000;
+
+    private static final int RUNS = 5;
+
+    private static final String RAW_QUERY = "select app, uri, count(ip) as hits from stats " +
+            "where timestamp > ? and timestamp < ? and uri in (%s) group by app, uri";
+
+    @Test
+    void compareRawAndRollupQueries() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("benchmark.url", "jdbc:postgresql://localhost:5432/stats_benchmark"),
+                System.getProperty("benchmark.user", "user"),
+                System.getProperty("benchmark.password", ""));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        LocalDateTime start = LocalDateTime.of(2025, 2, 3, 10, 17, 45);
+        LocalDateTime end = LocalDateTime.of(2025, 11, 20, 8, 3, 12);
+        String[] uris = IntStream.range(0, 10).mapToObj(i -> "/events/" + i * 7).toArray(String[]::new);
+        String rawQuery = String.format(RAW_QUERY, Arrays.stream(uris).map(u -> "?").collect(Collectors.joining(",")));
+        Object[] rawArgs = new Object[uris.length + 2];
+        rawArgs[0] = start;
+        rawArgs[1] = end;
+        System.arraycopy(uris, 0, rawArgs, 2, uris.length);
+
+        for (String rows : System.getProperty("benchmark.rows", "10000000,50000000,100000000").split(",")) {
+            long count = Long.parseLong(rows.trim());
+            seed(jdbcTemplate, count);
+            StatsRollupRepository rollupRepository = new StatsRollupRepository(jdbcTemplate, true);
+            rollupRepository.backfillIfEmpty();
+            jdbcTemplate.execute("analyze stats");
+            jdbcTemplate.execute("analyze stats_rollups");
+
+            List<ViewStats> raw = jdbcTemplate.query(rawQuery,
+                    (rs, rowNum) -> new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                    rawArgs);
+            List<ViewStats> rollups = streamRollups(rollupRepository, start, end, uris);
+            assertEquals(sorted(raw), sorted(rollups));
+
+            double rawMs = medianMs(() -> jdbcTemplate.queryForList(rawQuery, rawArgs));
+            double rollupMs = medianMs(() -> streamRollups(rollupRepository, start, end, uris));
+            System.out.printf("rows=%d raw=%.1f ms rollups=%.1f ms%n", count, rawMs, rollupMs);
+        }
+    }
+
+    private static List<ViewStats> streamRollups(StatsRollupRepository rollupRepository, LocalDateTime start,
+                                                 LocalDateTime end, String[] uris) {
+        List<ViewStats> result = new ArrayList<>();
+        rollupRepository.streamStats(start, end, uris, null, false, result::add);
+        return result;
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, long count) {
+        jdbcTemplate.execute("truncate table stats, stats_rollups");
+        // Хиты равномерно распределены по 2025 году
+        jdbcTemplate.update("insert into stats (app, uri, ip, timestamp) " +
+                "select 'ewm-main-service', '/events/' || (g % " + URIS + "), '10.0.' || (g % 250) || '.' || (g % 199), " +
+                "timestamp '2025-01-01' + (g * 31536000 / " + count + ") * interval '1 second' " +
+                "from generate_series(1::bigint, " + count + ") as g");
+    }
+
+    private static List<ViewStats> sorted(List<ViewStats> stats) {
+        return stats.stream().sorted(Comparator.comparing(ViewStats::getUri)).collect(Collectors.toList());
+    }
+
+    private static double medianMs(Supplier<?> query) {
+        double[] times = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long started = System.nanoTime();
+            query.get();
+            times[i] = (System.nanoTime() - started) / 1_000_000.0;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
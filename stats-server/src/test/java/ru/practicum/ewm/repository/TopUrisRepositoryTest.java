@@ -0,0 +1,103 @@
+package ru.practicum.ewm.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.model.TopWindow;
+import ru.practicum.ewm.model.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class TopUrisRepositoryTest {
+    private static final int CAPACITY = 10;
+
+    private final TopUrisRepository repository = new TopUrisRepository(mock(StatsRollupRepository.class),
+            mock(PlatformTransactionManager.class), CAPACITY);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(repository);
+    }
+
+    @Test
+    void multiBatchTransactionKeepsOneBoundedSynchronization() {
+        TransactionSynchronizationManager.initSynchronization();
+        List<Stat> batch = new ArrayList<>();
+        // 20 пачек по 500 записей: горячий uri и 100 редких, которые не помещаются в сводку
+        for (int b = 0; b < 20; b++) {
+            for (int i = 0; i < 500; i++) {
+                batch.add(stat(i % 2 == 0 ? "/events/hot" : "/events/" + (i % 100)));
+            }
+            repository.addAll(batch);
+            // Вызывающий код переиспользует список пачки
+            batch.clear();
+        }
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        TopUrisRepository.PendingHits pending =
+                (TopUrisRepository.PendingHits) TransactionSynchronizationManager.getResource(repository);
+        assertTrue(pending.size() <= CAPACITY, "в сводке транзакции " + pending.size() + " счётчиков");
+        // До фиксации хиты в окнах не видны
+        assertEquals(List.of(), repository.findTop(TopWindow.HOUR, 1));
+
+        complete(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+
+        List<ViewStats> top = repository.findTop(TopWindow.HOUR, 1);
+        assertEquals("/events/hot", top.get(0).getUri());
+        // Оценка Space-Saving не меньше истинного значения
+        assertTrue(top.get(0).getHits() >= 5_000);
+        assertNull(TransactionSynchronizationManager.getResource(repository));
+    }
+
+    @Test
+    void rolledBackTransactionIsNotCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        repository.addAll(List.of(stat("/events/1"), stat("/events/2")));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(List.of(), repository.findTop(TopWindow.HOUR, 10));
+        assertNull(TransactionSynchronizationManager.getResource(repository));
+    }
+
+    @Test
+    void hitsOutsideTransactionAreCountedImmediately() {
+        repository.addAll(List.of(stat("/events/1"), stat("/events/1"), stat("/events/2")));
+
+        List<ViewStats> top = repository.findTop(TopWindow.DAY, 10);
+
+        assertEquals(List.of(new ViewStats("ewm-main-service", "/events/1", 2L),
+                new ViewStats("ewm-main-service", "/events/2", 1L)), top);
+    }
+
+    private static void complete(List<TransactionSynchronization> synchronizations, int status) {
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+    private static Stat stat(String uri) {
+        return Stat.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("127.0.0.1")
+                .timesTamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,186 @@
+package ru.practicum.ewm.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.exception.IngestionQueueOverflowException;
+import ru.practicum.ewm.model.Stat;
+import ru.practicum.ewm.repository.StatsBatchRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class StatsIngestionQueueTest {
+    // Интервал, который заведомо не истекает за время теста
+    private static final long NEVER_MS = 60_000;
+
+    private final StatsBatchRepository batchRepository = mock(StatsBatchRepository.class);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Копии сохранённых пачек: очередь очищает переданный список после записи
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private StatsIngestionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            List<Stat> batch = invocation.getArgument(0);
+            batches.add(batch.stream().map(Stat::getUri).collect(Collectors.toList()));
+            return null;
+        }).when(batchRepository).saveAll(anyList());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void blockPolicyWaitsForFreeSpace() throws Exception {
+        queue = queue(1, 10, NEVER_MS, OverflowPolicy.BLOCK);
+        queue.submit(stat(1));
+        Thread producer = new Thread(() -> queue.submit(stat(2)));
+        producer.start();
+
+        producer.join(200);
+        assertTrue(producer.isAlive(), "запись в заполненную очередь должна ждать");
+
+        // Поток записи освобождает место, и ожидающий хит попадает в очередь
+        queue.start();
+        producer.join(5_000);
+        assertFalse(producer.isAlive());
+        queue.shutdown();
+        queue = null;
+
+        assertEquals(List.of("/events/1", "/events/2"), saved());
+    }
+
+    @Test
+    void dropOldestPolicyReplacesOldestHit() throws Exception {
+        queue = queue(2, 10, NEVER_MS, OverflowPolicy.DROP_OLDEST);
+        queue.submit(stat(1));
+        queue.submit(stat(2));
+        queue.submit(stat(3));
+
+        queue.shutdown();
+        queue = null;
+
+        assertEquals(List.of("/events/2", "/events/3"), saved());
+        assertEquals(1, meterRegistry.counter("stats.ingestion.dropped").count());
+    }
+
+    @Test
+    void rejectPolicyThrowsWhenQueueIsFull() throws Exception {
+        queue = queue(1, 10, NEVER_MS, OverflowPolicy.REJECT);
+        queue.submit(stat(1));
+
+        IngestionQueueOverflowException thrown = assertThrows(IngestionQueueOverflowException.class,
+                () -> queue.submit(stat(2)));
+
+        assertEquals("Очередь записи статистики переполнена", thrown.getMessage());
+        assertEquals(1, meterRegistry.counter("stats.ingestion.rejected").count());
+        queue.shutdown();
+        queue = null;
+        assertEquals(List.of("/events/1"), saved());
+    }
+
+    @Test
+    void fullBatchIsWrittenWithoutWaitingForFlushInterval() throws Exception {
+        queue = queue(100, 3, NEVER_MS, OverflowPolicy.BLOCK);
+        queue.start();
+        for (int i = 1; i <= 7; i++) {
+            queue.submit(stat(i));
+        }
+
+        // Две полные пачки записываются сразу, неполная ждёт интервала
+        awaitBatches(2);
+        Thread.sleep(200);
+        assertEquals(List.of(List.of("/events/1", "/events/2", "/events/3"),
+                List.of("/events/4", "/events/5", "/events/6")), batches);
+    }
+
+    @Test
+    void incompleteBatchIsWrittenAfterFlushInterval() throws Exception {
+        queue = queue(100, 500, 100, OverflowPolicy.BLOCK);
+        queue.start();
+        queue.submit(stat(1));
+        queue.submit(stat(2));
+
+        awaitBatches(1);
+        assertEquals(List.of(List.of("/events/1", "/events/2")), batches);
+    }
+
+    @Test
+    void shutdownWritesQueuedHits() throws Exception {
+        queue = queue(100, 3, NEVER_MS, OverflowPolicy.BLOCK);
+        for (int i = 1; i <= 7; i++) {
+            queue.submit(stat(i));
+        }
+
+        // Поток записи не запускался, поэтому все хиты дописываются при остановке
+        queue.shutdown();
+        queue = null;
+
+        assertEquals(List.of(3, 3, 1), batches.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(7, meterRegistry.counter("stats.ingestion.written").count());
+    }
+
+    @Test
+    void shutdownOfRunningQueueWritesPendingBatch() throws Exception {
+        queue = queue(100, 500, NEVER_MS, OverflowPolicy.BLOCK);
+        queue.start();
+        for (int i = 1; i <= 5; i++) {
+            queue.submit(stat(i));
+        }
+
+        queue.shutdown();
+        queue = null;
+
+        assertEquals(5, saved().size());
+    }
+
+    private StatsIngestionQueue queue(int capacity, int batchSize, long flushIntervalMs, OverflowPolicy policy) {
+        return new StatsIngestionQueue(batchRepository, meterRegistry, capacity, batchSize, flushIntervalMs, policy);
+    }
+
+    private List<String> saved() {
+        List<String> saved = new ArrayList<>();
+        batches.forEach(saved::addAll);
+        return saved;
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batches.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(batches.size() >= count, "пачки не записаны: " + batches);
+    }
+
+    private static Stat stat(int i) {
+        return Stat.builder()
+                .app("ewm-main-service")
+                .uri("/events/" + i)
+                .ip("127.0.0.1")
+                .timesTamp(LocalDateTime.now())
+                .build();
+    }
+}
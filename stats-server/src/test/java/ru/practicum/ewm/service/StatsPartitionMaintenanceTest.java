@@ -0,0 +1,133 @@
+package ru.practicum.ewm.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Запуск сервера на PostgreSQL с настоящими скриптами инициализации и секционированием.
+ * База поднимается в Testcontainers; без Docker можно указать пустую базу через -Dstats.test.datasource.url
+ * (учётные данные: -Dstats.test.datasource.url-username и -Dstats.test.datasource.url-password).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@EnabledIf("isDatabaseAvailable")
+class StatsPartitionMaintenanceTest {
+    private static final String DATASOURCE_URL = "stats.test.datasource.url";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatsPartitionMaintenance maintenance;
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        String url = System.getProperty(DATASOURCE_URL);
+        if (url == null) {
+            registry.add("spring.datasource.driverClassName", () -> "org.testcontainers.jdbc.ContainerDatabaseDriver");
+            registry.add("spring.datasource.url", () -> "jdbc:tc:postgresql:11.1:///stats");
+        } else {
+            registry.add("spring.datasource.driverClassName", () -> "org.postgresql.Driver");
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getProperty(DATASOURCE_URL + "-username", "user"));
+            registry.add("spring.datasource.password", () -> System.getProperty(DATASOURCE_URL + "-password", ""));
+        }
+        registry.add("spring.sql.init.platform", () -> "postgresql");
+        registry.add("stats.partitioning.enabled", () -> "true");
+        registry.add("stats.partitioning.retention-months", () -> "24");
+    }
+
+    static boolean isDatabaseAvailable() {
+        return System.getProperty(DATASOURCE_URL) != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @Test
+    void startupOnEmptyDatabaseCreatesPartitionedTable() {
+        assertEquals("p", relkind("stats"));
+        assertEquals(List.of("brin_stats_timestamp", "ix_stats_uri_timestamp", "pk_stat"), statsIndexes());
+        assertEquals("r", relkind(partition(YearMonth.now())));
+        assertEquals("r", relkind("stats_default"));
+    }
+
+    @Test
+    void migrationKeepsRowsWithoutTimestamp() {
+        // Возврат к обычной таблице, созданной прежней версией schema.sql
+        jdbcTemplate.execute("drop table stats");
+        jdbcTemplate.execute("create table stats (id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL, " +
+                "Identification_record BIGINT, app VARCHAR(255), uri VARCHAR(512), ip VARCHAR(512), " +
+                "timestamp TIMESTAMP WITHOUT TIME ZONE, CONSTRAINT pk_stat PRIMARY KEY (id))");
+        jdbcTemplate.execute("create index ix_stats_timestamp on stats (timestamp)");
+        jdbcTemplate.update("insert into stats (app, uri, ip, timestamp) values " +
+                "('ewm-main-service', '/events/1', '127.0.0.1', now() - interval '2 months'), " +
+                "('ewm-main-service', '/events/2', '127.0.0.1', now()), " +
+                "('ewm-main-service', '/events/3', '127.0.0.1', null)");
+
+        maintenance.migrate();
+
+        assertEquals("p", relkind("stats"));
+        assertEquals(List.of("/events/1", "/events/2"),
+                jdbcTemplate.queryForList("select uri from stats order by id", String.class));
+        assertEquals(1, count(partition(YearMonth.now().minusMonths(2))));
+        assertEquals(List.of("/events/3"),
+                jdbcTemplate.queryForList("select uri from stats_without_timestamp", String.class));
+        // Последовательность продолжается после перенесённых идентификаторов
+        jdbcTemplate.update("insert into stats (app, uri, ip, timestamp) " +
+                "values ('ewm-main-service', '/events/4', '127.0.0.1', now())");
+        assertEquals(3, jdbcTemplate.queryForObject("select max(id) from stats", Integer.class));
+
+        // Повторное обслуживание не пересоздаёт существующие секции
+        maintenance.maintain();
+        assertTrue(statsIndexes().contains("brin_stats_timestamp"));
+    }
+
+    @Test
+    void maintenanceMovesDefaultPartitionRowsIntoNewPartition() {
+        // Хит пришёл раньше, чем создана секция его месяца, и лёг в stats_default
+        YearMonth future = YearMonth.now().plusMonths(3);
+        jdbcTemplate.execute("drop table if exists " + partition(future));
+        jdbcTemplate.update("insert into stats (app, uri, ip, timestamp) values " +
+                "('ewm-main-service', '/events/future', '127.0.0.1', ?), " +
+                "('ewm-main-service', '/events/old', '127.0.0.1', now() - interval '30 months')",
+                future.atDay(15).atStartOfDay());
+        assertEquals(2, count("stats_default"));
+
+        maintenance.maintain();
+
+        assertEquals("r", relkind(partition(future)));
+        assertEquals(List.of("/events/future"),
+                jdbcTemplate.queryForList("select uri from " + partition(future), String.class));
+        // Устаревшая строка без своей секции удаляется по сроку хранения
+        assertEquals(0, count("stats_default"));
+        assertTrue(jdbcTemplate.queryForList("select uri from stats", String.class).contains("/events/future"));
+    }
+
+    private String relkind(String table) {
+        return jdbcTemplate.queryForObject("select c.relkind from pg_class c " +
+                "where c.relname = ? and c.relnamespace = to_regnamespace(current_schema())", String.class, table);
+    }
+
+    private List<String> statsIndexes() {
+        return jdbcTemplate.queryForList("select indexname from pg_indexes " +
+                "where schemaname = current_schema() and tablename = 'stats' order by indexname", String.class);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+    }
+
+    private static String partition(YearMonth month) {
+        return "stats_" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.ewm.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+    private static final int ITEMS = 10_000;
+
+    private static final int HITS = 200_000;
+
+    // Поток с распределением, близким к закону Ципфа: элемент i встречается примерно в 1 / (i + 1) раз реже
+    private static int[] zipfStream(long seed) {
+        double[] cumulative = new double[ITEMS];
+        double sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] stream = new int[HITS];
+        for (int i = 0; i < HITS; i++) {
+            double value = random.nextDouble() * sum;
+            int index = Arrays.binarySearch(cumulative, value);
+            stream[i] = index >= 0 ? index : -index - 1;
+        }
+        return stream;
+    }
+
+    private static Map<String, Long> exactCounts(int[] stream) {
+        Map<String, Long> counts = new HashMap<>();
+        for (int item : stream) {
+            counts.merge("/events/" + item, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static SpaceSaving<String> summary(int capacity, int[] stream) {
+        SpaceSaving<String> summary = new SpaceSaving<>(capacity);
+        for (int item : stream) {
+            summary.add("/events/" + item);
+        }
+        return summary;
+    }
+
+    private static void assertBounds(Map<String, Long> exact, List<SpaceSaving.Entry<String>> entries, long total,
+                                     int capacity) {
+        for (SpaceSaving.Entry<String> entry : entries) {
+            long count = exact.getOrDefault(entry.getItem(), 0L);
+            assertTrue(entry.getCount() >= count, "оценка меньше истинного значения: " + entry);
+            assertTrue(entry.getCount() - entry.getError() <= count, "ошибка занижена: " + entry);
+            assertTrue(entry.getError() <= total / capacity, "ошибка больше N / capacity: " + entry);
+        }
+    }
+
+    @Test
+    void exactWhileCapacityIsNotExceeded() {
+        // Проверка точных счётчиков, пока элементов не больше размера сводки
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.add("a");
+        summary.add("b", 5);
+        summary.add("a");
+        summary.add("c", 2);
+
+        List<SpaceSaving.Entry<String>> top = summary.top(10);
+
+        assertEquals(List.of(new SpaceSaving.Entry<>("b", 5, 0), new SpaceSaving.Entry<>("a", 2, 0),
+                new SpaceSaving.Entry<>("c", 2, 0)), top.stream()
+                .sorted((left, right) -> left.getCount() == right.getCount()
+                        ? left.getItem().compareTo(right.getItem()) : Long.compare(right.getCount(), left.getCount()))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void newItemReplacesMinimumAndInheritsItsCount() {
+        // Проверка вытеснения самого редкого элемента при заполненной сводке
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a", 3);
+        summary.add("b", 1);
+        summary.add("c");
+
+        assertEquals(List.of(new SpaceSaving.Entry<>("a", 3, 0), new SpaceSaving.Entry<>("c", 2, 1)), summary.top(2));
+    }
+
+    @Test
+    void topItemsOfSkewedStreamAreFound() {
+        // Проверка гарантий оценок и состава первой десятки на потоке с перекосом
+        int capacity = 500;
+        int[] stream = zipfStream(42);
+        Map<String, Long> exact = exactCounts(stream);
+        SpaceSaving<String> summary = summary(capacity, stream);
+
+        List<SpaceSaving.Entry<String>> top = summary.top(10);
+
+        assertBounds(exact, summary.top(capacity), HITS, capacity);
+        List<String> expected = exact.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(10)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        assertEquals(expected, top.stream().map(SpaceSaving.Entry::getItem).collect(Collectors.toList()));
+    }
+
+    @Test
+    void mergeKeepsGuarantees() {
+        // Проверка того, что объединённая сводка даёт верхние оценки для объединения потоков
+        int capacity = 500;
+        int[] left = zipfStream(1);
+        int[] right = zipfStream(2);
+        Map<String, Long> exact = exactCounts(left);
+        exactCounts(right).forEach((item, count) -> exact.merge(item, count, Long::sum));
+
+        SpaceSaving<String> merged = summary(capacity, left).merge(summary(capacity, right));
+
+        assertEquals(capacity, merged.size());
+        assertBounds(exact, merged.top(capacity), 2L * HITS, capacity);
+        assertEquals("/events/0", merged.top(1).get(0).getItem());
+    }
+
+    @Test
+    void mergeWithEmptySummaryKeepsCounts() {
+        // Проверка объединения с пустой сводкой
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a", 3);
+        summary.add("b");
+        summary.add("c");
+
+        SpaceSaving<String> merged = new SpaceSaving<String>(2).merge(summary);
+
+        assertEquals(summary.top(2), merged.top(2));
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<>(0));
+    }
+}